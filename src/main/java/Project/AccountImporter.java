@@ -0,0 +1,290 @@
+package Project;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk import of customer accounts from a CSV or TSV file.
+ * <p>
+ * The file is streamed in batches. Each batch is parsed and validated first; rows with an ID that is
+ * already taken (or repeated earlier in the file) are rejected before any hashing is done. Only then
+ * are the passwords and security answers of the remaining rows hashed, on a pool of its own (so an
+ * import does not occupy the common pool), and the accounts registered with {@link AccountService}
+ * in one pass. Rows that fail are written to a rejects file as {@code line<TAB>reason<TAB>original row}.
+ * <p>
+ * Columns (one account per line, no quoting):
+ * customerID, password, name, address, cardNumber, cardHolder, expiration (MM/YY), CVV,
+ * securityQuestionNumber (1-based, as shown to users), securityAnswer[, cardBalance].
+ * The password and security answer may also be given already hashed (as produced by
+ * {@link PasswordHasher#hash(String)}, e.g. exported from another instance); those are not hashed again.
+ * A first line starting with "customerID" is treated as a header and skipped.
+ * Files ending in ".tsv" are split on tabs, everything else on commas.
+ * <p>
+ * Set -Dcos.import.threads to change the number of hashing threads (default: number of cores).
+ */
+public class AccountImporter {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int MIN_COLUMNS = 10;
+    private static final int THREADS = Integer.getInteger("cos.import.threads", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Counts of what happened during an import.
+     */
+    public static class Result {
+        private final long imported;
+        private final long rejected;
+
+        Result(long imported, long rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        @Override
+        public String toString() {
+            return "Imported " + imported + " accounts, rejected " + rejected + ".";
+        }
+    }
+
+    /**
+     * One row: its parsed and validated fields, then the customer built from them,
+     * or the reason it was rejected.
+     */
+    private static class Row {
+        final long lineNumber;
+        final String line;
+        String customerID;
+        String password;
+        String name;
+        String address;
+        CreditCard card;
+        String question;
+        String answer;
+        Customer customer;
+        String error;
+
+        Row(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        Row reject(String reason) {
+            error = reason;
+            return this;
+        }
+    }
+
+    /**
+     * Imports all accounts from a file.
+     *
+     * @param input       The CSV/TSV file to read.
+     * @param rejectsFile Where to write the rows that could not be imported.
+     * @return The number of imported and rejected rows.
+     * @throws IOException If either file cannot be read or written.
+     */
+    public static Result importAccounts(Path input, Path rejectsFile) throws IOException {
+        char delimiter = input.getFileName().toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        long imported = 0;
+        long rejected = 0;
+        long lineNumber = 0;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService hashers = Executors.newFixedThreadPool(Math.max(1, THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "account-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+            Set<String> seenIDs = new HashSet<>();
+            List<String> lines = new ArrayList<>(BATCH_SIZE);
+            long[] lineNumbers = new long[BATCH_SIZE];
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if ((lineNumber == 1 && line.startsWith("customerID")) || line.isBlank()) {
+                    continue; // header or empty line
+                }
+                lineNumbers[lines.size()] = lineNumber;
+                lines.add(line);
+                if (lines.size() == BATCH_SIZE) {
+                    long[] counts = importBatch(lines, lineNumbers, delimiter, seenIDs, hashers, rejects);
+                    imported += counts[0];
+                    rejected += counts[1];
+                    lines.clear();
+                }
+            }
+            if (!lines.isEmpty()) {
+                long[] counts = importBatch(lines, lineNumbers, delimiter, seenIDs, hashers, rejects);
+                imported += counts[0];
+                rejected += counts[1];
+            }
+        } finally {
+            hashers.shutdownNow();
+        }
+        return new Result(imported, rejected);
+    }
+
+    /**
+     * Validates one batch, hashes the rows that can still be imported on the import pool,
+     * registers the valid accounts and logs the rejects.
+     *
+     * @param seenIDs The IDs of every row accepted so far in this file.
+     * @return {imported, rejected} for this batch.
+     */
+    private static long[] importBatch(List<String> lines, long[] lineNumbers, char delimiter, Set<String> seenIDs,
+                                      ExecutorService hashers, BufferedWriter rejects) throws IOException {
+        List<Row> rows = new ArrayList<>(lines.size());
+        List<CompletableFuture<Void>> hashing = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            Row row = parseRow(lineNumbers[i], lines.get(i), delimiter); // cheap: no hashing yet
+            rows.add(row);
+            if (row.error == null) {
+                // Rejecting duplicates here means their passwords are never hashed
+                if (AccountService.customerIDTaken(row.customerID) || !seenIDs.add(row.customerID)) {
+                    row.reject("Error: Customer ID '" + row.customerID + "' is already taken!");
+                } else {
+                    hashing.add(CompletableFuture.runAsync(() -> buildCustomer(row), hashers));
+                }
+            }
+        }
+        CompletableFuture.allOf(hashing.toArray(new CompletableFuture<?>[0])).join();
+
+        List<Customer> valid = new ArrayList<>(rows.size());
+        long rejected = 0;
+        for (Row row : rows) {
+            if (row.customer != null) {
+                valid.add(row.customer);
+            } else {
+                writeReject(rejects, row.lineNumber, row.error, row.line);
+                rejected++;
+            }
+        }
+
+        List<Customer> duplicates;
+        try {
+            duplicates = AccountService.registerCustomers(valid);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!duplicates.isEmpty()) {
+            // Customer.equals compares IDs only, so match the rejected rows by identity
+            Set<Customer> notAdded = Collections.newSetFromMap(new IdentityHashMap<>());
+            notAdded.addAll(duplicates);
+            for (Row row : rows) {
+                if (row.customer != null && notAdded.contains(row.customer)) {
+                    writeReject(rejects, row.lineNumber,
+                            "Error: Customer ID '" + row.customer.getCustomerID() + "' is already taken!", row.line);
+                }
+            }
+            rejected += duplicates.size();
+        }
+        return new long[]{valid.size() - duplicates.size(), rejected};
+    }
+
+    /**
+     * Parses and validates a single row, without hashing anything.
+     */
+    private static Row parseRow(long lineNumber, String line, char delimiter) {
+        Row row = new Row(lineNumber, line);
+        String[] fields = split(line, delimiter);
+        if (fields.length < MIN_COLUMNS) {
+            return row.reject("Error: Expected at least " + MIN_COLUMNS + " columns.");
+        }
+        String customerID = fields[0].trim();
+        if (customerID.isEmpty()) {
+            return row.reject("Error: Customer ID cannot be empty!");
+        }
+
+        int questionIndex;
+        double balance = 1000.0;
+        try {
+            questionIndex = Integer.parseInt(fields[8].trim()) - 1;
+            if (fields.length > MIN_COLUMNS && !fields[10].trim().isEmpty()) {
+                balance = Double.parseDouble(fields[10].trim());
+            }
+        } catch (NumberFormatException e) {
+            return row.reject("Error: Security question number and card balance must be numbers.");
+        }
+
+        CreditCard card = new CreditCard(fields[4].trim(), fields[5].trim(), fields[6].trim(), fields[7].trim(), balance);
+        String password = fields[1];
+        String name = fields[2].trim();
+        String address = fields[3].trim();
+        String answer = fields[9].trim();
+
+        String error = PasswordHasher.isHash(password)
+                ? AccountService.validateAccountDetails(name, address, card, questionIndex, answer)
+                : AccountService.validateNewAccount(password, name, address, card, questionIndex, answer);
+        if (error != null) {
+            return row.reject(error);
+        }
+        row.customerID = customerID;
+        row.password = password;
+        row.name = name;
+        row.address = address;
+        row.card = card;
+        row.question = AccountService.getSecurityQuestions()[questionIndex];
+        row.answer = answer;
+        return row;
+    }
+
+    /**
+     * Hashes the row's password and security answer (unless they already are hashes) and
+     * creates its customer. Runs on the import pool.
+     */
+    private static void buildCustomer(Row row) {
+        try {
+            String passwordHash = PasswordHasher.isHash(row.password) ? row.password : PasswordHasher.hash(row.password);
+            String answerHash = PasswordHasher.isHash(row.answer) ? row.answer : PasswordHasher.hash(row.answer);
+            row.customer = Customer.restore(row.customerID, passwordHash, row.name, row.address, row.card,
+                    row.question, answerHash);
+        } catch (RuntimeException e) {
+            row.reject("Error: Account could not be created: " + e.getMessage());
+        }
+    }
+
+    private static String[] split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(11);
+        int start = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == delimiter) {
+                fields.add(line.substring(start, i));
+                start = i + 1;
+            }
+        }
+        fields.add(line.substring(start));
+        return fields.toArray(new String[0]);
+    }
+
+    private static void writeReject(BufferedWriter rejects, long lineNumber, String reason, String line) throws IOException {
+        rejects.write(Long.toString(lineNumber));
+        rejects.write('\t');
+        rejects.write(reason);
+        rejects.write('\t');
+        rejects.write(line);
+        rejects.newLine();
+    }
+}
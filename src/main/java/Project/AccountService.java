@@ -1,16 +1,30 @@
 package Project;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages customer accounts (Creation, retrieval, and validation).
- * Acts as a repository for Customer objects.
+ * Acts as a repository for Customer objects, indexed by customer ID.
  */
 public class AccountService {
-    private static List<Customer> customers = new ArrayList<>();
-    private static String[] loggedInUsers = new String[100];
-    private static int loggedInCount = 0;
+    private static Map<String, Customer> customers = new ConcurrentHashMap<>();
+    // Optional durable storage; when null, accounts only live in memory
+    private static volatile CustomerStore store;
+    // Sessions expire after 30 minutes without activity; idle ones are swept every minute
+    private static final SessionStore sessions = new SessionStore(30 * 60 * 1000L, 60 * 1000L);
+    // Signed tokens let other nodes check a login without asking this one; like sessions they expire
+    // after 30 minutes without activity (see refreshSessionToken)
+    private static final SessionToken tokens = SessionToken.fromSystemProperties(30 * 60 * 1000L);
+    // 3 failed passwords within 15 minutes lock the account until the oldest failure ages out
+    private static volatile LoginAttemptLimiter loginLimiter = new LoginAttemptLimiter(3, 15 * 60 * 1000L);
 
     private static final String[] securityQuestions = {
             "What city were you born in?",
@@ -40,11 +54,55 @@ public class AccountService {
             return "Error: Customer ID '" + customerID + "' is already taken! Please choose a different ID.";
         }
 
+        String error = validateNewAccount(customerPassword, name, address, creditCard, securityQuestionIndex, securityAnswer);
+        if (error != null) {
+            return error;
+        }
+
+        String selectedSecurityQuestion = securityQuestions[securityQuestionIndex];
+
+        // Create new customer; putIfAbsent makes sure two concurrent requests can't both claim the ID
+        Customer customer = new Customer(customerID, customerPassword, name, address,
+                creditCard, selectedSecurityQuestion, securityAnswer);
+        if (customers.putIfAbsent(customerID, customer) != null) {
+            return "Error: Customer ID '" + customerID + "' is already taken! Please choose a different ID.";
+        }
+        CustomerStore currentStore = store;
+        if (currentStore != null) {
+            try {
+                currentStore.save(customer);
+            } catch (UncheckedIOException e) {
+                customers.remove(customerID, customer);
+                return "Error: Account could not be saved: " + e.getCause().getMessage();
+            }
+        }
+
+        return "Account created successfully for customer ID: " + customerID;
+    }
+
+    /**
+     * Checks the details of a new account (everything except whether the ID is free).
+     * Shared by {@link #createAccount} and the bulk {@link AccountImporter}.
+     *
+     * @return An error message describing the first problem found, or null if the details are valid.
+     */
+    static String validateNewAccount(String customerPassword, String name, String address, CreditCard creditCard,
+                                     int securityQuestionIndex, String securityAnswer) {
         // Check password validity
         if (!PasswordValidator.isValid(customerPassword)) {
-            return "Password is not valid! It must be at least 6 characters long, " +
-                    "contain one special character (@, #, $, %, &, *), and one uppercase letter.";
+            return "Password is not valid! " + PasswordValidator.DEFAULT.getRequirements();
         }
+        return validateAccountDetails(name, address, creditCard, securityQuestionIndex, securityAnswer);
+    }
+
+    /**
+     * Checks the details of a new account other than its ID and password (e.g. for imported
+     * accounts whose password is already hashed).
+     *
+     * @return An error message describing the first problem found, or null if the details are valid.
+     */
+    static String validateAccountDetails(String name, String address, CreditCard creditCard,
+                                         int securityQuestionIndex, String securityAnswer) {
 
         // Check if name, address and credit card are valid
         if (name == null || name.isEmpty() ||
@@ -53,19 +111,115 @@ public class AccountService {
             return "Error: Name, address, and valid credit card cannot be empty or invalid!";
         }
 
-        // Check security answer validity
+        // Check security question and answer validity
+        if (securityQuestionIndex < 0 || securityQuestionIndex >= securityQuestions.length) {
+            return "Error: Invalid security question!";
+        }
         if (securityAnswer == null || securityAnswer.isEmpty()) {
             return "Error: Security Answer cannot be empty!";
         }
+        return null;
+    }
 
-        String selectedSecurityQuestion = securityQuestions[securityQuestionIndex];
+    /**
+     * Registers a batch of already validated customers.
+     * Customers whose ID is already taken are skipped and returned.
+     * If a store is open, the added customers are saved with a single log write.
+     *
+     * @param batch The customers to add.
+     * @return The customers that were not added because their ID already exists.
+     * @throws UncheckedIOException If the batch could not be saved (nothing is added in that case).
+     */
+    static List<Customer> registerCustomers(List<Customer> batch) {
+        List<Customer> duplicates = new ArrayList<>();
+        List<Customer> added = new ArrayList<>(batch.size());
+        for (Customer customer : batch) {
+            if (customers.putIfAbsent(customer.getCustomerID(), customer) != null) {
+                duplicates.add(customer);
+            } else {
+                added.add(customer);
+            }
+        }
+        CustomerStore currentStore = store;
+        if (currentStore != null) {
+            try {
+                currentStore.saveAll(added);
+            } catch (UncheckedIOException e) {
+                for (Customer customer : added) {
+                    customers.remove(customer.getCustomerID(), customer);
+                }
+                throw e;
+            }
+        }
+        return duplicates;
+    }
 
-        // Create new customer
-        Customer customer = new Customer(customerID, customerPassword, name, address,
-                creditCard, selectedSecurityQuestion, securityAnswer);
-        customers.add(customer);
+    /**
+     * Saves changes to an existing customer (e.g. a new credit card or balance), if a store is open.
+     *
+     * @param customer The changed customer.
+     */
+    public static void saveCustomer(Customer customer) {
+        CustomerStore currentStore = store;
+        if (currentStore == null || customer == null) {
+            return;
+        }
+        try {
+            currentStore.save(customer);
+        } catch (UncheckedIOException e) {
+            System.out.println("Warning: changes to customer " + customer.getCustomerID() + " could not be saved.");
+        }
+    }
 
-        return "Account created successfully for customer ID: " + customerID;
+    /**
+     * Saves changes to several existing customers with a single write to the store, if one is open.
+     *
+     * @param changed The changed customers.
+     */
+    static void saveCustomers(Collection<Customer> changed) {
+        CustomerStore currentStore = store;
+        if (currentStore == null || changed.isEmpty()) {
+            return;
+        }
+        try {
+            currentStore.saveAll(changed);
+        } catch (UncheckedIOException e) {
+            System.out.println("Warning: changes to " + changed.size() + " customers could not be saved.");
+        }
+    }
+
+    /**
+     * Loads all saved accounts from a directory and keeps saving new ones there.
+     * A snapshot of all accounts is written at the given interval so startup only replays recent changes.
+     *
+     * @param directory              Where the customer snapshot and change log are kept.
+     * @param snapshotIntervalMillis Time (in milliseconds) between snapshots.
+     * @throws IOException If the saved data cannot be read.
+     */
+    public static synchronized void openStore(Path directory, long snapshotIntervalMillis) throws IOException {
+        if (store != null) {
+            throw new IllegalStateException("Customer store is already open.");
+        }
+        CustomerStore opened = new CustomerStore(directory, customers);
+        opened.scheduleSnapshots(snapshotIntervalMillis);
+        store = opened;
+    }
+
+    /**
+     * Writes a final snapshot and closes the customer store, if one is open.
+     */
+    public static synchronized void closeStore() {
+        CustomerStore currentStore = store;
+        if (currentStore == null) {
+            return;
+        }
+        store = null;
+        try {
+            currentStore.snapshot();
+            currentStore.close();
+        } catch (IOException e) {
+            System.out.println("Warning: customer data could not be closed cleanly: " + e.getMessage());
+        }
     }
 
     /**
@@ -75,12 +229,7 @@ public class AccountService {
      * @return true if the ID is taken, false otherwise.
      */
     public static boolean customerIDTaken(String customerID) {
-        for (Customer customer : customers) {
-            if (customer.getCustomerID().equals(customerID)) {
-                return true;
-            }
-        }
-        return false;
+        return customerID != null && customers.containsKey(customerID);
     }
 
     /**
@@ -90,12 +239,20 @@ public class AccountService {
      * @return The Customer object if found, or null otherwise.
      */
     public static Customer getCustomerByID(String customerID) {
-        for (Customer customer : customers) {
-            if (customer.getCustomerID().equals(customerID)) {
-                return customer;
-            }
+        if (customerID == null) {
+            return null;
         }
-        return null;
+        return customers.get(customerID);
+    }
+
+    /**
+     * Finds every customer whose stored credit card can no longer be charged
+     * (invalid number or expired), checking all customers in parallel.
+     *
+     * @return The customers with an unusable card.
+     */
+    public static List<Customer> getCustomersWithUnusableCards() {
+        return CardValidator.findUnusableCards(customers.values());
     }
 
     /**
@@ -109,32 +266,145 @@ public class AccountService {
 
     /**
      * Attempts to log in a customer.
-     * Implements account locking after 3 failed attempts.
+     * Locks the account after 3 failed attempts within 15 minutes; it unlocks on its own
+     * once the oldest of those failures is outside the window.
      *
      * @param customerID The customer's ID.
      * @param password   The customer's password.
      * @return The logged-in Customer object if successful, or null otherwise.
      */
     public static Customer loginCustomer(String customerID, String password) {
+        return loginCustomer(customerID, password, null);
+    }
+
+    /**
+     * Attempts to log in a customer, counting failed attempts separately per request source
+     * (e.g. a client address) so one source cannot lock the customer out everywhere.
+     *
+     * @param customerID The customer's ID.
+     * @param password   The customer's password.
+     * @param source     Where the attempt comes from, or null to count per customer only.
+     * @return The logged-in Customer object if successful, or null otherwise.
+     */
+    public static Customer loginCustomer(String customerID, String password, String source) {
+        String limiterKey = limiterKey(customerID, source);
+        Customer customer = findCustomer(customerID);
+        if (customer == null) {
+            return null;
+        }
+        LoginAttemptLimiter limiter = loginLimiter;
+        LoginAttemptLimiter.Attempt attempt = startAttempt(limiter, limiterKey);
+        if (attempt == null) {
+            return null;
+        }
+        return finishLogin(customer, limiter, limiterKey, customer.checkPassword(password));
+    }
+
+    /**
+     * Attempts to log in a customer without blocking the caller on password hashing.
+     * The password is checked on the password hashing pool; the returned future fails with
+     * {@link java.util.concurrent.RejectedExecutionException} if that pool is saturated.
+     *
+     * @param customerID The customer's ID.
+     * @param password   The customer's password.
+     * @return A future with the logged-in Customer object if successful, or null otherwise.
+     */
+    public static CompletableFuture<Customer> loginCustomerAsync(String customerID, String password) {
+        return loginCustomerAsync(customerID, password, null);
+    }
+
+    /**
+     * Attempts to log in a customer without blocking the caller on password hashing, counting failed
+     * attempts separately per request source like {@link #loginCustomer(String, String, String)}.
+     *
+     * @param customerID The customer's ID.
+     * @param password   The customer's password.
+     * @param source     Where the attempt comes from, or null to count per customer only.
+     * @return A future with the logged-in Customer object if successful, or null otherwise.
+     */
+    public static CompletableFuture<Customer> loginCustomerAsync(String customerID, String password, String source) {
+        String limiterKey = limiterKey(customerID, source);
+        Customer customer = findCustomer(customerID);
+        if (customer == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        LoginAttemptLimiter limiter = loginLimiter;
+        LoginAttemptLimiter.Attempt attempt = startAttempt(limiter, limiterKey);
+        if (attempt == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return customer.checkPasswordAsync(password)
+                .whenComplete((matches, error) -> {
+                    if (error != null) {
+                        limiter.refund(attempt); // the password was never checked
+                    }
+                })
+                .thenApply(matches -> finishLogin(customer, limiter, limiterKey, matches));
+    }
+
+    /**
+     * Replaces the login attempt limiter, e.g. to change the threshold or window.
+     *
+     * @param maxFailures  Number of failed attempts within the window that locks an account.
+     * @param windowMillis Length (in milliseconds) of the sliding window.
+     */
+    public static void configureLoginLimiter(int maxFailures, long windowMillis) {
+        loginLimiter = new LoginAttemptLimiter(maxFailures, windowMillis);
+    }
+
+    private static String limiterKey(String customerID, String source) {
+        return source == null ? customerID : customerID + "|" + source;
+    }
+
+    /**
+     * Looks up a customer for login.
+     *
+     * @param customerID The customer's ID.
+     * @return The Customer object, or null if it does not exist.
+     */
+    private static Customer findCustomer(String customerID) {
         Customer customer = getCustomerByID(customerID);
         if (customer == null) {
             System.out.println("No account found with that ID.");
-            return null;
         }
+        return customer;
+    }
 
-        if (customer.getLoginAttempts() >= 3) {
-            System.out.println("Account locked due to too many failed login attempts.");
-            return null;
+    /**
+     * Reserves a login attempt before the password is checked, so concurrent attempts cannot
+     * get past the limit between the lock check and recording the failure.
+     *
+     * @param limiter    The limiter in use for this login.
+     * @param limiterKey The key failed attempts are counted under.
+     * @return The reserved attempt, or null if the account is locked.
+     */
+    private static LoginAttemptLimiter.Attempt startAttempt(LoginAttemptLimiter limiter, String limiterKey) {
+        LoginAttemptLimiter.Attempt attempt = limiter.tryAcquire(limiterKey);
+        if (attempt == null) {
+            System.out.println("Account locked due to too many failed login attempts. Please try again later.");
         }
+        return attempt;
+    }
 
-        if (!customer.checkPassword(password)) {
-            customer.incrementLoginAttempts();
-            System.out.println("Incorrect password. Attempts remaining: " + (3 - customer.getLoginAttempts()));
+    /**
+     * Records the outcome of a password check. The reserved attempt already counts as a failure,
+     * so only a correct password changes anything.
+     *
+     * @param customer        The customer trying to log in.
+     * @param limiter         The limiter the attempt was reserved in.
+     * @param limiterKey      The key failed attempts are counted under.
+     * @param passwordMatches Whether the password was correct.
+     * @return The customer if the password matched, or null otherwise.
+     */
+    private static Customer finishLogin(Customer customer, LoginAttemptLimiter limiter, String limiterKey,
+                                        boolean passwordMatches) {
+        if (!passwordMatches) {
+            System.out.println("Incorrect password. Attempts remaining: " + Math.max(0, limiter.remainingAttempts(limiterKey)));
             return null;
         }
 
         // Reset attempts on successful login
-        customer.resetLoginAttempts();
+        limiter.reset(limiterKey);
         return customer;
     }
 
@@ -159,46 +429,82 @@ public class AccountService {
      * @return true if the ID exists, false otherwise.
      */
     public static boolean doesCustomerIDExist(String customerID) {
-        return getCustomerByID(customerID) != null;
+        return customerIDTaken(customerID);
     }
     /**
      * Checks whether a customer with the given ID is currently logged in.
+     * A successful check also counts as activity and keeps the session alive.
      *
      * @param customerID The ID to check.
      * @return -returns true if the customer is logged in; otherwise false.
      */
     public static boolean isLoggedIn(String customerID) {
-        for (int i = 0; i < loggedInCount; i++) {
-            if (loggedInUsers[i].equals(customerID)) {
-                return true;
-            }
-        }
-        return false;
+        return sessions.isActive(customerID);
     }
     /**
-     * Adds a customer ID to the list of currently logged-in users, if not already present.
+     * Adds a customer ID to the currently logged-in users, or refreshes its session if already present,
+     * and issues a signed session token for it.
      *
      * @param customerID The ID of the customer to log in.
+     * @return A signed, expiring session token that can be checked with {@link #verifySessionToken(String)}.
      */
-    public static void loginCustomer(String customerID) {
-        if (!isLoggedIn(customerID)) {
-            loggedInUsers[loggedInCount++] = customerID;
+    public static String loginCustomer(String customerID) {
+        sessions.login(customerID);
+        return tokens.issue(customerID);
+    }
+    /**
+     * Checks a session token using only its signature and expiry (no session lookup),
+     * plus the revocation list for tokens that were logged out.
+     *
+     * @param sessionToken The token returned by {@link #loginCustomer(String)}.
+     * @return The customer ID the token belongs to, or null if the token is not valid.
+     */
+    public static String verifySessionToken(String sessionToken) {
+        return tokens.verify(sessionToken);
+    }
+    /**
+     * Keeps a session alive on customer activity: marks the session as used and re-issues the
+     * token with a fresh expiry, so tokens only expire after 30 idle minutes, like sessions do.
+     *
+     * @param sessionToken The customer's current token.
+     * @return The token to use from now on, or null if it is invalid, expired or logged out.
+     */
+    public static String refreshSessionToken(String sessionToken) {
+        String refreshed = tokens.refresh(sessionToken);
+        if (refreshed != null) {
+            sessions.isActive(SessionToken.customerIDOf(refreshed)); // signed just now: no need to verify it again
         }
+        return refreshed;
     }
     /**
-     * Logs out the customer by removing their ID from the logged-in users list.
+     * Logs out the customer by ending their session.
      *
      * @param customerID The ID of the customer to log out.
      */
     public static void logoutCustomer(String customerID) {
-        for (int i = 0; i < loggedInCount; i++) {
-            if (loggedInUsers[i].equals(customerID)) {
-                for (int j = i; j < loggedInCount - 1; j++) {
-                    loggedInUsers[j] = loggedInUsers[j + 1];
-                }
-                loggedInCount--;
-                break;
-            }
-        }
+        sessions.logout(customerID);
+    }
+    /**
+     * Logs out the customer and revokes their session token so it can no longer be used on this
+     * instance (other instances accept it until it expires, see {@link SessionToken}).
+     *
+     * @param customerID   The ID of the customer to log out.
+     * @param sessionToken The token returned by {@link #loginCustomer(String)}.
+     */
+    public static void logoutCustomer(String customerID, String sessionToken) {
+        logoutCustomer(customerID);
+        tokens.revoke(sessionToken);
+    }
+    /**
+     * @return The number of sessions currently held in memory.
+     */
+    public static int getActiveSessionCount() {
+        return sessions.getActiveSessionCount();
+    }
+    /**
+     * @return The number of sessions that have expired after being idle.
+     */
+    public static long getExpiredSessionCount() {
+        return sessions.getExpiredSessionCount();
     }
 }
@@ -0,0 +1,64 @@
+package Project;
+
+/**
+ * The result of a payment authorization: either an approval with its authorization number,
+ * or a decline with the reason given by the bank.
+ */
+public class Authorization {
+    private final boolean approved;
+    private final String authorizationNumber;
+    private final String declineReason;
+    private final long holdID;
+
+    private Authorization(boolean approved, String authorizationNumber, String declineReason, long holdID) {
+        this.approved = approved;
+        this.authorizationNumber = authorizationNumber;
+        this.declineReason = declineReason;
+        this.holdID = holdID;
+    }
+
+    /**
+     * @param authorizationNumber The authorization number issued by the bank.
+     * @return An approved authorization that has already been charged.
+     */
+    public static Authorization approved(String authorizationNumber) {
+        return new Authorization(true, authorizationNumber, null, -1);
+    }
+
+    /**
+     * @param authorizationNumber The authorization number issued by the bank.
+     * @param holdID              The hold placed on the card, to be captured or released later.
+     * @return An approved authorization whose money is on hold.
+     */
+    public static Authorization held(String authorizationNumber, long holdID) {
+        return new Authorization(true, authorizationNumber, null, holdID);
+    }
+
+    /**
+     * @param reason Why the bank declined the payment.
+     * @return A declined authorization.
+     */
+    public static Authorization declined(String reason) {
+        return new Authorization(false, null, reason, -1);
+    }
+
+    // Getters
+    public boolean isApproved() {
+        return approved;
+    }
+
+    public String getAuthorizationNumber() {
+        return authorizationNumber;
+    }
+
+    public String getDeclineReason() {
+        return declineReason;
+    }
+
+    /**
+     * @return The hold placed on the card, or -1 if the payment was charged directly.
+     */
+    public long getHoldID() {
+        return holdID;
+    }
+}
@@ -0,0 +1,63 @@
+package Project;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the bank (no real financial institution is contacted).
+ * Declines invalid or expired cards and cards without enough balance; otherwise
+ * puts the amount on hold in the card's {@link CardLedger} and returns a random four-digit
+ * authorization number. The hold is captured or released by the caller.
+ */
+public class BankSimulator implements PaymentGateway {
+    private final ExecutorService executor;
+
+    /**
+     * Creates a bank simulator that handles authorizations on its own worker threads.
+     */
+    public BankSimulator() {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "bank-simulator-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Authorization> authorize(CreditCard card, long amountCents) {
+        return CompletableFuture.supplyAsync(() -> decide(card, amountCents), executor);
+    }
+
+    private Authorization decide(CreditCard card, long amountCents) {
+        if (card == null || !card.isValid()) {
+            return Authorization.declined("Card number is invalid.");
+        }
+        if (card.isExpired()) {
+            return Authorization.declined("Card expired.");
+        }
+        String authorizationNumber = String.format("%04d", ThreadLocalRandom.current().nextInt(10000));
+        long holdID = card.getLedger().hold(amountCents, "Auth#: " + authorizationNumber);
+        if (holdID < 0) {
+            return Authorization.declined("Insufficient balance.");
+        }
+        return Authorization.held(authorizationNumber, holdID);
+    }
+
+    @Override
+    public void capture(CreditCard card, Authorization authorization) {
+        if (authorization.getHoldID() >= 0) {
+            card.getLedger().capture(authorization.getHoldID());
+        }
+    }
+
+    @Override
+    public void release(CreditCard card, Authorization authorization) {
+        if (authorization.getHoldID() >= 0) {
+            card.getLedger().release(authorization.getHoldID());
+        }
+    }
+}
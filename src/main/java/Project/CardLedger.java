@@ -0,0 +1,262 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Balance ledger of one credit card, kept in whole cents.
+ * <p>
+ * The available balance is an {@link AtomicLong} changed with compare-and-set, so concurrent
+ * charges against the same card can never both succeed when only one fits (no overdraft) and no
+ * lock is held while charging. A payment can either be debited directly or first placed on hold
+ * (the money is set aside) and later captured (charged) or released (given back).
+ * Every change is recorded; the most recent transactions are kept for display.
+ */
+public class CardLedger {
+    private static final int MAX_HISTORY = 100;
+
+    /**
+     * Kinds of ledger transactions.
+     */
+    public enum Type {
+        DEBIT, CREDIT, HOLD, CAPTURE, RELEASE, RESET
+    }
+
+    /**
+     * One recorded change to the ledger.
+     */
+    public static class Transaction {
+        private final Type type;
+        private final long amountCents;
+        private final long balanceAfterCents;
+        private final long holdID;
+        private final String reference;
+        private final long timestamp;
+
+        Transaction(Type type, long amountCents, long balanceAfterCents, long holdID, String reference) {
+            this.type = type;
+            this.amountCents = amountCents;
+            this.balanceAfterCents = balanceAfterCents;
+            this.holdID = holdID;
+            this.reference = reference;
+            this.timestamp = System.currentTimeMillis();
+        }
+
+        // Getters
+        public Type getType() {
+            return type;
+        }
+
+        public long getAmountCents() {
+            return amountCents;
+        }
+
+        public long getBalanceAfterCents() {
+            return balanceAfterCents;
+        }
+
+        /**
+         * @return The hold this transaction belongs to, or -1 if it is not about a hold.
+         */
+        public long getHoldID() {
+            return holdID;
+        }
+
+        public String getReference() {
+            return reference;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return type + " $" + Money.format(amountCents) + " (balance $" + Money.format(balanceAfterCents) + ")"
+                    + (reference == null ? "" : " - " + reference);
+        }
+    }
+
+    private final AtomicLong availableCents = new AtomicLong();
+    private final AtomicLong balanceCents = new AtomicLong(); // available plus held: only charges and credits change it
+    private final Map<Long, Long> holds = new ConcurrentHashMap<>(); // hold ID -> cents held
+    private final AtomicLong nextHoldID = new AtomicLong(1);
+    private final ConcurrentLinkedQueue<Transaction> history = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger historySize = new AtomicInteger();
+
+    /**
+     * Creates a ledger with a starting balance.
+     *
+     * @param balanceCents The starting balance in cents.
+     */
+    public CardLedger(long balanceCents) {
+        availableCents.set(balanceCents);
+        this.balanceCents.set(balanceCents);
+    }
+
+    /**
+     * Charges the card if the available balance covers the amount.
+     *
+     * @param amountCents The amount to charge, in cents.
+     * @param reference   What the charge is for (may be null).
+     * @return true if the card was charged, false if the balance is too low.
+     */
+    public boolean debit(long amountCents, String reference) {
+        long after = take(amountCents);
+        if (after < 0) {
+            return false;
+        }
+        balanceCents.addAndGet(-amountCents);
+        record(new Transaction(Type.DEBIT, amountCents, after, -1, reference));
+        return true;
+    }
+
+    /**
+     * Adds money to the card.
+     *
+     * @param amountCents The amount to add, in cents.
+     * @param reference   Why the money was added (may be null).
+     */
+    public void credit(long amountCents, String reference) {
+        requireNonNegative(amountCents);
+        balanceCents.addAndGet(amountCents);
+        long after = availableCents.addAndGet(amountCents);
+        record(new Transaction(Type.CREDIT, amountCents, after, -1, reference));
+    }
+
+    /**
+     * Sets an amount aside for a payment that is not final yet. The money is no longer available
+     * until the hold is captured or released.
+     *
+     * @param amountCents The amount to hold, in cents.
+     * @param reference   What the hold is for (may be null).
+     * @return The hold ID, or -1 if the balance is too low.
+     */
+    public long hold(long amountCents, String reference) {
+        long after = take(amountCents);
+        if (after < 0) {
+            return -1;
+        }
+        long holdID = nextHoldID.getAndIncrement();
+        holds.put(holdID, amountCents);
+        record(new Transaction(Type.HOLD, amountCents, after, holdID, reference));
+        return holdID;
+    }
+
+    /**
+     * Turns a hold into a final charge.
+     *
+     * @param holdID The ID returned by {@link #hold(long, String)}.
+     * @return true if the hold was captured, false if it was already captured, released or never existed.
+     */
+    public boolean capture(long holdID) {
+        Long amount = holds.remove(holdID);
+        if (amount == null) {
+            return false;
+        }
+        balanceCents.addAndGet(-amount);
+        record(new Transaction(Type.CAPTURE, amount, availableCents.get(), holdID, null));
+        return true;
+    }
+
+    /**
+     * Cancels a hold and makes its money available again.
+     *
+     * @param holdID The ID returned by {@link #hold(long, String)}.
+     * @return true if the hold was released, false if it was already captured, released or never existed.
+     */
+    public boolean release(long holdID) {
+        Long amount = holds.remove(holdID);
+        if (amount == null) {
+            return false;
+        }
+        long after = availableCents.addAndGet(amount);
+        record(new Transaction(Type.RELEASE, amount, after, holdID, null));
+        return true;
+    }
+
+    /**
+     * Replaces the available balance (e.g. when a card is first entered). Money on hold stays on hold.
+     * <p>
+     * The available balance is swapped in one atomic step and the total balance moves by the same
+     * difference, so a charge, hold or capture running at the same time still leaves the total equal
+     * to the available balance plus everything on hold.
+     *
+     * @param balanceCents The new balance in cents.
+     */
+    public void reset(long balanceCents) {
+        long previous = availableCents.getAndSet(balanceCents);
+        this.balanceCents.addAndGet(balanceCents - previous); // holds still come out of it when captured
+        record(new Transaction(Type.RESET, balanceCents, balanceCents, -1, null));
+    }
+
+    /**
+     * @return The balance that can still be charged, in cents (holds are not included).
+     */
+    public long getAvailableCents() {
+        return availableCents.get();
+    }
+
+    /**
+     * @return The money on the card in cents: the available balance plus everything on hold.
+     * This is the balance to save, since holds are not saved (a hold left at a restart is never captured).
+     */
+    public long getBalanceCents() {
+        return balanceCents.get();
+    }
+
+    /**
+     * @return The total amount currently on hold, in cents.
+     */
+    public long getHeldCents() {
+        long total = 0;
+        for (long amount : holds.values()) {
+            total += amount;
+        }
+        return total;
+    }
+
+    /**
+     * @return The most recent transactions, oldest first.
+     */
+    public List<Transaction> getTransactions() {
+        return new ArrayList<>(history);
+    }
+
+    /**
+     * Takes an amount from the available balance with compare-and-set.
+     *
+     * @return The balance afterwards, or -1 if the amount is not available.
+     */
+    private long take(long amountCents) {
+        requireNonNegative(amountCents);
+        while (true) {
+            long current = availableCents.get();
+            if (current < amountCents) {
+                return -1;
+            }
+            long after = current - amountCents;
+            if (availableCents.compareAndSet(current, after)) {
+                return after;
+            }
+        }
+    }
+
+    private void record(Transaction transaction) {
+        history.add(transaction);
+        if (historySize.incrementAndGet() > MAX_HISTORY && history.poll() != null) {
+            historySize.decrementAndGet();
+        }
+    }
+
+    private static void requireNonNegative(long amountCents) {
+        if (amountCents < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative.");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package Project;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for checking credit card numbers and expiration dates without regular
+ * expressions or date formatters.
+ * <p>
+ * A card number is valid if it only contains digits, passes the Luhn checksum and has a length
+ * allowed for its issuer (BIN prefix): Visa 13/16/19, American Express 15, Mastercard 16,
+ * Discover 16-19, anything else 16. Expiration dates are compared against a cached current month
+ * that a background clock tick refreshes every minute.
+ */
+public class CardValidator {
+    private static volatile int currentMonth = monthIndex(YearMonth.now());
+
+    private static final ScheduledExecutorService CLOCK = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "card-clock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        CLOCK.scheduleAtFixedRate(() -> currentMonth = monthIndex(YearMonth.now()), 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Checks a card number in a single pass: digits only, Luhn checksum and issuer length.
+     *
+     * @param number The card number.
+     * @return true if the number is valid, false otherwise.
+     */
+    public static boolean isValidNumber(String number) {
+        if (number == null) {
+            return false;
+        }
+        int length = number.length();
+        if (length < 13 || length > 19) {
+            return false;
+        }
+        int sum = 0;
+        int prefix = 0; // first 6 digits, for the issuer rules
+        for (int i = 0; i < length; i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            int digit = c - '0';
+            if (i < 6) {
+                prefix = prefix * 10 + digit;
+            }
+            // Luhn: double every second digit counting from the right
+            if (((length - i) & 1) == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return sum % 10 == 0 && isAllowedLength(prefix, length);
+    }
+
+    /**
+     * @param prefix The first six digits of the card number.
+     * @param length The number of digits.
+     * @return true if the issuer identified by the prefix uses cards of this length.
+     */
+    private static boolean isAllowedLength(int prefix, int length) {
+        int first = prefix / 100000;
+        int two = prefix / 10000;
+        int four = prefix / 100;
+        if (first == 4) { // Visa
+            return length == 13 || length == 16 || length == 19;
+        }
+        if (two == 34 || two == 37) { // American Express
+            return length == 15;
+        }
+        if ((two >= 51 && two <= 55) || (four >= 2221 && four <= 2720)) { // Mastercard
+            return length == 16;
+        }
+        if (four == 6011 || two == 65 || (prefix / 1000 >= 644 && prefix / 1000 <= 649)) { // Discover
+            return length >= 16;
+        }
+        return length == 16;
+    }
+
+    /**
+     * Parses an expiration date in "MM/YY" format.
+     *
+     * @param expirationDate The expiration date text.
+     * @return The month as year * 12 + (month - 1), or -1 if the format is invalid.
+     */
+    public static int parseExpiry(String expirationDate) {
+        if (expirationDate == null || expirationDate.length() != 5 || expirationDate.charAt(2) != '/') {
+            return -1;
+        }
+        int month = twoDigits(expirationDate, 0);
+        int year = twoDigits(expirationDate, 3);
+        if (month < 1 || month > 12 || year < 0) {
+            return -1;
+        }
+        return (2000 + year) * 12 + (month - 1);
+    }
+
+    /**
+     * Checks a parsed expiry (see {@link #parseExpiry(String)}) against the cached current month.
+     *
+     * @param expiry The parsed expiry, or -1 if it could not be parsed.
+     * @return true if the card is expired or the date was invalid, false otherwise.
+     */
+    public static boolean isExpired(int expiry) {
+        return expiry < 0 || expiry < currentMonth;
+    }
+
+    /**
+     * Sweeps a set of customers and finds those whose stored card cannot be charged
+     * (invalid number or expired). The work is split across all cores.
+     *
+     * @param customers The customers to check.
+     * @return The customers with an unusable card.
+     */
+    public static List<Customer> findUnusableCards(Collection<Customer> customers) {
+        return customers.parallelStream()
+                .filter(customer -> {
+                    CreditCard card = customer.getCreditCard();
+                    return card == null || !card.isValid() || card.isExpired();
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static int twoDigits(String text, int start) {
+        char tens = text.charAt(start);
+        char ones = text.charAt(start + 1);
+        if (tens < '0' || tens > '9' || ones < '0' || ones > '9') {
+            return -1;
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+
+    private static int monthIndex(YearMonth month) {
+        return month.getYear() * 12 + (month.getMonthValue() - 1);
+    }
+}
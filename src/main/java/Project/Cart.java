@@ -1,43 +1,137 @@
 package Project;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Represents a customer's shopping cart, holding selected products and quantities.
+ * Items are kept in the order they were added, keyed by product ID, so adding, removing or
+ * changing the quantity of a product takes the same time however many lines the cart has.
+ * <p>
+ * The customer, a checkout in the {@link CheckoutPipeline} and the {@link CartStore}'s expiry thread
+ * can all use a cart, so every method locks it. While a checkout holds the cart the store does not
+ * put it aside, and a cart that was put aside cannot be checked out any more.
  */
 public class Cart {
-    private List<CartItem> items;
-    private static final double SALES_TAX  = 0.08; //Randomly taken (8%)
+    private final Map<String, CartItem> items; // product ID -> item, in the order added
+    private final Map<String, Inventory.Reservation> reservations = new HashMap<>(); // product ID -> stock held
+    private long version; // changes whenever the items change
+    // Running totals, updated on every change so pricing the cart never walks the items
+    private long subTotalCents;
+    private long itemDiscountCents; // product discounts under totalsRules
+    private PricingRules totalsRules = PricingEngine.getRules();
+    // Quotes for the current version and rules: without delivery, and for the last delivery method asked for
+    private Quote itemsQuote;
+    private Quote deliveryQuote;
+    private long quotedVersion = -1;
+    private PricingRules quotedRules;
+    private int checkouts; // checkouts in progress
+    private boolean putAside; // evicted by the CartStore
 
     /**
      * Contructor to create a new empty shopping cart.
      */
     public Cart(){
-        items = new ArrayList<>();
+        items = new LinkedHashMap<>();
     }
 
     /**
      * Adds a product to the cart or updates its quantity if already present.
+     * If the product's stock is tracked, the units are reserved in the {@link Inventory}.
      * @param product The product to add.
      * @param quantity The quantity to add.
+     * @return true if the product was added, false if the input is invalid or there is not enough stock.
      */
-    public void addItem(Product product, int quantity){
+    public synchronized boolean addItem(Product product, int quantity){
         if (product == null || quantity <= 0){
             System.out.println("Product or quantity is negative and cannot be added to cart.");
-            return;
+            return false;
         }
 
-        for  (CartItem item : items) {
-            if (item.getProduct().getProductName().equals(product.getProductName())){
-                item.setQuantity(item.getQuantity() + quantity); // Update the quantity
-                System.out.println("Updated quantity for " + product.getProductName()+ " to" + item.getQuantity());
-                return;
+        CartItem item = items.get(product.getProductID());
+        if (item != null) {
+            if (!reserveStock(item.getProduct(), item.getQuantity() + quantity)) {
+                return false;
             }
+            int oldQuantity = item.getQuantity();
+            item.setQuantity(oldQuantity + quantity); // Update the quantity
+            updateTotals(item.getProduct(), oldQuantity, item.getQuantity()); // the line keeps its first product
+            System.out.println("Updated quantity for " + product.getProductName()+ " to" + item.getQuantity());
+            return true;
         }
         // If not found, add as a new item
-        items.add(new CartItem(product, quantity));
+        if (!reserveStock(product, quantity)) {
+            return false;
+        }
+        items.put(product.getProductID(), new CartItem(product, quantity));
+        updateTotals(product, 0, quantity);
         System.out.println("Added " + quantity + " x " + product.getProductName() + " to cart.");
+        return true;
+    }
+
+    /**
+     * Makes the cart's reservation for a product hold the given number of units.
+     * @param product The product.
+     * @param quantity The total number of units the cart will hold.
+     * @return true if the units are reserved (or the product's stock is not tracked), false if there are not enough.
+     */
+    private boolean reserveStock(Product product, int quantity) {
+        String productID = product.getProductID();
+        if (!Inventory.isTracked(productID)) {
+            return true;
+        }
+        Inventory.Reservation reservation = reservations.get(productID);
+        if (reservation != null && Inventory.resize(reservation, quantity)) {
+            return true;
+        }
+        if (reservation == null || !reservation.isActive()) {
+            // Nothing held any more (first time, or the reservation expired): reserve everything again
+            reservation = Inventory.reserve(productID, quantity);
+            if (reservation != null) {
+                reservations.put(productID, reservation);
+                return true;
+            }
+            reservations.remove(productID);
+        }
+        System.out.println("Sorry, only " + Inventory.getAvailable(productID) + " more " + product.getProductName()
+                + " in stock.");
+        return false;
+    }
+
+    /**
+     * Reserves stock for tracked items that hold none (their reservation was released, or the
+     * product's stock was only tracked after it was added).
+     * @return true if every tracked item is now reserved, false if something is out of stock.
+     */
+    synchronized boolean reserveMissingStock() {
+        for (CartItem item : items.values()) {
+            String productID = item.getProduct().getProductID();
+            if (Inventory.isTracked(productID) && !reservations.containsKey(productID)
+                    && !reserveStock(item.getProduct(), item.getQuantity())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the stock reservations held for the items in the cart.
+     * @return A copy of the reservations.
+     */
+    synchronized List<Inventory.Reservation> getReservations() {
+        return new ArrayList<>(reservations.values());
+    }
+
+    /**
+     * Replaces the reservation held for a product (after it was renewed at checkout).
+     * @param reservation The new reservation.
+     */
+    synchronized void updateReservation(Inventory.Reservation reservation) {
+        reservations.put(reservation.getProductID(), reservation);
     }
 
     /**
@@ -46,94 +140,256 @@ public class Cart {
      * @param quantityToRemove The quantity to remove. If 0 or less, removes all of this product.
      * @return true if the item was removed/quantity updated, false if product not found.
      */
-    public boolean removeItem(String productID, int quantityToRemove) {
+    public synchronized boolean removeItem(String productID, int quantityToRemove) {
         // **Added validation for null or empty productID**
         if (productID == null || productID.trim().isEmpty()) {
             System.out.println("Error: Product ID cannot be null or empty.");
             return false;
         }
 
-        CartItem itemToRemove = null;
-        for (CartItem item : items) {
-            if (item.getProduct().getProductID().equals(productID)) {
-                itemToRemove = item;
-                break;
-            }
-        }
-
+        CartItem itemToRemove = items.get(productID);
         if (itemToRemove == null) {
             System.out.println("Product with ID " + productID + " not found in cart.");
             return false;
         }
 
+        Inventory.Reservation reservation = reservations.get(productID);
         if (quantityToRemove <= 0 || quantityToRemove >= itemToRemove.getQuantity()) {
-            items.remove(itemToRemove); // Remove all of this item
+            items.remove(productID); // Remove all of this item
+            updateTotals(itemToRemove.getProduct(), itemToRemove.getQuantity(), 0);
+            if (reservation != null) {
+                Inventory.release(reservation);
+                reservations.remove(productID);
+            }
             System.out.println("Removed all " + itemToRemove.getProduct().getProductName() + " from cart.");
         } else {
-            itemToRemove.setQuantity(itemToRemove.getQuantity() - quantityToRemove); // Reduce quantity
+            int oldQuantity = itemToRemove.getQuantity();
+            itemToRemove.setQuantity(oldQuantity - quantityToRemove); // Reduce quantity
+            updateTotals(itemToRemove.getProduct(), oldQuantity, itemToRemove.getQuantity());
+            if (reservation != null) {
+                Inventory.resize(reservation, itemToRemove.getQuantity()); // if it expired, checkout reserves again
+            }
             System.out.println("Removed " + quantityToRemove + " of " + itemToRemove.getProduct().getProductName() + ". Remaining: " + itemToRemove.getQuantity());
         }
         return true;
     }
     /**
-     * Calculates the subtotal of all items in the cart before taxes.
-     * @return The subtotal amount.
+     * Sets the quantity of a product already in the cart, keeping its place in the cart.
+     * The stock reservation is resized to match.
+     * @param productID The ID of the product.
+     * @param quantity The new quantity. If 0, the product is removed.
+     * @return true if the quantity was changed, false if the product is not in the cart,
+     * the quantity is negative or there is not enough stock (the item is left unchanged).
      */
-    public double getSubTotal(){
-        double subTotal = 0;
-        for (CartItem item : items) {
-            subTotal += item.getQuantity() * item.getTotalPrice();
+    public synchronized boolean setQuantity(String productID, int quantity) {
+        CartItem item = productID == null ? null : items.get(productID);
+        if (item == null) {
+            System.out.println("Product with ID " + productID + " not found in cart.");
+            return false;
+        }
+        if (quantity < 0) {
+            System.out.println("Error: Quantity cannot be negative.");
+            return false;
+        }
+        if (quantity == 0) {
+            return removeItem(productID, 0);
+        }
+        if (quantity == item.getQuantity()) {
+            return true;
         }
-        return subTotal;
+        if (!reserveStock(item.getProduct(), quantity)) {
+            return false;
+        }
+        int oldQuantity = item.getQuantity();
+        item.setQuantity(quantity);
+        updateTotals(item.getProduct(), oldQuantity, quantity);
+        System.out.println("Updated quantity for " + item.getProduct().getProductName() + " to " + quantity);
+        return true;
     }
+
+    /**
+     * Updates the running totals after a line's quantity changed.
+     * @param product The product of the line.
+     * @param oldQuantity The quantity before the change (0 for a new line).
+     * @param newQuantity The quantity after the change (0 for a removed line).
+     */
+    private void updateTotals(Product product, int oldQuantity, int newQuantity) {
+        long oldLine = Money.times(product.getPriceCents(), oldQuantity);
+        long newLine = Money.times(product.getPriceCents(), newQuantity);
+        subTotalCents = Math.addExact(subTotalCents, newLine - oldLine);
+        itemDiscountCents += totalsRules.getItemDiscountCents(product.getProductID(), newLine)
+                - totalsRules.getItemDiscountCents(product.getProductID(), oldLine);
+        version++;
+    }
+
+    /**
+     * Prices the cart with the current {@link PricingEngine} rules, from the running totals kept
+     * on every change (the items are only walked again after the rules change). The quote is cached
+     * until the items or the rules change, so repeated calls (e.g. showing the subtotal, tax and total)
+     * just return it. Change the cart only through its own methods, so the totals see every change.
+     * @param deliveryMethod The delivery method to include, or null for the items only.
+     * @return The quote.
+     * @throws IllegalArgumentException If the delivery method is not known.
+     */
+    public synchronized Quote getQuote(String deliveryMethod) {
+        PricingRules rules = PricingEngine.getRules();
+        if (quotedVersion != version || quotedRules != rules) {
+            itemsQuote = null;
+            deliveryQuote = null;
+            quotedVersion = version;
+            quotedRules = rules;
+        }
+        Quote quote = deliveryMethod == null ? itemsQuote : deliveryQuote;
+        if (quote != null && Objects.equals(quote.getDeliveryMethod(), deliveryMethod)) {
+            return quote;
+        }
+        if (totalsRules != rules) {
+            itemDiscountCents = rules.getItemDiscountCents(items.values());
+            totalsRules = rules;
+        }
+        quote = rules.quote(subTotalCents, itemDiscountCents, deliveryMethod);
+        if (deliveryMethod == null) {
+            itemsQuote = quote;
+        } else {
+            deliveryQuote = quote;
+        }
+        return quote;
+    }
+
+    /**
+     * @return A number that changes whenever the items in the cart change.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Calculates the subtotal of all items in the cart before discounts and taxes.
+     * @return The subtotal amount in cents.
+     */
+    public long getSubTotalCents(){
+        return getQuote(null).getSubTotalCents();
+    }
+
+    /**
+     * @return The discounts on the items in the cart, in cents.
+     */
+    public long getDiscountCents() {
+        return getQuote(null).getDiscountCents();
+    }
+
     /**
      * Calculates the sales tax for the current cart total.
-     * @return The calculated tax amount.
+     * @return The calculated tax amount in cents.
      */
-    public double getTax() {
-        return getSubTotal() * SALES_TAX;
+    public long getTaxCents() {
+        return getQuote(null).getTaxCents();
     }
 
     /**
-     * Calculates the grand total of the carts, including subtotal and tax.
-     * @return The total amount.
+     * Calculates the grand total of the carts, including subtotal, discounts and tax (without delivery).
+     * @return The total amount in cents.
      */
+    public long getTotalCents() {
+        return getQuote(null).getTotalCents();
+    }
+
+    // Dollar versions of the totals, for display
+    public double getSubTotal(){
+        return Money.toDollars(getSubTotalCents());
+    }
+    public double getTax() {
+        return Money.toDollars(getTaxCents());
+    }
     public double getTotal() {
-        return getSubTotal() + getTax();
+        return Money.toDollars(getTotalCents());
     }
 
     /**
      * Displays all selected products, their quantities, taxes, and the total price.
      */
-    public void displayCartDetails() {
+    public synchronized void displayCartDetails() {
         if (items.isEmpty()) {
             System.out.println("Your cart is empty.");
             return;
         }
         System.out.println("\n YOUR SHOPPING CART DETAILS:");
-        for (CartItem item : items) {
+        for (CartItem item : items.values()) {
             System.out.println(item.toString());
         }
         System.out.println("--------------------------");
-        System.out.printf("Subtotal: $%.2f%n", getSubTotal());
-        System.out.printf("Tax (%.0f%%): $%.2f%n", SALES_TAX * 100, getTax());
-        System.out.printf("Total:    $%.2f%n", getTotal());
+        Quote quote = getQuote(null);
+        System.out.println("Subtotal: $" + Money.format(quote.getSubTotalCents()));
+        if (quote.getDiscountCents() > 0) {
+            System.out.println("Discount: -$" + Money.format(quote.getDiscountCents()));
+        }
+        System.out.println("Tax (" + quotedRules.getTaxRateText() + "): $" + Money.format(quote.getTaxCents()));
+        System.out.println("Total:    $" + Money.format(quote.getTotalCents()));
         System.out.println("--------------------------");
     }
 
     /**
-     * Clears all items from the cart.
+     * Clears all items from the cart and releases their stock reservations
+     * (reservations already committed by a placed order are not affected).
      */
-    public void clearCart() {
+    public synchronized void clearCart() {
         items.clear();
+        subTotalCents = 0;
+        itemDiscountCents = 0;
+        version++;
+        releaseReservations();
         System.out.println("Cart has been cleared.");
     }
 
+    /**
+     * Gives back the stock held for the items but keeps the items (e.g. the cart is put aside by
+     * the {@link CartStore}); checkout reserves the stock again (see {@link #reserveMissingStock()}).
+     */
+    synchronized void releaseReservations() {
+        for (Inventory.Reservation reservation : reservations.values()) {
+            Inventory.release(reservation);
+        }
+        reservations.clear();
+    }
+
+    /**
+     * Marks the cart as being checked out, so the {@link CartStore} leaves it in memory until
+     * {@link #endCheckout()}.
+     * @return false if the store already put the cart aside (the customer's cart must be fetched again).
+     */
+    synchronized boolean startCheckout() {
+        if (putAside) {
+            return false;
+        }
+        checkouts++;
+        return true;
+    }
+
+    /**
+     * Ends a checkout started with {@link #startCheckout()}.
+     */
+    synchronized void endCheckout() {
+        checkouts--;
+    }
+
+    /**
+     * Puts the cart aside for the {@link CartStore}, unless a checkout holds it. A cart that was
+     * put aside cannot be checked out, so an order is never placed from a cart that is also saved.
+     * @return true if the cart was put aside, false if a checkout is in progress.
+     */
+    synchronized boolean putAside() {
+        if (checkouts > 0) {
+            return false;
+        }
+        putAside = true;
+        return true;
+    }
+
     /**
      * Returns true if the cart is empty, false otherwise.
      * @return boolean indicating if the cart is empty.
      */
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return items.isEmpty();
     }
 
@@ -141,8 +397,20 @@ public class Cart {
      * Returns the list of cart items.
      * @return A List of CartItem objects.
      */
-    public List<CartItem> getItems() {
-        return new ArrayList<>(items); // Return a copy
+    public synchronized List<CartItem> getItems() {
+        return new ArrayList<>(items.values()); // Return a copy, in the order added
+    }
+
+    /**
+     * @return Copies of the items (product and quantity as they are now), in the order added.
+     * Unlike {@link #getItems()}, later changes to the cart do not show in them.
+     */
+    synchronized List<CartItem> copyItems() {
+        List<CartItem> copy = new ArrayList<>(items.size());
+        for (CartItem item : items.values()) {
+            copy.add(new CartItem(item.getProduct(), item.getQuantity()));
+        }
+        return copy;
     }
     /**
      * Completes the checkout process for the current cart contents.
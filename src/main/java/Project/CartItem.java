@@ -34,15 +34,22 @@ public class CartItem {
     }
     /**
      * Calculates the total price for the cart item (product price * quantity).
-     * @return - returns The total price for this cart item.
+     * @return - returns The total price for this cart item, in cents.
+     */
+    public long getTotalPriceCents(){
+        return Money.times(product.getPriceCents(), quantity);
+    }
+
+    /**
+     * @return The total price for this cart item in dollars (for display).
      */
     public double getTotalPrice(){
-        return product.getPrice() * quantity;
+        return Money.toDollars(getTotalPriceCents());
     }
 
     @Override
     public String toString() {
-        return quantity + " x " + product.getProductName() + " (@ $" + String.format("%.2f", product.getPrice()) + " each) = $" + String.format("%.2f", getTotalPrice()) ;
+        return quantity + " x " + product.getProductName() + " (@ $" + Money.format(product.getPriceCents()) + " each) = $" + Money.format(getTotalPriceCents());
     }
 }
 
@@ -0,0 +1,489 @@
+package Project;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps each customer's cart between logins, keyed by customer ID.
+ * <p>
+ * The number of carts in memory is capped: when a new cart would go over the limit, the least
+ * recently used cart is evicted, so memory stays within a fixed budget however many customers
+ * shop. Carts not used for longer than the idle timeout are evicted as well (abandoned carts).
+ * <p>
+ * Idle carts are found with a timing wheel: a ring of buckets, one per tick, where each cart sits
+ * in the bucket of the tick its timeout ends. Using a cart only updates its last-used time; every
+ * tick the background thread looks at a single bucket, evicts the carts in it that are really idle
+ * and moves the others to the bucket of their new deadline. Using a cart and expiring one both
+ * take constant time, and the store never scans all carts.
+ * <p>
+ * An evicted cart releases its stock reservations. If a spill directory is set, a non-empty evicted
+ * cart is written there and restored (reserving its stock again, at the catalog's current prices) the
+ * next time the customer's cart is asked for, e.g. at the next login. A cart being checked out is never
+ * evicted (see {@link Cart#putAside()}), so a cart cannot be both ordered and saved for later.
+ * <p>
+ * Disk work happens outside the store's lock, under a lock of the customer (one of a fixed set of
+ * striped locks). An evicted cart stays listed as waiting to be written until it is, so asking for
+ * that customer's cart meanwhile writes it first and reads it back instead of missing it.
+ */
+public class CartStore {
+    private static final int WHEEL_SIZE = 512;
+    private static final String SPILL_SUFFIX = ".cart";
+    private static final int CUSTOMER_LOCKS = 64; // power of two
+
+    /**
+     * A cart in memory and its place in the timing wheel. Each bucket of the wheel is a circular
+     * list of entries linked through the entries themselves, so an evicted or removed cart is
+     * unlinked at once and nothing in the wheel keeps it alive.
+     */
+    private static class Entry {
+        final String customerID;
+        final Cart cart;
+        long lastUsed;
+        Entry previous; // null when not in a bucket
+        Entry next;
+
+        Entry(String customerID, Cart cart, long lastUsed) {
+            this.customerID = customerID;
+            this.cart = cart;
+            this.lastUsed = lastUsed;
+        }
+
+        /**
+         * @return An empty bucket (a list head that holds no cart).
+         */
+        static Entry bucket() {
+            Entry head = new Entry(null, null, 0);
+            head.previous = head;
+            head.next = head;
+            return head;
+        }
+
+        void linkBefore(Entry head) {
+            previous = head.previous;
+            next = head;
+            head.previous.next = this;
+            head.previous = this;
+        }
+
+        void unlink() {
+            if (previous != null) {
+                previous.next = next;
+                next.previous = previous;
+                previous = null;
+                next = null;
+            }
+        }
+    }
+
+    // Access-ordered: iteration starts at the least recently used cart
+    private final LinkedHashMap<String, Entry> carts = new LinkedHashMap<>(1024, 0.75f, true);
+    // Carts evicted but not written to the spill directory yet
+    private final Map<String, Entry> evicting = new HashMap<>();
+    private final Object[] customerLocks = new Object[CUSTOMER_LOCKS];
+    private final Entry[] wheel;
+    private final int maxCarts;
+    private final long idleTimeoutMillis;
+    private final long tickMillis;
+    private long currentTick;
+    private volatile Path spillDirectory;
+    private volatile ProductListing catalog;
+    private final AtomicLong evictedCarts = new AtomicLong();
+    private final AtomicLong expiredCarts = new AtomicLong();
+    private final AtomicLong spilledCarts = new AtomicLong();
+    private final AtomicLong restoredCarts = new AtomicLong();
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Creates an empty cart store and starts its background expiry task.
+     *
+     * @param maxCarts          The maximum number of carts kept in memory.
+     * @param idleTimeoutMillis How long (in milliseconds) a cart may stay unused before it is evicted.
+     */
+    public CartStore(int maxCarts, long idleTimeoutMillis) {
+        if (maxCarts <= 0 || idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Cart limit and idle timeout must be greater than zero.");
+        }
+        this.maxCarts = maxCarts;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        // One turn of the wheel covers the whole timeout, so a deadline is never more than one turn away
+        this.tickMillis = Math.max(1000, (idleTimeoutMillis + WHEEL_SIZE - 1) / WHEEL_SIZE);
+        for (int i = 0; i < CUSTOMER_LOCKS; i++) {
+            customerLocks[i] = new Object();
+        }
+        this.wheel = new Entry[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = Entry.bucket();
+        }
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::expireIdleCarts, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Keeps evicted carts in a directory so they can be restored later. Carts spilled by an
+     * earlier run are restored from it too.
+     *
+     * @param directory Where spilled carts are written (one file per customer).
+     * @param catalog   The products for sale: restored items get their current price from it,
+     *                  and items no longer in it are left out.
+     * @throws IOException If the directory cannot be created.
+     */
+    public void spillTo(Path directory, ProductListing catalog) throws IOException {
+        if (catalog == null) {
+            throw new IllegalArgumentException("Catalog cannot be null.");
+        }
+        Files.createDirectories(directory);
+        this.catalog = catalog;
+        spillDirectory = directory;
+    }
+
+    /**
+     * Returns the customer's cart and marks it as used: the cart in memory, else the one spilled to
+     * disk (which is then removed from disk), else a new empty cart. Ask for the cart every time the
+     * customer does something with it, so an active cart is never taken for an abandoned one.
+     *
+     * @param customerID The ID of the customer.
+     * @return The customer's cart.
+     */
+    public Cart getCart(String customerID) {
+        if (customerID == null) {
+            throw new IllegalArgumentException("Customer ID cannot be null.");
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = carts.get(customerID); // moves it to the most recently used end
+            if (entry != null) {
+                entry.lastUsed = now;
+                return entry.cart;
+            }
+        }
+        List<Entry> evicted = new ArrayList<>();
+        Cart cart;
+        // Not in memory: read the spilled cart (if any) without holding the store's lock. The customer's
+        // lock keeps another restore, a spill or a removal of this customer's cart from running meanwhile.
+        synchronized (customerLock(customerID)) {
+            Entry waiting;
+            synchronized (this) {
+                Entry entry = carts.get(customerID);
+                if (entry != null) { // restored by someone else while this thread waited
+                    entry.lastUsed = now;
+                    return entry.cart;
+                }
+                waiting = evicting.remove(customerID);
+            }
+            if (waiting != null) { // evicted but not written yet: write it now, so it is read back below
+                waiting.cart.releaseReservations();
+                spill(waiting);
+            }
+            cart = restore(customerID);
+            synchronized (this) {
+                Entry entry = new Entry(customerID, cart, now);
+                carts.put(customerID, entry);
+                schedule(entry, currentTick);
+                evictOverLimit(entry, evicted);
+            }
+        }
+        evict(evicted); // after the customer's lock is released: evicting takes the lock of each evicted customer
+        return cart;
+    }
+
+    /**
+     * Drops a customer's cart from memory and disk (e.g. the account was deleted), releasing its stock.
+     *
+     * @param customerID The ID of the customer.
+     */
+    public void remove(String customerID) {
+        synchronized (customerLock(customerID)) {
+            Entry entry;
+            Entry waiting;
+            synchronized (this) {
+                entry = carts.remove(customerID);
+                if (entry != null) {
+                    entry.unlink();
+                }
+                waiting = evicting.remove(customerID);
+            }
+            if (entry != null) {
+                entry.cart.releaseReservations();
+            }
+            if (waiting != null) {
+                waiting.cart.releaseReservations();
+            }
+            Path directory = spillDirectory;
+            if (directory != null) {
+                try {
+                    Files.deleteIfExists(spillFile(directory, customerID));
+                } catch (IOException e) {
+                    System.out.println("Warning: saved cart of " + customerID + " could not be deleted: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the background expiry task, releases the stock of every cart and, if a spill directory is set,
+     * writes every non-empty cart to it so the carts survive a restart. Carts still being checked out are not written, so their
+     * items cannot come back after the order is placed.
+     */
+    public void close() {
+        sweeper.shutdownNow();
+        List<Entry> saved = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : carts.values()) {
+                entry.unlink();
+                if (entry.cart.putAside()) {
+                    evicting.put(entry.customerID, entry);
+                    saved.add(entry);
+                } else {
+                    System.out.println("Cart of " + entry.customerID + " is being checked out and was not saved.");
+                }
+            }
+            carts.clear();
+            saved.addAll(evicting.values()); // also finish writing carts evicted just before
+        }
+        evict(saved);
+    }
+
+    /**
+     * @return The number of carts in memory.
+     */
+    public synchronized int size() {
+        return carts.size();
+    }
+
+    /**
+     * @return The number of carts evicted because the store was full.
+     */
+    public long getEvictedCartCount() {
+        return evictedCarts.get();
+    }
+
+    /**
+     * @return The number of carts evicted because they were idle.
+     */
+    public long getExpiredCartCount() {
+        return expiredCarts.get();
+    }
+
+    /**
+     * @return The number of carts written to the spill directory.
+     */
+    public long getSpilledCartCount() {
+        return spilledCarts.get();
+    }
+
+    /**
+     * @return The number of carts read back from the spill directory.
+     */
+    public long getRestoredCartCount() {
+        return restoredCarts.get();
+    }
+
+    /**
+     * Advances the timing wheel to the current time, evicting idle carts in every bucket passed.
+     * Runs on the background sweeper once per tick.
+     */
+    void expireIdleCarts() {
+        long now = System.currentTimeMillis();
+        long nowTick = now / tickMillis;
+        List<Entry> expired = new ArrayList<>();
+        synchronized (this) {
+            // at most one turn: after that every bucket has been looked at
+            long from = Math.max(currentTick + 1, nowTick - WHEEL_SIZE + 1);
+            for (long tick = from; tick <= nowTick; tick++) {
+                currentTick = tick;
+                Entry bucket = wheel[(int) (tick % WHEEL_SIZE)];
+                Entry entry = bucket.next;
+                // empty the bucket first: an entry scheduled again may land in it (one turn later)
+                bucket.previous = bucket;
+                bucket.next = bucket;
+                while (entry != bucket) {
+                    Entry next = entry.next;
+                    entry.previous = null;
+                    entry.next = null;
+                    if (entry.lastUsed + idleTimeoutMillis <= now && entry.cart.putAside()) {
+                        carts.remove(entry.customerID);
+                        evicting.put(entry.customerID, entry);
+                        expired.add(entry);
+                    } else {
+                        // used since it was scheduled, or being checked out: move it to its new deadline
+                        schedule(entry, tick);
+                    }
+                    entry = next;
+                }
+            }
+        }
+        expiredCarts.addAndGet(expired.size());
+        evict(expired);
+    }
+
+    /**
+     * Puts an entry in the bucket of the tick its idle timeout ends (never the bucket being processed).
+     */
+    private void schedule(Entry entry, long afterTick) {
+        long deadlineTick = (entry.lastUsed + idleTimeoutMillis + tickMillis - 1) / tickMillis;
+        long tick = Math.max(deadlineTick, afterTick + 1);
+        entry.linkBefore(wheel[(int) (tick % WHEEL_SIZE)]);
+    }
+
+    /**
+     * Removes least recently used carts while over the limit, skipping carts being checked out
+     * (the store may stay over the limit until their checkouts end). Called with the lock held;
+     * the evicted entries are handled after the lock is released.
+     *
+     * @param added   The cart just added, which is kept.
+     * @param evicted Receives the evicted entries.
+     */
+    private void evictOverLimit(Entry added, List<Entry> evicted) {
+        Iterator<Entry> oldestFirst = carts.values().iterator();
+        while (carts.size() > maxCarts && oldestFirst.hasNext()) {
+            Entry oldest = oldestFirst.next();
+            if (oldest == added || !oldest.cart.putAside()) {
+                continue;
+            }
+            oldestFirst.remove();
+            oldest.unlink();
+            evicting.put(oldest.customerID, oldest);
+            evicted.add(oldest);
+            evictedCarts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Releases the stock of evicted carts and writes them to the spill directory, unless a
+     * {@link #getCart(String)} for the customer already did.
+     */
+    private void evict(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            synchronized (customerLock(entry.customerID)) {
+                synchronized (this) {
+                    if (!evicting.remove(entry.customerID, entry)) {
+                        continue;
+                    }
+                }
+                entry.cart.releaseReservations();
+                spill(entry);
+            }
+        }
+    }
+
+    private Object customerLock(String customerID) {
+        int hash = customerID.hashCode();
+        return customerLocks[(hash ^ (hash >>> 16)) & (CUSTOMER_LOCKS - 1)];
+    }
+
+    /**
+     * Writes a cart to the spill directory (if set and the cart is not empty).
+     * The file is written under a temporary name and then renamed, so a crash never leaves half a cart.
+     */
+    private void spill(Entry entry) {
+        Path directory = spillDirectory;
+        List<CartItem> items = entry.cart.getItems();
+        if (directory == null || items.isEmpty()) {
+            return;
+        }
+        Path file = spillFile(directory, entry.customerID);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (OutputStream stream = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(stream)) {
+                out.writeInt(items.size());
+                for (CartItem item : items) {
+                    Product product = item.getProduct();
+                    out.writeUTF(product.getProductID());
+                    out.writeUTF(text(product.getProductName()));
+                    out.writeUTF(text(product.getProductDescription()));
+                    out.writeLong(product.getRegularPriceCents());
+                    out.writeLong(product.getSalesPriceCents());
+                    out.writeInt(item.getQuantity());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            spilledCarts.incrementAndGet();
+        } catch (IOException e) {
+            System.out.println("Warning: cart of " + entry.customerID + " could not be saved: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads and deletes a customer's spilled cart. The items are added again with the catalog's current
+     * product (the saved name and prices only describe the item), so their stock is reserved again;
+     * items no longer sold or no longer in stock are left out.
+     *
+     * @return The restored cart, or a new empty cart if none was spilled.
+     */
+    private Cart restore(String customerID) {
+        Cart cart = new Cart();
+        Path directory = spillDirectory;
+        if (directory == null) {
+            return cart;
+        }
+        Path file = spillFile(directory, customerID);
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(stream)) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String productID = in.readUTF();
+                String name = in.readUTF();
+                in.readUTF(); // description
+                in.readLong(); // regular price
+                in.readLong(); // sales price
+                int quantity = in.readInt();
+                Product product = catalog.getProductByID(productID);
+                if (product == null) {
+                    System.out.println(name + " is no longer sold and was removed from the saved cart.");
+                } else {
+                    cart.addItem(product, quantity);
+                }
+            }
+            restoredCarts.incrementAndGet();
+        } catch (NoSuchFileException e) {
+            return cart;
+        } catch (IOException e) {
+            System.out.println("Warning: saved cart of " + customerID + " could not be read: " + e.getMessage());
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println("Warning: saved cart of " + customerID + " could not be deleted: " + e.getMessage());
+        }
+        return cart;
+    }
+
+    /**
+     * @return The spill file of a customer; the ID is hex-encoded so any ID is a safe file name.
+     */
+    private static Path spillFile(Path directory, String customerID) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : customerID.getBytes(StandardCharsets.UTF_8)) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return directory.resolve(name.append(SPILL_SUFFIX).toString());
+    }
+
+    private static String text(String value) {
+        return value == null ? "" : value;
+    }
+}
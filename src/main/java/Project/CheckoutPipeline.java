@@ -0,0 +1,572 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs checkouts as a pipeline of stages: validate, price, authorize, persist, commit and notify.
+ * <p>
+ * Each stage has its own worker threads and a bounded queue, so a slow bank authorization only
+ * holds up the authorize stage while the next orders keep being validated and priced. When a
+ * stage's queue is full, whoever hands it work waits until there is room (back-pressure instead
+ * of unbounded queues). Every stage reports its queue depth and average wait/service time.
+ * <p>
+ * Persist appends the order to the journal and moves on; the journal's writer thread only hands
+ * the journaled checkout to the commit stage, which charges the cards of every checkout journaled
+ * so far, journals that they were charged and saves those customers with one write to the customer log.
+ * An order whose charge was never journaled (the checkout failed, or the process stopped) is not
+ * replayed from the journal.
+ */
+public class CheckoutPipeline {
+    /**
+     * One step of the pipeline with its own workers, queue and statistics.
+     */
+    public static class Stage {
+        private final String name;
+        private final ThreadPoolExecutor workers;
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder serviceNanos = new LongAdder();
+
+        Stage(String name, int threads, int queueCapacity) {
+            this.name = name;
+            AtomicInteger count = new AtomicInteger();
+            this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "checkout-" + name + "-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (task, executor) -> {
+                        // Queue full: wait for room instead of dropping the order
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("Checkout stage " + name + " is shut down");
+                        }
+                        try {
+                            executor.getQueue().put(task);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while waiting for stage " + name, e);
+                        }
+                    });
+            this.workers.prestartAllCoreThreads();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The number of checkouts waiting for this stage.
+         */
+        public int getQueueDepth() {
+            return workers.getQueue().size();
+        }
+
+        /**
+         * @return The number of checkouts this stage has finished.
+         */
+        public long getProcessedCount() {
+            return processed.sum();
+        }
+
+        /**
+         * @return Average time (microseconds) a checkout waited in this stage's queue.
+         */
+        public double getAverageWaitMicros() {
+            long count = processed.sum();
+            return count == 0 ? 0 : waitNanos.sum() / 1000.0 / count;
+        }
+
+        /**
+         * @return Average time (microseconds) this stage spent working on a checkout.
+         */
+        public double getAverageServiceMicros() {
+            long count = processed.sum();
+            return count == 0 ? 0 : serviceNanos.sum() / 1000.0 / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: queue=%d, done=%d, avg wait=%.1fus, avg service=%.1fus",
+                    name, getQueueDepth(), getProcessedCount(), getAverageWaitMicros(), getAverageServiceMicros());
+        }
+    }
+
+    /**
+     * A checkout moving through the pipeline.
+     */
+    private static class CheckoutRequest {
+        final String sessionToken;
+        final Customer customer;
+        final Cart cart;
+        final List<CartItem> items;
+        final boolean stockReserved;
+        final List<Inventory.Reservation> reservations;
+        final String deliveryMethod;
+        final Consumer<Order> onPlaced;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        Throwable journalError;
+        boolean stockCommitted;
+        boolean captured;
+        Quote quote;
+        PaymentGateway gateway;
+        CreditCard card;
+        Authorization authorization;
+        Order order;
+        OrderJournal journal;
+
+        CheckoutRequest(String sessionToken, Customer customer, Cart cart, String deliveryMethod,
+                        Consumer<Order> onPlaced) {
+            this.sessionToken = sessionToken;
+            this.customer = customer;
+            this.cart = cart;
+            this.items = cart.copyItems(); // snapshot taken on the caller's thread; the cart changes its own items
+            this.stockReserved = cart.reserveMissingStock();
+            this.reservations = cart.getReservations();
+            this.deliveryMethod = deliveryMethod;
+            this.onPlaced = onPlaced;
+        }
+    }
+
+    private final OrderStore orders;
+    private final OrderIdGenerator orderIds;
+    private final SalesAggregates sales;
+    private final Supplier<PaymentGateway> paymentGateway;
+    private final Stage validate;
+    private final Stage price;
+    private final Stage authorize;
+    private final Stage persist;
+    private final Stage commit;
+    private final Stage notify;
+    private final int queueCapacity;
+    // Authorizations in flight or approved and waiting for persist; never more than the persist queue holds,
+    // so the bank's reply never waits for room
+    private final Semaphore persistSlots;
+    // Checkouts handed to the journal whose commit task has not finished; never more than the commit queue holds,
+    // so the journal writer never waits for room
+    private final Semaphore commitSlots;
+    private final ConcurrentLinkedQueue<CheckoutRequest> journaled = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a pipeline and starts its worker threads.
+     *
+     * @param orders         Where placed orders are stored.
+     * @param orderIds       Generator for new order IDs.
+     * @param sales          Sales totals updated for every placed order.
+     * @param paymentGateway Supplies the gateway used to authorize payments.
+     * @param queueCapacity  Maximum number of checkouts waiting in each stage.
+     */
+    public CheckoutPipeline(OrderStore orders, OrderIdGenerator orderIds, SalesAggregates sales,
+                            Supplier<PaymentGateway> paymentGateway, int queueCapacity) {
+        this(orders, orderIds, sales, paymentGateway, queueCapacity,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Creates a pipeline with a given number of workers in its validate, price and authorize stages.
+     *
+     * @param orders         Where placed orders are stored.
+     * @param orderIds       Generator for new order IDs.
+     * @param sales          Sales totals updated for every placed order.
+     * @param paymentGateway Supplies the gateway used to authorize payments.
+     * @param queueCapacity  Maximum number of checkouts waiting in each stage.
+     * @param workers        Threads of each of the validate, price and authorize stages.
+     */
+    CheckoutPipeline(OrderStore orders, OrderIdGenerator orderIds, SalesAggregates sales,
+                     Supplier<PaymentGateway> paymentGateway, int queueCapacity, int workers) {
+        this.orders = orders;
+        this.orderIds = orderIds;
+        this.sales = sales;
+        this.paymentGateway = paymentGateway;
+        this.validate = new Stage("validate", workers, queueCapacity);
+        this.price = new Stage("price", workers, queueCapacity);
+        this.authorize = new Stage("authorize", workers, queueCapacity); // the bank replies asynchronously
+        this.persist = new Stage("persist", 2, queueCapacity);
+        this.commit = new Stage("commit", 1, queueCapacity); // one thread, so journaled checkouts pile up into batches
+        this.notify = new Stage("notify", 1, queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.persistSlots = new Semaphore(queueCapacity);
+        this.commitSlots = new Semaphore(queueCapacity);
+    }
+
+    /**
+     * Starts a checkout. The cart must not be changed until the returned future completes
+     * (it is cleared when the order has been placed).
+     *
+     * @param sessionToken   The customer's session token, or null if the caller uses in-process sessions.
+     * @param customer       The Customer object placing the order.
+     * @param cart           The Cart object containing the items to be ordered.
+     * @param deliveryMethod The chosen delivery method ("mail" or "pickup").
+     * @return A future with a message indicating the success or failure of the order placement.
+     */
+    public CompletableFuture<String> submit(String sessionToken, Customer customer, Cart cart, String deliveryMethod) {
+        return submit(sessionToken, customer, cart, deliveryMethod, null);
+    }
+
+    /**
+     * Starts a checkout and reports the placed order (only if one is placed) before the result completes.
+     *
+     * @param sessionToken   The customer's session token, or null if the caller uses in-process sessions.
+     * @param customer       The Customer object placing the order.
+     * @param cart           The Cart object containing the items to be ordered.
+     * @param deliveryMethod The chosen delivery method ("mail" or "pickup").
+     * @param onPlaced       Receives the order once it has been placed (may be null).
+     * @return A future with a message indicating the success or failure of the order placement.
+     */
+    CompletableFuture<String> submit(String sessionToken, Customer customer, Cart cart, String deliveryMethod,
+                                     Consumer<Order> onPlaced) {
+        if (!cart.startCheckout()) {
+            return CompletableFuture.completedFuture("Error: Your cart was put aside, please open it again");
+        }
+        CheckoutRequest request;
+        try {
+            request = new CheckoutRequest(sessionToken, customer, cart, deliveryMethod, onPlaced);
+        } catch (RuntimeException e) {
+            cart.endCheckout(); // the checkout never started, so nothing else will end it
+            throw e;
+        }
+        request.result.whenComplete((message, error) -> cart.endCheckout());
+        enter(validate, request, this::validateStep);
+        return request.result;
+    }
+
+    /**
+     * @param order A placed order.
+     * @return The message returned to the customer for a placed order.
+     */
+    static String placedMessage(Order order) {
+        return "Order placed successfully!\n" + order.getOrderDetails();
+    }
+
+    /**
+     * @return The stages in pipeline order, for monitoring.
+     */
+    public List<Stage> getStages() {
+        return List.of(validate, price, authorize, persist, commit, notify);
+    }
+
+    /**
+     * Waits until every journaled checkout has been committed (charged, saved and stored), e.g.
+     * after the journal is closed and before the customer store is.
+     *
+     * @param timeoutMillis How long to wait at most.
+     * @return true if nothing is left to commit, false if the time ran out.
+     */
+    public boolean awaitCommitted(long timeoutMillis) {
+        try {
+            if (commitSlots.tryAcquire(queueCapacity, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                commitSlots.release(queueCapacity);
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Stops all worker threads. Checkouts still in the pipeline are abandoned.
+     */
+    public void shutdown() {
+        for (Stage stage : getStages()) {
+            if (stage == commit) {
+                stage.workers.shutdown(); // no interrupt: it may be forcing the customer log to disk
+            } else {
+                stage.workers.shutdownNow();
+            }
+        }
+    }
+
+    private void enter(Stage stage, CheckoutRequest request, Consumer<CheckoutRequest> step) {
+        long queuedAt = System.nanoTime();
+        try {
+            stage.workers.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    step.accept(request);
+                } catch (RuntimeException e) {
+                    fail(request, "Error: Order could not be placed: " + e.getMessage());
+                } finally {
+                    stage.waitNanos.add(start - queuedAt);
+                    stage.serviceNanos.add(System.nanoTime() - start);
+                    stage.processed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(request, "Error: Order could not be placed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ends a checkout that went wrong: gives back the payment hold and the stock it holds
+     * (unless the card was already charged), then reports the error.
+     */
+    private void fail(CheckoutRequest request, String message) {
+        try {
+            if (!request.captured) {
+                if (request.authorization != null) {
+                    request.gateway.release(request.card, request.authorization);
+                }
+                if (request.stockCommitted) {
+                    restock(request.reservations);
+                } else {
+                    request.cart.releaseReservations();
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Could not undo failed checkout: " + e.getMessage());
+        } finally {
+            request.result.complete(message);
+        }
+    }
+
+    private void validateStep(CheckoutRequest request) {
+        boolean loggedIn;
+        if (request.sessionToken != null) {
+            loggedIn = request.customer.getCustomerID().equals(AccountService.verifySessionToken(request.sessionToken));
+        } else {
+            loggedIn = AccountService.isLoggedIn(request.customer.getCustomerID());
+        }
+        if (!loggedIn) {
+            request.result.complete("Error: You must be logged in to place an order");
+        } else if (request.items.isEmpty()) {
+            request.result.complete("Error: Your cart is empty");
+        } else if (!PricingEngine.getRules().isDeliveryMethod(request.deliveryMethod)) {
+            request.result.complete("Error: Invalid delivery method");
+        } else if (!request.stockReserved || !renewReservations(request)) {
+            request.result.complete("Error: Sorry, some items in your cart are no longer in stock");
+        } else {
+            enter(price, request, this::priceStep);
+        }
+    }
+
+    private void priceStep(CheckoutRequest request) {
+        // One read of the rules: a reload while this checkout runs doesn't change its price
+        request.quote = PricingEngine.quote(request.items, request.deliveryMethod);
+        enter(authorize, request, this::authorizeStep);
+    }
+
+    private void authorizeStep(CheckoutRequest request) {
+        request.card = request.customer.getCreditCard();
+        request.gateway = paymentGateway.get();
+        try {
+            persistSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(request, "Error: Payment could not be processed");
+            return;
+        }
+        CompletableFuture<Authorization> reply;
+        try {
+            reply = request.gateway.authorize(request.card, request.quote.getTotalCents());
+        } catch (RuntimeException e) {
+            persistSlots.release();
+            throw e;
+        }
+        // Don't wait for the bank: its reply only queues the checkout for persist (a slot is held, so there is room)
+        reply.whenComplete((authorization, error) -> {
+            if (error != null) {
+                persistSlots.release();
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                System.out.println("Payment failed: " + cause.getMessage());
+                fail(request, "Error: Payment could not be processed");
+                return;
+            }
+            if (!authorization.isApproved()) {
+                persistSlots.release();
+                System.out.println("Payment declined by bank: " + authorization.getDeclineReason());
+                request.result.complete(OrderService.PAYMENT_DECLINED + ": " + authorization.getDeclineReason());
+                return;
+            }
+            System.out.println("Payment approved. Auth#: " + authorization.getAuthorizationNumber());
+            request.authorization = authorization;
+            enter(persist, request, this::persistStep);
+        });
+    }
+
+    private void persistStep(CheckoutRequest request) {
+        persistSlots.release(); // out of the persist queue
+        request.order = new Order(orderIds.nextOrderId(), request.customer, request.items,
+                request.deliveryMethod, request.authorization.getAuthorizationNumber(), request.quote);
+        if (!commitStock(request)) {
+            request.gateway.release(request.card, request.authorization);
+            request.result.complete("Error: Sorry, some items sold out before your order was completed. "
+                    + "Your card was not charged.");
+            return;
+        }
+        request.stockCommitted = true;
+        try {
+            commitSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(request, "Error: Order could not be placed. Your card was not charged.");
+            return;
+        }
+        CompletableFuture<Void> written;
+        try {
+            request.journal = OrderService.getJournal(); // after taking a slot, so closing the journal waits for this order
+            written = request.journal == null ? CompletableFuture.completedFuture(null)
+                    : request.journal.appendPending(request.order);
+        } catch (RuntimeException e) {
+            commitSlots.release();
+            throw e;
+        }
+        // Journal first (group commit, so this worker doesn't wait for the fsync), then charge and make it visible.
+        // The order is journaled as pending: until its capture is journaled too, it is not replayed.
+        // This runs on the journal writer: only queue the checkout (a slot is held, so there is room)
+        written.whenComplete((ignored, error) -> {
+            request.journalError = error;
+            journaled.add(request);
+            enter(commit, request, this::commitStep);
+        });
+    }
+
+    /**
+     * Commits every checkout journaled so far: charges the cards, journals the charges, saves the customers
+     * with one write to the customer log, then makes the orders visible and passes them on to notify.
+     */
+    private void commitStep(CheckoutRequest ignored) {
+        List<CheckoutRequest> batch = new ArrayList<>();
+        CheckoutRequest next;
+        while ((next = journaled.poll()) != null) {
+            batch.add(next);
+        }
+        try {
+            List<CheckoutRequest> charged = new ArrayList<>(batch.size());
+            Set<Customer> changed = new LinkedHashSet<>();
+            for (CheckoutRequest request : batch) {
+                try {
+                    if (request.journalError != null) {
+                        System.out.println("Order " + request.order.getOrderId() + " could not be journaled: "
+                                + request.journalError.getMessage());
+                        fail(request, "Error: Order could not be saved. Your card was not charged.");
+                        continue;
+                    }
+                    if (orders.getByID(request.order.getOrderId()) != null) {
+                        // Only the commit stage adds orders, so this check cannot race with another add
+                        System.out.println("Order ID " + request.order.getOrderId() + " is already in use.");
+                        fail(request, "Error: Order could not be placed. Your card was not charged.");
+                        continue;
+                    }
+                    request.gateway.capture(request.card, request.authorization);
+                    request.captured = true;
+                    charged.add(request);
+                    changed.add(request.customer); // card balance changed
+                } catch (RuntimeException e) {
+                    fail(request, "Error: Order could not be placed: " + e.getMessage());
+                }
+            }
+            journalCaptures(charged);
+            AccountService.saveCustomers(changed);
+            for (CheckoutRequest request : charged) {
+                try {
+                    sales.record(request.order); // before the order is visible, so a rebuild never counts it twice
+                    if (!orders.add(request.order)) {
+                        throw new IllegalStateException("Order ID " + request.order.getOrderId() + " is already in use");
+                    }
+                    enter(notify, request, this::notifyStep);
+                } catch (RuntimeException e) {
+                    fail(request, "Error: Order could not be placed: " + e.getMessage());
+                }
+            }
+        } finally {
+            // One slot per commit task, not per checkout drained: the tasks of checkouts committed by an earlier
+            // task are still queued, and the journal writer (which this task may wait for) must never find the queue full
+            commitSlots.release();
+        }
+    }
+
+    /**
+     * Journals that the charged orders were captured (one group commit for the batch) and waits until it is
+     * on disk, so a replay brings back exactly the orders that were charged.
+     */
+    private void journalCaptures(List<CheckoutRequest> charged) {
+        List<CompletableFuture<Void>> written = new ArrayList<>(charged.size());
+        for (CheckoutRequest request : charged) {
+            written.add(request.journal == null ? CompletableFuture.completedFuture(null)
+                    : request.journal.appendCaptured(request.order.getOrderId()));
+        }
+        for (int i = 0; i < charged.size(); i++) {
+            try {
+                written.get(i).join();
+            } catch (CompletionException | CancellationException e) {
+                // The card is already charged, so the order is still placed; only its replay is lost
+                System.out.println("Warning: charge of order " + charged.get(i).order.getOrderId()
+                        + " could not be journaled: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Makes sure the stock reserved for the cart is still held (reserving again if a reservation expired).
+     *
+     * @return true if every item is reserved, false if something is out of stock.
+     */
+    private boolean renewReservations(CheckoutRequest request) {
+        for (int i = 0; i < request.reservations.size(); i++) {
+            Inventory.Reservation reservation = request.reservations.get(i);
+            Inventory.Reservation renewed = Inventory.renew(reservation);
+            if (renewed == null) {
+                return false;
+            }
+            if (renewed != reservation) {
+                request.reservations.set(i, renewed);
+                request.cart.updateReservation(renewed);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the reserved stock as sold. If a reservation expired after validation it is reserved again;
+     * if that fails, everything already committed is put back.
+     *
+     * @return true if all items were committed.
+     */
+    private boolean commitStock(CheckoutRequest request) {
+        for (int i = 0; i < request.reservations.size(); i++) {
+            Inventory.Reservation reservation = request.reservations.get(i);
+            if (Inventory.commit(reservation)) {
+                continue;
+            }
+            Inventory.Reservation renewed = Inventory.renew(reservation);
+            if (renewed == null || !Inventory.commit(renewed)) {
+                restock(request.reservations.subList(0, i));
+                return false;
+            }
+            request.reservations.set(i, renewed);
+        }
+        return true;
+    }
+
+    private void restock(List<Inventory.Reservation> committed) {
+        for (Inventory.Reservation reservation : committed) {
+            Inventory.restock(reservation);
+        }
+    }
+
+    private void notifyStep(CheckoutRequest request) {
+        request.cart.clearCart();
+        if (request.onPlaced != null) {
+            request.onPlaced.accept(request.order);
+        }
+        request.result.complete(placedMessage(request.order));
+    }
+}
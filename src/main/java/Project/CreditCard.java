@@ -1,8 +1,5 @@
 package Project;
 
-import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 /**
  * Represents a customer's credit card information.
  */
@@ -11,40 +8,66 @@ public class CreditCard {
     private String holderName;
     private String expirationDate;
     private String cvv;
-    private double balance;
+    private final CardLedger ledger = new CardLedger(0); // balance in cents, safe for concurrent charges
+    // Worked out once when the number/date is set, instead of on every payment
+    private boolean numberValid;
+    private int expiry;
 
 
     /**
      * Constructor for CreditCard with default balance of $1000.
-     * @param ccNumber   16-digit credit card number.
+     * @param ccNumber   Credit card number (usually 16 digits).
      * @param cardHolder Name of the cardholder.
      * @param exDate     Expiration date of the Credit Card (e.g., "12/25").
      * @param CVV        The Card Verification Value (3 or 4 digits).
      *
      */
     public CreditCard(String ccNumber, String cardHolder, String exDate, String CVV) {
-        this.number = ccNumber;
+        setNumber(ccNumber);
         this.holderName = cardHolder;
-        this.expirationDate = exDate;
+        setExpirationDate(exDate);
         this.cvv = CVV;
-        this.balance = 1000.0;
+        ledger.reset(Money.toCents(1000.0));
     }
 
     /**
      * Constructor for CreditCard with custom balance.
      *
-     * @param ccNumber   16-digit credit card number.
+     * @param ccNumber   Credit card number (usually 16 digits).
      * @param cardHolder Name of the cardholder.
      * @param exDate     Expiration date of the Credit Card (e.g., "12/25").
      * @param CVV        The Card Verification Value (3 or 4 digits).
      * @param balance    Balance in the card.
      */
     public CreditCard(String ccNumber, String cardHolder, String exDate, String CVV, double balance) {
-        this.number = ccNumber;
+        setNumber(ccNumber);
         this.holderName = cardHolder;
-        this.expirationDate = exDate;
+        setExpirationDate(exDate);
         this.cvv = CVV;
-        this.balance = balance;
+        ledger.reset(Money.toCents(balance));
+    }
+
+    private CreditCard() {
+    }
+
+    /**
+     * Recreates a saved card with its exact balance (used when loading saved customers).
+     *
+     * @param ccNumber     Credit card number.
+     * @param cardHolder   Name of the cardholder.
+     * @param exDate       Expiration date of the Credit Card.
+     * @param CVV          The Card Verification Value (may be empty).
+     * @param balanceCents Balance in the card, in cents.
+     * @return The restored CreditCard.
+     */
+    static CreditCard restore(String ccNumber, String cardHolder, String exDate, String CVV, long balanceCents) {
+        CreditCard card = new CreditCard();
+        card.setNumber(ccNumber);
+        card.holderName = cardHolder;
+        card.setExpirationDate(exDate);
+        card.cvv = CVV;
+        card.ledger.reset(balanceCents);
+        return card;
     }
 
     // Getters
@@ -64,13 +87,24 @@ public class CreditCard {
         return cvv;
     }
 
+    /**
+     * @return The balance that can still be charged (money on hold is not included).
+     */
     public double getBalance() {
-        return balance;
+        return Money.toDollars(ledger.getAvailableCents());
+    }
+
+    /**
+     * @return The card's balance ledger, used to charge the card.
+     */
+    public CardLedger getLedger() {
+        return ledger;
     }
 
     // Setters for updating card details
     public void setNumber(String number) {
         this.number = number;
+        this.numberValid = CardValidator.isValidNumber(number);
     }
 
     public void setHolderName(String holderName) {
@@ -79,39 +113,47 @@ public class CreditCard {
 
     public void setExpirationDate(String expirationDate) {
         this.expirationDate = expirationDate;
+        this.expiry = CardValidator.parseExpiry(expirationDate);
     }
 
     public void setCvv(String cvv) {
         this.cvv = cvv;
     }
 
+    /**
+     * Replaces the balance. Use {@link #addFunds(double)} to add money to a card that may be in use.
+     *
+     * @param balance The new balance.
+     */
     public void setBalance(double balance) {
-        this.balance = balance;
+        ledger.reset(Money.toCents(balance));
     }
 
     /**
-     * Checks if the credit card number is valid (16 digits).
+     * Adds money to the card (safe while payments are being charged to it).
+     *
+     * @param amount The amount to add.
+     */
+    public void addFunds(double amount) {
+        ledger.credit(Money.toCents(amount), "Funds added");
+    }
+
+    /**
+     * Checks if the credit card number is valid (digits only, correct length for the issuer
+     * and a passing Luhn checksum).
      *
      * @return true if valid, false otherwise.
      */
     public boolean isValid() {
-        return number != null && number.matches("\\d{16}");
+        return numberValid;
     }
 
     /**
      * Checks if the credit card is expired.
      *
-     * @return true if expired, false otherwise.
+     * @return true if expired (or the date format is invalid), false otherwise.
      */
     public boolean isExpired() {
-        try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/yy");
-            YearMonth expiry = YearMonth.parse(expirationDate, formatter);
-            YearMonth current = YearMonth.now();
-            return expiry.isBefore(current);
-        } catch (DateTimeParseException e) {
-            return true; // Treat as expired if format is invalid
-        }
+        return CardValidator.isExpired(expiry);
     }
 }
-
@@ -1,42 +1,69 @@
 package Project;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
     /**
     * Represents a customer in the Customer Order System (COS).
     * It stores customer's personal details, account and credit card credentials.
     */
 public class Customer {
     private String customerID;
-    private String customerPassword;
+    private String passwordHash;
     private String name;
     private String address;
     private CreditCard creditCard;
     private String securityQuestion;
-    private String securityAnswer;
-    private int loginAttempts;
+    private String securityAnswerHash;
 
 
     /**
      * Constructor for creating a new Customer object.
      *
      * @param ID                ID for the customer.
-     * @param password          Password for the customer's account.
+     * @param password          Password for the customer's account (only its salted hash is kept).
      * @param customerName      Full name of the customer.
      * @param customerAddress   Physical address of the customer.
      * @param creditCardNo      Credit card associated with the customer's account.
      * @param securityQ         Security question chosen by the customer.
-     * @param securityAns       The answer to the security question.
+     * @param securityAns       The answer to the security question (only its salted hash is kept).
      */
 
     public Customer(String ID, String password, String customerName, String customerAddress, CreditCard creditCardNo, String securityQ, String securityAns) {
         customerID = ID;
-        customerPassword = password;
+        passwordHash = PasswordHasher.hash(password);
         name = customerName;
         address = customerAddress;
         creditCard = creditCardNo;
         securityQuestion = securityQ;
-        securityAnswer = securityAns;
-        loginAttempts = 0;
+        securityAnswerHash = PasswordHasher.hash(securityAns);
+    }
+
+    private Customer() {
+    }
+
+    /**
+     * Recreates a saved customer without hashing the password again.
+     *
+     * @param ID              ID for the customer.
+     * @param passwordHash    The stored hash produced by {@link PasswordHasher#hash(String)}.
+     * @param customerName    Full name of the customer.
+     * @param customerAddress Physical address of the customer.
+     * @param creditCardNo    Credit card associated with the customer's account.
+     * @param securityQ       Security question chosen by the customer.
+     * @param securityAnsHash The stored hash of the answer, produced by {@link PasswordHasher#hash(String)}.
+     * @return The restored Customer.
+     */
+    static Customer restore(String ID, String passwordHash, String customerName, String customerAddress,
+                            CreditCard creditCardNo, String securityQ, String securityAnsHash) {
+        Customer customer = new Customer();
+        customer.customerID = ID;
+        customer.passwordHash = passwordHash;
+        customer.name = customerName;
+        customer.address = customerAddress;
+        customer.creditCard = creditCardNo;
+        customer.securityQuestion = securityQ;
+        customer.securityAnswerHash = securityAnsHash;
+        return customer;
     }
     // Getters
     public String getCustomerID(){
@@ -48,11 +75,18 @@ public class Customer {
     public CreditCard getCreditCard(){
         return creditCard;
     }
+    public String getAddress(){
+        return address;
+    }
     public String getSecurityQuestion(){
         return securityQuestion;
     }
-    public int getLoginAttempts() {
-            return loginAttempts;
+    // Only for persistence (CustomerStore)
+    String getPasswordHash(){
+        return passwordHash;
+    }
+    String getSecurityAnswerHash(){
+        return securityAnswerHash;
     }
 
     // Setters
@@ -65,7 +99,15 @@ public class Customer {
      * @return true if the passwords match, false otherwise.
      */
     public boolean checkPassword(String password){
-        return password.equals(customerPassword);
+        return PasswordHasher.verify(password, passwordHash);
+    }
+    /**
+     * Checks the password on the password hashing pool instead of the calling thread.
+     * @param password The password to validate.
+     * @return A future that completes with true if the passwords match, false otherwise.
+     */
+    public CompletableFuture<Boolean> checkPasswordAsync(String password){
+        return PasswordHasher.verifyAsync(password, passwordHash);
     }
     /**
      * Validates if the provided security answer matches the stored security answer.
@@ -73,14 +115,7 @@ public class Customer {
      * @return true if the answers match, false otherwise.
      */
     public boolean checkSecurityAnswer(String securityAns){
-        return securityAnswer.equals(securityAns);
-    }
-    public void incrementLoginAttempts() {
-            loginAttempts++;
-    }
-
-    public void resetLoginAttempts() {
-            loginAttempts = 0;
+        return PasswordHasher.verify(securityAns, securityAnswerHash);
     }
 
     // Overriding the default equals method for objects
@@ -0,0 +1,341 @@
+package Project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable storage for customer accounts.
+ * <p>
+ * Every change is appended to a change log ({@code customers-N.log}). Periodically the whole
+ * customer map is written to a compact snapshot ({@code customers.snapshot}) and the log is rotated
+ * to a new generation, after which older logs are deleted. On startup the snapshot is read through a
+ * memory-mapped buffer and only the logs written after it are replayed.
+ * <p>
+ * Log records are upserts ({@code [length][crc][customer]}), so replaying one twice is harmless.
+ * A torn record at the end of a log (crash mid-write) is detected by its length/CRC and cut off.
+ */
+public class CustomerStore {
+    private static final int SNAPSHOT_MAGIC = 0x434F5353; // "COSS"
+    private static final int SNAPSHOT_VERSION = 1;
+    // Records start with the negated format version; version 1 records had none and a dollar balance,
+    // versions 1 and 2 kept the CVV and the plaintext security answer
+    private static final int RECORD_VERSION = 3;
+    private static final String SNAPSHOT_FILE = "customers.snapshot";
+    private static final String LOG_PREFIX = "customers-";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final Path directory;
+    private final Map<String, Customer> customers;
+    private final Object logLock = new Object();
+    private FileChannel log;
+    private long generation;
+    private ScheduledExecutorService snapshotter;
+
+    /**
+     * Opens (or creates) a store in the given directory and loads every saved customer into the map.
+     *
+     * @param directory Where the snapshot and log files live.
+     * @param customers The map to load customers into; later snapshots are taken from it.
+     * @throws IOException If the files cannot be read or created.
+     */
+    public CustomerStore(Path directory, Map<String, Customer> customers) throws IOException {
+        this.directory = directory;
+        this.customers = customers;
+        Files.createDirectories(directory);
+
+        long snapshotGeneration = loadSnapshot();
+        generation = snapshotGeneration;
+        for (long logGeneration : logGenerations()) {
+            if (logGeneration >= snapshotGeneration) {
+                replayLog(logFile(logGeneration));
+                generation = Math.max(generation, logGeneration);
+            }
+        }
+        log = openLog(generation);
+    }
+
+    /**
+     * Appends one customer to the change log and forces it to disk.
+     *
+     * @param customer The new or changed customer.
+     */
+    public void save(Customer customer) {
+        saveAll(List.of(customer));
+    }
+
+    /**
+     * Appends a batch of customers to the change log with a single write and fsync.
+     *
+     * @param batch The new or changed customers.
+     */
+    public void saveAll(Collection<Customer> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>(batch.size());
+        int size = 0;
+        for (Customer customer : batch) {
+            byte[] record = encode(customer);
+            records.add(record);
+            size += 8 + record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] record : records) {
+            buffer.putInt(record.length).putInt(crc(record, 0, record.length)).put(record);
+        }
+        buffer.flip();
+        synchronized (logLock) {
+            try {
+                while (buffer.hasRemaining()) {
+                    log.write(buffer);
+                }
+                log.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write customer log", e);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of all customers, starts a new log generation and deletes the older logs.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        long snapshotGeneration;
+        synchronized (logLock) {
+            // Everything logged so far is already in the map, so the snapshot covers it all.
+            log.close();
+            generation++;
+            log = openLog(generation);
+            snapshotGeneration = generation;
+        }
+
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(snapshotGeneration);
+            for (Customer customer : customers.values()) {
+                byte[] record = encode(customer);
+                if (buffer.remaining() < 4 + record.length) {
+                    drain(out, buffer);
+                    if (buffer.capacity() < 4 + record.length) {
+                        buffer = ByteBuffer.allocate(4 + record.length);
+                    }
+                }
+                buffer.putInt(record.length).put(record);
+            }
+            drain(out, buffer);
+            out.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (long logGeneration : logGenerations()) {
+            if (logGeneration < snapshotGeneration) {
+                Files.deleteIfExists(logFile(logGeneration));
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot on a background thread at a fixed interval.
+     *
+     * @param intervalMillis Time (in milliseconds) between snapshots.
+     */
+    public void scheduleSnapshots(long intervalMillis) {
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                System.out.println("Customer snapshot failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops background snapshots and closes the log.
+     *
+     * @throws IOException If the log cannot be closed.
+     */
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        synchronized (logLock) {
+            log.close();
+        }
+    }
+
+    /**
+     * Loads the snapshot file, if there is one, through a memory-mapped buffer.
+     *
+     * @return The first log generation that is not covered by the snapshot (0 if there is no snapshot).
+     */
+    private long loadSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a customer snapshot: " + file);
+            }
+            long snapshotGeneration = buffer.getLong();
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                Customer customer = decode(buffer.slice().limit(length));
+                buffer.position(buffer.position() + length);
+                customers.put(customer.getCustomerID(), customer);
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    /**
+     * Applies every complete record in a log file and cuts off a torn record at the end.
+     */
+    private void replayLog(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            long validEnd = 0;
+            while (buffer.remaining() >= 8) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer record = buffer.slice().limit(length);
+                byte[] bytes = new byte[length];
+                record.duplicate().get(bytes);
+                if (crc(bytes, 0, length) != checksum) {
+                    break;
+                }
+                Customer customer = decode(record);
+                customers.put(customer.getCustomerID(), customer);
+                buffer.position(buffer.position() + length);
+                validEnd = buffer.position();
+            }
+            if (validEnd < in.size()) {
+                System.out.println("Discarding incomplete record at the end of " + file.getFileName());
+                in.truncate(validEnd);
+            }
+        }
+    }
+
+    private FileChannel openLog(long logGeneration) throws IOException {
+        return FileChannel.open(logFile(logGeneration), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve(LOG_PREFIX + logGeneration + LOG_SUFFIX);
+    }
+
+    /**
+     * @return The generations of all log files in the directory, oldest first.
+     */
+    private List<Long> logGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Serializes a customer (with its password and security answer hashes and credit card) to bytes.
+     * The card's CVV is never saved. The balance is saved in cents, including money on hold
+     * (see {@link CardLedger#getBalanceCents()}).
+     */
+    static byte[] encode(Customer customer) {
+        CreditCard card = customer.getCreditCard();
+        String[] fields = {
+                customer.getCustomerID(), customer.getPasswordHash(), customer.getName(), customer.getAddress(),
+                customer.getSecurityQuestion(), customer.getSecurityAnswerHash(),
+                card.getNumber(), card.getHolderName(), card.getExpirationDate()
+        };
+        byte[][] encoded = new byte[fields.length][];
+        int size = 4 + 8; // version + balance
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = fields[i] == null ? new byte[0] : fields[i].getBytes(StandardCharsets.UTF_8);
+            size += 4 + encoded[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(-RECORD_VERSION);
+        for (byte[] field : encoded) {
+            buffer.putInt(field.length).put(field);
+        }
+        buffer.putLong(card.getLedger().getBalanceCents());
+        return buffer.array();
+    }
+
+    /**
+     * Reads a customer written by {@link #encode(Customer)}.
+     */
+    static Customer decode(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        int version = 1;
+        if (length < 0) {
+            version = -length;
+            length = buffer.getInt();
+        }
+        String[] fields = new String[version >= 3 ? 9 : 10];
+        for (int i = 0; i < fields.length; i++) {
+            byte[] field = new byte[i == 0 ? length : buffer.getInt()];
+            buffer.get(field);
+            fields[i] = new String(field, StandardCharsets.UTF_8);
+        }
+        long balanceCents = version >= 2 ? buffer.getLong() : Money.toCents(buffer.getDouble());
+        CreditCard card = CreditCard.restore(fields[6], fields[7], fields[8], "", balanceCents);
+        // Older records hold the plaintext answer; it is hashed now and saved hashed from here on
+        String answerHash = version >= 3 ? fields[5] : PasswordHasher.hash(fields[5]);
+        return Customer.restore(fields[0], fields[1], fields[2], fields[3], card, fields[4], answerHash);
+    }
+}
@@ -0,0 +1,128 @@
+package Project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe, memory-bounded cache of recently seen request keys (idempotency keys).
+ * <p>
+ * Each key is remembered for a fixed time. Entries are also kept in a first-in-first-out queue;
+ * because every entry lives for the same time, the oldest entry is always the next one to expire,
+ * so expired entries are dropped from the head of the queue as new keys arrive (no background
+ * thread, no scanning). When the cache holds its maximum number of keys, the oldest key is
+ * dropped early, so memory never grows past the limit however many keys arrive in a day.
+ *
+ * @param <V> The value remembered for each key.
+ */
+public class IdempotencyCache<V> {
+    /**
+     * A remembered key and its value.
+     */
+    private static class Entry<V> {
+        final String key;
+        final V value;
+        final long expiresAt;
+
+        Entry(String key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry<V>> oldestFirst = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger(); // queue length, including forgotten entries
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries The maximum number of keys kept.
+     * @param ttlMillis  How long a key is remembered, in milliseconds.
+     */
+    public IdempotencyCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache size and time to live must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Remembers a key unless it is already known.
+     *
+     * @param key   The request key.
+     * @param value The value to remember for it.
+     * @return The value already remembered for the key, or null if the key was new and is now stored.
+     */
+    public V putIfAbsent(String key, V value) {
+        long now = System.currentTimeMillis();
+        Entry<V> entry = new Entry<>(key, value, now + ttlMillis);
+        while (true) {
+            Entry<V> existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                oldestFirst.add(entry);
+                queued.incrementAndGet();
+                evict(now);
+                return null;
+            }
+            if (existing.expiresAt > now) {
+                return existing.value;
+            }
+            // Expired but not swept yet: replace it and try again
+            entries.remove(key, existing);
+        }
+    }
+
+    /**
+     * @param key The request key.
+     * @return The value remembered for the key, or null if it is unknown or expired.
+     */
+    public V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Forgets a key, but only if it still has the given value.
+     *
+     * @param key   The request key.
+     * @param value The value that must be remembered for it.
+     * @return true if the key was forgotten.
+     */
+    public boolean remove(String key, V value) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && entry.value == value && entries.remove(key, entry);
+    }
+
+    /**
+     * @return The number of keys currently remembered.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops expired entries from the head of the queue, then the oldest entries while over the limit.
+     * The limit counts queued entries (forgotten ones too), so the queue itself stays bounded.
+     */
+    private void evict(long now) {
+        while (true) {
+            Entry<V> oldest = oldestFirst.peek();
+            if (oldest == null || (oldest.expiresAt > now && queued.get() <= maxEntries)) {
+                return;
+            }
+            if (oldestFirst.remove(oldest)) { // only one thread wins each entry
+                queued.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package Project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service class that tracks how many units of each product are in stock.
+ * <p>
+ * Adding a product to a cart reserves units; placing the order commits the reservation (the units
+ * are sold) and removing the product releases it. A reservation that is neither committed nor
+ * released within the reservation timeout expires and its units go back on sale, so abandoned
+ * carts cannot hold stock forever.
+ * <p>
+ * Each product's stock is split over several counters (stripes) that are changed with
+ * compare-and-set. Threads start at a random stripe, so many customers buying the same product at
+ * once mostly update different counters instead of all retrying on one. A stripe never goes below
+ * zero, so stock can never be oversold. Products without a stock level are not tracked (unlimited).
+ */
+public class Inventory {
+    private static final int STRIPES = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2));
+    private static final int PAD = 8; // longs per stripe (64 bytes), so two stripes never share a cache line
+
+    /**
+     * Units of one product set aside for a cart.
+     */
+    public static class Reservation {
+        private final long reservationID;
+        private final String productID;
+        private volatile int quantity;
+        private volatile long expiresAt;
+
+        Reservation(long reservationID, String productID, int quantity, long expiresAt) {
+            this.reservationID = reservationID;
+            this.productID = productID;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+
+        // Getters
+        public long getReservationID() {
+            return reservationID;
+        }
+
+        public String getProductID() {
+            return productID;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        /**
+         * @return true if the reservation still holds its units (not committed, released or expired).
+         */
+        public boolean isActive() {
+            return reservations.get(reservationID) == this && expiresAt > System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Striped stock counter of one product.
+     */
+    private static class Stock {
+        final AtomicLongArray stripes = new AtomicLongArray(STRIPES * PAD);
+        final LongAdder sold = new LongAdder();
+
+        Stock(long quantity) {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes.set(i * PAD, quantity / STRIPES + (i < quantity % STRIPES ? 1 : 0));
+            }
+        }
+
+        long available() {
+            long total = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                total += stripes.get(i * PAD);
+            }
+            return total;
+        }
+
+        /**
+         * Takes units, starting at a random stripe and moving on to the next while short. If that falls
+         * short, the units are given back and taken again under this stock's lock (see {@link #takeAll(long)}),
+         * so buyers splitting the stock between them cannot all fail while there is enough in total.
+         *
+         * @return true if all units were taken, false (with nothing taken) if there are not enough.
+         */
+        boolean take(long quantity) {
+            long taken = sweep(ThreadLocalRandom.current().nextInt(STRIPES), quantity);
+            if (taken == quantity) {
+                return true;
+            }
+            put(taken); // give back what was taken: another buyer short of units may need it
+            return takeAll(quantity);
+        }
+
+        /**
+         * Takes units one buyer at a time, keeping what was taken and going over the stripes again until
+         * there is enough, or until the stock left is too low. Units given back by a buyer's first attempt
+         * in the meantime are picked up by the next pass.
+         */
+        private synchronized boolean takeAll(long quantity) {
+            long taken = 0;
+            while (true) {
+                long part = sweep(0, quantity - taken);
+                taken += part;
+                if (taken == quantity) {
+                    return true;
+                }
+                if (part == 0 && available() + taken < quantity) {
+                    Thread.yield(); // let another buyer's first attempt give its units back, then look once more
+                    if (available() + taken < quantity) {
+                        put(taken);
+                        return false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Takes up to {@code quantity} units, going over every stripe once from {@code start}.
+         *
+         * @return The number of units taken.
+         */
+        private long sweep(int start, long quantity) {
+            long taken = 0;
+            for (int i = 0; i < STRIPES && taken < quantity; i++) {
+                int slot = ((start + i) % STRIPES) * PAD;
+                while (true) {
+                    long current = stripes.get(slot);
+                    if (current == 0) {
+                        break;
+                    }
+                    long part = Math.min(current, quantity - taken);
+                    if (stripes.compareAndSet(slot, current, current - part)) {
+                        taken += part;
+                        break;
+                    }
+                }
+            }
+            return taken;
+        }
+
+        void put(long quantity) {
+            if (quantity > 0) {
+                stripes.addAndGet(ThreadLocalRandom.current().nextInt(STRIPES) * PAD, quantity);
+            }
+        }
+    }
+
+    private static final Map<String, Stock> stock = new ConcurrentHashMap<>();
+    private static final Map<Long, Reservation> reservations = new ConcurrentHashMap<>();
+    private static final AtomicLong nextReservationID = new AtomicLong(1);
+    private static final AtomicLong expiredReservations = new AtomicLong();
+    private static volatile long reservationTimeoutMillis = 15 * 60 * 1000; // 15 minutes
+
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reservation-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        SWEEPER.scheduleAtFixedRate(Inventory::expireReservations, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sets the number of units of a product available for new reservations and starts tracking it.
+     * Units held by existing reservations come back on top of this if they are released.
+     *
+     * @param productID The ID of the product.
+     * @param quantity  The number of units in stock.
+     */
+    public static void setStock(String productID, long quantity) {
+        if (productID == null || quantity < 0) {
+            throw new IllegalArgumentException("Product ID cannot be null and stock cannot be negative.");
+        }
+        stock.put(productID, new Stock(quantity));
+    }
+
+    /**
+     * Adds units to a tracked product (e.g. a delivery arrived).
+     *
+     * @param productID The ID of the product.
+     * @param quantity  The number of units to add.
+     * @return true if the product is tracked and the units were added, false otherwise.
+     */
+    public static boolean addStock(String productID, long quantity) {
+        Stock productStock = productID == null ? null : stock.get(productID);
+        if (productStock == null || quantity < 0) {
+            return false;
+        }
+        productStock.put(quantity);
+        return true;
+    }
+
+    /**
+     * @param productID The ID of the product.
+     * @return true if the product has a stock level, false if it is unlimited.
+     */
+    public static boolean isTracked(String productID) {
+        return productID != null && stock.containsKey(productID);
+    }
+
+    /**
+     * @param productID The ID of the product.
+     * @return The number of units that can still be reserved, or -1 if the product is not tracked.
+     */
+    public static long getAvailable(String productID) {
+        Stock productStock = productID == null ? null : stock.get(productID);
+        return productStock == null ? -1 : productStock.available();
+    }
+
+    /**
+     * @param productID The ID of the product.
+     * @return The number of units sold (committed), or 0 if the product is not tracked.
+     */
+    public static long getSold(String productID) {
+        Stock productStock = productID == null ? null : stock.get(productID);
+        return productStock == null ? 0 : productStock.sold.sum();
+    }
+
+    /**
+     * Sets units of a tracked product aside.
+     *
+     * @param productID The ID of the product.
+     * @param quantity  The number of units to reserve.
+     * @return The reservation, or null if there are not enough units.
+     * @throws IllegalArgumentException If the product is not tracked or the quantity is not positive.
+     */
+    public static Reservation reserve(String productID, int quantity) {
+        Stock productStock = requireStock(productID);
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero.");
+        }
+        if (!productStock.take(quantity)) {
+            return null;
+        }
+        Reservation reservation = new Reservation(nextReservationID.getAndIncrement(), productID, quantity,
+                System.currentTimeMillis() + reservationTimeoutMillis);
+        reservations.put(reservation.reservationID, reservation);
+        return reservation;
+    }
+
+    /**
+     * Changes the number of units held by an active reservation and restarts its timeout.
+     *
+     * @param reservation The reservation to change.
+     * @param quantity    The new number of units (must be positive; release the reservation to drop it).
+     * @return true if the reservation now holds that many units, false if it is no longer active
+     * or there are not enough units (it is left unchanged).
+     */
+    public static boolean resize(Reservation reservation, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero.");
+        }
+        boolean[] resized = new boolean[1];
+        // compute runs while no commit/release/expiry of this reservation can happen
+        reservations.computeIfPresent(reservation.reservationID, (id, current) -> {
+            Stock productStock = stock.get(current.productID);
+            long difference = quantity - current.quantity;
+            if (productStock == null || (difference > 0 && !productStock.take(difference))) {
+                return current;
+            }
+            if (difference < 0) {
+                productStock.put(-difference);
+            }
+            current.quantity = quantity;
+            current.expiresAt = System.currentTimeMillis() + reservationTimeoutMillis;
+            resized[0] = true;
+            return current;
+        });
+        return resized[0];
+    }
+
+    /**
+     * Makes sure a reservation is still holding its units, reserving them again if it expired.
+     *
+     * @param reservation The reservation to check.
+     * @return The same reservation if it is still active, a new one if it had expired and the
+     * units were still available, or null if they are not.
+     */
+    public static Reservation renew(Reservation reservation) {
+        if (resize(reservation, reservation.quantity)) {
+            return reservation;
+        }
+        return reserve(reservation.productID, reservation.quantity);
+    }
+
+    /**
+     * Marks a reservation's units as sold.
+     *
+     * @param reservation The reservation to commit.
+     * @return true if the units were sold, false if the reservation was no longer active.
+     */
+    public static boolean commit(Reservation reservation) {
+        if (!reservations.remove(reservation.reservationID, reservation)) {
+            return false;
+        }
+        Stock productStock = stock.get(reservation.productID);
+        if (productStock != null) {
+            productStock.sold.add(reservation.quantity);
+        }
+        return true;
+    }
+
+    /**
+     * Puts a committed reservation's units back on sale (e.g. the order could not be completed).
+     *
+     * @param reservation A reservation that was committed.
+     */
+    public static void restock(Reservation reservation) {
+        Stock productStock = stock.get(reservation.productID);
+        if (productStock != null) {
+            productStock.sold.add(-reservation.quantity);
+            productStock.put(reservation.quantity);
+        }
+    }
+
+    /**
+     * Gives a reservation's units back. Does nothing if it was already committed, released or expired.
+     *
+     * @param reservation The reservation to release.
+     */
+    public static void release(Reservation reservation) {
+        if (reservations.remove(reservation.reservationID, reservation)) {
+            giveBack(reservation);
+        }
+    }
+
+    /**
+     * Sets how long a reservation holds its units if the order is not completed.
+     *
+     * @param timeoutMillis The timeout in milliseconds.
+     */
+    public static void configureReservationTimeout(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeout must be greater than zero.");
+        }
+        reservationTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return The number of reservations that expired because their order was not completed.
+     */
+    public static long getExpiredReservationCount() {
+        return expiredReservations.get();
+    }
+
+    /**
+     * Releases every reservation whose timeout has passed. Runs in the background every 30 seconds.
+     */
+    static void expireReservations() {
+        long now = System.currentTimeMillis();
+        for (Reservation reservation : reservations.values()) {
+            if (reservation.expiresAt > now) {
+                continue;
+            }
+            boolean[] expired = new boolean[1];
+            // re-check inside compute, in case the reservation was just resized (which renews it)
+            reservations.computeIfPresent(reservation.reservationID, (id, current) -> {
+                if (current.expiresAt > now) {
+                    return current;
+                }
+                expired[0] = true;
+                return null;
+            });
+            if (expired[0]) {
+                giveBack(reservation);
+                expiredReservations.incrementAndGet();
+            }
+        }
+    }
+
+    private static void giveBack(Reservation reservation) {
+        Stock productStock = stock.get(reservation.productID);
+        if (productStock != null) {
+            productStock.put(reservation.quantity);
+        }
+    }
+
+    private static Stock requireStock(String productID) {
+        Stock productStock = productID == null ? null : stock.get(productID);
+        if (productStock == null) {
+            throw new IllegalArgumentException("Product " + productID + " has no stock level.");
+        }
+        return productStock;
+    }
+}
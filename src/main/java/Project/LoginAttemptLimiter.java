@@ -0,0 +1,179 @@
+package Project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sliding-window limiter for failed login attempts.
+ * <p>
+ * For every key (a customer ID, optionally combined with the request source) it remembers the
+ * times of the last {@code maxFailures} failures in a small lock-free ring. The key is locked while
+ * all of those failures fall inside the window, and unlocks by itself once the oldest one ages out.
+ * Keys are only tracked after a failure and are purged once their window has passed.
+ * <p>
+ * A login reserves its attempt with {@link #tryAcquire(String)} before the password is checked:
+ * the attempt takes a free slot of the ring with compare-and-set, so concurrent attempts can never
+ * check more passwords than the limit allows. A failed check keeps the slot (it is the failure),
+ * a successful one resets the key, and an attempt that was never checked is handed back with
+ * {@link #refund(Attempt)}.
+ */
+public class LoginAttemptLimiter {
+    private final int maxFailures;
+    private final long windowMillis;
+    private final Map<String, FailureWindow> failures = new ConcurrentHashMap<>();
+    private final AtomicLong recordedFailures = new AtomicLong();
+
+    /**
+     * An attempt reserved by {@link #tryAcquire(String)}: one slot of a key's ring.
+     */
+    public static final class Attempt {
+        private final FailureWindow window;
+        private final int slot;
+        private final long timestamp;
+
+        private Attempt(FailureWindow window, int slot, long timestamp) {
+            this.window = window;
+            this.slot = slot;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Ring of the most recent failure times for one key.
+     */
+    private static final class FailureWindow {
+        private final AtomicLongArray timestamps;
+        private volatile long lastFailure;
+
+        FailureWindow(int size) {
+            timestamps = new AtomicLongArray(size);
+        }
+
+        /**
+         * Takes a slot whose failure is older than the cutoff.
+         *
+         * @return The slot, or -1 if every slot holds a failure inside the window.
+         */
+        int claim(long now, long cutoff) {
+            for (int i = 0; i < timestamps.length(); i++) {
+                long timestamp = timestamps.get(i);
+                if (timestamp <= cutoff && timestamps.compareAndSet(i, timestamp, now)) {
+                    lastFailure = now;
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int countSince(long cutoff) {
+            int count = 0;
+            for (int i = 0; i < timestamps.length(); i++) {
+                if (timestamps.get(i) > cutoff) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param maxFailures  Number of failures within the window that locks a key.
+     * @param windowMillis Length (in milliseconds) of the sliding window.
+     */
+    public LoginAttemptLimiter(int maxFailures, long windowMillis) {
+        if (maxFailures <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("Max failures and window must be greater than zero.");
+        }
+        this.maxFailures = maxFailures;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Checks if a key has reached the failure limit within the current window.
+     *
+     * @param key The customer ID (or customer ID and source) to check.
+     * @return true if further login attempts should be rejected, false otherwise.
+     */
+    public boolean isLocked(String key) {
+        return remainingAttempts(key) <= 0;
+    }
+
+    /**
+     * @param key The customer ID (or customer ID and source) to check.
+     * @return How many more failures are allowed before the key is locked.
+     */
+    public int remainingAttempts(String key) {
+        FailureWindow window = failures.get(key);
+        if (window == null) {
+            return maxFailures;
+        }
+        return maxFailures - window.countSince(System.currentTimeMillis() - windowMillis);
+    }
+
+    /**
+     * Reserves one login attempt for the key, counting it as a failure until the login succeeds
+     * (see {@link #reset(String)}) or the attempt is handed back (see {@link #refund(Attempt)}).
+     *
+     * @param key The customer ID (or customer ID and source) trying to log in.
+     * @return The reserved attempt, or null if the key is locked.
+     */
+    public Attempt tryAcquire(String key) {
+        long now = System.currentTimeMillis();
+        long cutoff = now - windowMillis;
+        Attempt[] reserved = new Attempt[1];
+        // Claimed inside compute, so a concurrent purge cannot drop the window in between
+        failures.compute(key, (k, window) -> {
+            if (window == null) {
+                window = new FailureWindow(maxFailures);
+            }
+            int slot = window.claim(now, cutoff);
+            if (slot >= 0) {
+                reserved[0] = new Attempt(window, slot, now);
+            }
+            return window;
+        });
+        if (reserved[0] != null && recordedFailures.incrementAndGet() % 256 == 0) {
+            purgeExpired();
+        }
+        return reserved[0];
+    }
+
+    /**
+     * Hands back an attempt whose password was never checked (e.g. the hashing pool was full).
+     *
+     * @param attempt An attempt returned by {@link #tryAcquire(String)}.
+     */
+    public void refund(Attempt attempt) {
+        attempt.window.timestamps.compareAndSet(attempt.slot, attempt.timestamp, 0);
+    }
+
+    /**
+     * Clears the failure history of a key (e.g. after a successful login).
+     *
+     * @param key The customer ID (or customer ID and source) to reset.
+     */
+    public void reset(String key) {
+        failures.remove(key);
+    }
+
+    /**
+     * Stops tracking keys whose most recent failure is older than the window.
+     */
+    void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - windowMillis;
+        for (String key : failures.keySet()) {
+            failures.computeIfPresent(key, (k, window) -> window.lastFailure <= cutoff ? null : window);
+        }
+    }
+
+    /**
+     * @return The number of keys currently being tracked.
+     */
+    public int getTrackedKeyCount() {
+        return failures.size();
+    }
+}
@@ -1,7 +1,10 @@
 package Project;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Scanner;
+import java.util.UUID;
 /**
  * Starting point of Customer Order System application.
  * Allows users to:
@@ -18,11 +21,13 @@ import java.util.Scanner;
  * Cart,OrderService, and Customer.
  */
 public class Main {
+    private static final int ORDERS_PAGE_SIZE = 10;
+
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
         ProductListing catalog = new ProductListing();
-        Cart cart = new Cart();
         Customer currentCustomer = null;
+        String sessionToken = null;
 
         // Sample products
         catalog.addProduct(new Product("P1", "Laptop", "High-performance laptop", 999.99, 899.99));
@@ -33,6 +38,32 @@ public class Main {
         catalog.addProduct(new Product("P6", "Wireless Earbuds", "True wireless with charging case", 149.99, 0));
         catalog.addProduct(new Product("P7", "Gaming Console", "Next-gen gaming system", 499.99, 449.99));
 
+        // Stock levels (products without one can be ordered in any quantity)
+        Inventory.setStock("P1", 25);
+        Inventory.setStock("P2", 40);
+        Inventory.setStock("P3", 60);
+        Inventory.setStock("P4", 30);
+        Inventory.setStock("P5", 50);
+        Inventory.setStock("P6", 80);
+        Inventory.setStock("P7", 20);
+
+        // Saved accounts (snapshot every 5 minutes); the directory can be changed with -Dcos.data.dir
+        try {
+            AccountService.openStore(Paths.get(System.getProperty("cos.data.dir", "data")), 5 * 60 * 1000L);
+        } catch (IOException e) {
+            System.out.println("Could not load saved accounts, they will not be kept: " + e.getMessage());
+        }
+        try {
+            OrderService.openJournal(Paths.get(System.getProperty("cos.data.dir", "data")));
+        } catch (IOException e) {
+            System.out.println("Could not load saved orders, they will not be kept: " + e.getMessage());
+        }
+        try {
+            OrderService.openCartStore(Paths.get(System.getProperty("cos.data.dir", "data"), "carts"), catalog);
+        } catch (IOException e) {
+            System.out.println("Could not open the saved carts, carts will only be kept in memory: " + e.getMessage());
+        }
+
         while (true) {
             if (currentCustomer == null) {
                 displayMainMenu();
@@ -43,6 +74,9 @@ public class Main {
                         break;
                     case 2:
                         currentCustomer = login(scanner);
+                        if (currentCustomer != null) {
+                            sessionToken = AccountService.loginCustomer(currentCustomer.getCustomerID());
+                        }
                         break;
                     case 0:
                         exitApp();
@@ -54,6 +88,15 @@ public class Main {
             } else {
                 displayLoggedInMenu(currentCustomer);
                 int choice = readInt(scanner);
+                // Every action keeps the session alive, so the token only expires after a long idle time
+                sessionToken = AccountService.refreshSessionToken(sessionToken);
+                if (sessionToken == null) {
+                    System.out.println("Your session has expired. Please log in again.");
+                    currentCustomer = null;
+                    continue;
+                }
+                // Fetched for every action, so the cart store sees the cart is still in use
+                Cart cart = OrderService.getCart(currentCustomer.getCustomerID());
                 switch (choice) {
                     case 3:
                         browseProducts(scanner, catalog, cart);
@@ -62,15 +105,15 @@ public class Main {
                         viewCart(scanner, cart);
                         break;
                     case 5:
-                        checkout(scanner, currentCustomer, cart);
+                        checkout(scanner, currentCustomer, sessionToken, cart);
                         break;
                     case 6:
-                        viewOrders(currentCustomer);
+                        viewOrders(scanner, currentCustomer);
                         break;
                     case 7 : {
-                        AccountService.logoutCustomer(currentCustomer.getCustomerID());
+                        AccountService.logoutCustomer(currentCustomer.getCustomerID(), sessionToken);
                         currentCustomer = null;
-                        cart.clearCart();
+                        sessionToken = null; // the cart is kept for the next login
                         System.out.println("Logged out successfully.");
                         break;
                     }
@@ -131,6 +174,9 @@ public class Main {
      */
     private static void exitApp() {
         System.out.println("Exiting... Thank you!");
+        OrderService.closeCartStore();
+        OrderService.closeJournal();
+        AccountService.closeStore();
         System.exit(0);
     }
     /**
@@ -196,6 +242,7 @@ public class Main {
     }
     /**
      * Handles customer login by verifying ID, password, and security answer.
+     * The caller starts the session for the returned customer.
      *
      * @param scanner Scanner for user input.
      * @return The logged-in {@code Customer} if successful; otherwise {@code null}.
@@ -224,7 +271,6 @@ public class Main {
         String answer = scanner.nextLine();
 
         if (AccountService.checkSecurityAnswer(customer, answer)) {
-            AccountService.loginCustomer(customerID);
             System.out.println("Login successful! Welcome, " + customer.getName());
             return customer;
         } else {
@@ -251,8 +297,9 @@ public class Main {
             if (product != null) {
                 System.out.print("Enter quantity: ");
                 int quantity = readInt(scanner);
-                cart.addItem(product, quantity);
-                System.out.println(product.getProductName() + " added to cart.");
+                if (cart.addItem(product, quantity)) {
+                    System.out.println(product.getProductName() + " added to cart.");
+                }
             } else {
                 System.out.println("Invalid product ID!");
             }
@@ -286,11 +333,12 @@ public class Main {
      * If the credit card is expired or has insufficient balance, user can enter new card
      * or add funds. The new card now correctly processes the order upon valid input.
      *
-     * @param scanner  Scanner for user input.
-     * @param customer The logged-in customer.
-     * @param cart     The customer's cart with items ready for checkout.
+     * @param scanner      Scanner for user input.
+     * @param customer     The logged-in customer.
+     * @param sessionToken The customer's session token.
+     * @param cart         The customer's cart with items ready for checkout.
      */
-    private static void checkout(Scanner scanner, Customer customer, Cart cart) {
+    private static void checkout(Scanner scanner, Customer customer, String sessionToken, Cart cart) {
         if (cart.isEmpty()) {
             System.out.println("Your cart is empty!");
             return;
@@ -299,7 +347,7 @@ public class Main {
         cart.displayCartDetails();
 
         System.out.println("\nChoose delivery method:");
-        System.out.println("1. Mail ($3.00 fee)");
+        System.out.println("1. Mail ($" + Money.format(PricingEngine.getRules().getDeliveryFeeCents("mail")) + " fee)");
         System.out.println("2. In-store pickup (free)");
         System.out.println("0. Cancel order");
         System.out.print("Enter choice: ");
@@ -319,26 +367,37 @@ public class Main {
         String deliveryMethod = (deliveryChoice == 1) ? "mail" : "pickup";
 
         // Get total price with delivery fee (if any)
-        double totalPrice = cart.getTotal();
-        if (deliveryMethod.equals("mail")) {
-            totalPrice += 3.00;
-        }
-        System.out.printf("Total to pay (including delivery): $%.2f%n", totalPrice);
+        long totalCents = cart.getQuote(deliveryMethod).getTotalCents();
+        System.out.println("Total to pay (including delivery): $" + Money.format(totalCents));
 
         // Start with the customer's registered credit card
         CreditCard card = customer.getCreditCard();
+        // One key for this checkout, so a repeated submission cannot charge twice
+        String idempotencyKey = UUID.randomUUID().toString();
+        int paymentAttempts = 0;
 
         while (true) {
             if (card.isExpired()) {
                 System.out.println("Your credit card is expired. Please enter a new card.");
                 card = promptForNewCard(scanner);
+                customer.setCreditCard(card);
                 continue;
             }
 
-            if (card.getBalance() >= totalPrice) {
+            if (card.getLedger().getAvailableCents() >= totalCents) {
                 // Enough balance - place the order
-                String result = OrderService.placeOrder(customer, cart, deliveryMethod);
+                String result = OrderService.placeOrder(sessionToken, customer, cart, deliveryMethod, idempotencyKey);
                 System.out.println("\n" + result);
+                paymentAttempts++;
+                // Declined by the bank: let the customer try another card (up to 3 attempts)
+                if (OrderService.isPaymentDeclined(result) && paymentAttempts < 3) {
+                    System.out.println("Would you like to try another card? (yes/no)");
+                    if (scanner.nextLine().equalsIgnoreCase("yes")) {
+                        card = promptForNewCard(scanner);
+                        customer.setCreditCard(card);
+                        continue;
+                    }
+                }
                 break;
             } else {
                 System.out.printf("❌ Insufficient balance: $%.2f%n", card.getBalance());
@@ -357,7 +416,11 @@ public class Main {
                     System.out.print("Enter amount to add: ");
                     double amountToAdd = scanner.nextDouble();
                     scanner.nextLine(); // consume newline
-                    card.setBalance(card.getBalance() + amountToAdd);
+                    if (amountToAdd <= 0) {
+                        System.out.println("Amount must be a positive number.");
+                        continue;
+                    }
+                    card.addFunds(amountToAdd);
                     System.out.printf("✅ New card balance: $%.2f%n", card.getBalance());
                 } else if (choice == 0) {
                     System.out.println("Order cancelled.");
@@ -416,23 +479,36 @@ public class Main {
     }
 
     /**
-     * Displays the customer's past orders, if any.
+     * Displays the customer's past orders, newest first, a page at a time.
      *
+     * @param scanner  Scanner for user input.
      * @param customer The logged-in customer.
      */
-    private static void viewOrders(Customer customer) {
+    private static void viewOrders(Scanner scanner, Customer customer) {
         System.out.println("\n=== Your Orders ===");
-        List<Order> orders = OrderService.getCustomerOrders(customer.getCustomerID());
+        OrderStore.Page page = OrderService.getCustomerOrders(customer.getCustomerID(), null, null, null, ORDERS_PAGE_SIZE);
 
-        if (orders.isEmpty()) {
+        if (page.getOrders().isEmpty()) {
             System.out.println("No orders found.");
             return;
         }
 
-        for (Order order : orders) {
-            System.out.println(order.getOrderDetails());
-            System.out.println("----------------------");
+        int shown = 0;
+        while (true) {
+            for (Order order : page.getOrders()) {
+                System.out.println(order.getOrderDetails());
+                System.out.println("----------------------");
+            }
+            shown += page.getOrders().size();
+            if (!page.hasMore()) {
+                break;
+            }
+            System.out.print("Show older orders? (yes/no): ");
+            if (!scanner.nextLine().equalsIgnoreCase("yes")) {
+                break;
+            }
+            page = OrderService.getCustomerOrders(customer.getCustomerID(), null, null, page.getNextCursor(), ORDERS_PAGE_SIZE);
         }
-        System.out.println("Total Orders: " + orders.size());
+        System.out.println("Orders shown: " + shown);
     }
 }
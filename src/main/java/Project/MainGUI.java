@@ -13,8 +13,11 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * JavaFX GUI for the Customer Order System (COS).
@@ -24,9 +27,9 @@ public class MainGUI extends Application {
 
     private Stage primaryStage;
     private ProductListing catalog;
-    private Cart cart;
     private OrderService orderService;
     private Customer currentCustomer;
+    private String sessionToken;
 
     private int loginAttemptsLeft = 3;
 
@@ -38,6 +41,8 @@ public class MainGUI extends Application {
     private TableView<Product> productTable;
     private TableView<CartItem> cartTable;
     private TableView<Order> ordersTable;
+    private String ordersCursor; // where the next page of the order history starts (null if none)
+    private static final int ORDERS_PAGE_SIZE = 50;
     /**
      * The main entry point for the Java application.
      *
@@ -59,11 +64,27 @@ public class MainGUI extends Application {
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
         this.catalog = new ProductListing();
-        this.cart = new Cart();
 
         // Seed products (same as console Main)
         seedProducts();
 
+        // Saved accounts (snapshot every 5 minutes); the directory can be changed with -Dcos.data.dir
+        try {
+            AccountService.openStore(Paths.get(System.getProperty("cos.data.dir", "data")), 5 * 60 * 1000L);
+        } catch (IOException e) {
+            System.out.println("Could not load saved accounts, they will not be kept: " + e.getMessage());
+        }
+        try {
+            OrderService.openJournal(Paths.get(System.getProperty("cos.data.dir", "data")));
+        } catch (IOException e) {
+            System.out.println("Could not load saved orders, they will not be kept: " + e.getMessage());
+        }
+        try {
+            OrderService.openCartStore(Paths.get(System.getProperty("cos.data.dir", "data"), "carts"), catalog);
+        } catch (IOException e) {
+            System.out.println("Could not open the saved carts, carts will only be kept in memory: " + e.getMessage());
+        }
+
         root = new BorderPane();
         scene = new Scene(root, 900, 600);
 
@@ -73,6 +94,15 @@ public class MainGUI extends Application {
         primaryStage.setScene(scene);
         primaryStage.show();
     }
+    /**
+     * Called by JavaFX when the application exits. Writes a final snapshot of the saved accounts.
+     */
+    @Override
+    public void stop() {
+        OrderService.closeCartStore();
+        OrderService.closeJournal();
+        AccountService.closeStore();
+    }
     /**
      * Clears the main application pane and displays the login view. This is the
      * default view when the application starts or after a user logs out.
@@ -140,7 +170,7 @@ public class MainGUI extends Application {
             Optional<String> answer = secDialog.showAndWait();
             if (answer.isPresent() && AccountService.checkSecurityAnswer(candidate, answer.get())) {
                 // Successful login
-                AccountService.loginCustomer(id);
+                sessionToken = AccountService.loginCustomer(id);
                 currentCustomer = candidate;
                 showMainAppView();
             } else {
@@ -220,9 +250,9 @@ public class MainGUI extends Application {
             String name = nameField.getText().trim();
             String address = addressField.getText().trim();
 
-            if (!validatePassword(pw)) {
-                showAlert(Alert.AlertType.ERROR, "Invalid Password", "Password must be at least 6 characters, " +
-                        "contain at least one digit, one uppercase letter, and one special character (!@#$%^&*()_+ etc.)");
+            if (!PasswordValidator.isValid(pw)) {
+                showAlert(Alert.AlertType.ERROR, "Invalid Password",
+                        "Password is not valid! " + PasswordValidator.DEFAULT.getRequirements());
                 return;
             }
 
@@ -256,27 +286,6 @@ public class MainGUI extends Application {
         root.setCenter(grid);
     }
 
-    /**
-     * Validates a password based on the system's security requirements.
-     * <p>
-     * The criteria are:
-     * <ul>
-     * <li>At least 6 characters long.</li>
-     * <li>Contains at least one digit.</li>
-     * <li>Contains at least one uppercase letter.</li>
-     * <li>Contains at least one special character.</li>
-     * </ul>
-     *
-     * @param pw The password string to validate.
-     * @return {@code true} if the password meets all criteria, {@code false} otherwise.
-     */
-    private boolean validatePassword(String pw) {
-        if (pw == null || pw.length() < 6) return false;
-        if (!pw.matches(".*\\d.*")) return false;                 // digit
-        if (!pw.matches(".*[A-Z].*")) return false;               // uppercase
-        if (!pw.matches(".*[!@#$%^&*()_+\\-=\\[\\]{};':\"\\\\|,.<>/?].*")) return false; // special char
-        return true;
-    }
     /**
      * Displays the main application view for a logged-in user. This view includes
      * the product catalog, cart management, and order history functionalities.
@@ -290,9 +299,9 @@ public class MainGUI extends Application {
         Label welcome = new Label("Welcome, " + currentCustomer.getName());
         Button logoutBtn = new Button("Logout");
         logoutBtn.setOnAction(e -> {
-            AccountService.logoutCustomer(currentCustomer.getCustomerID());
+            AccountService.logoutCustomer(currentCustomer.getCustomerID(), sessionToken);
             currentCustomer = null;
-            cart.clearCart();
+            sessionToken = null; // the cart is kept for the next login
             showLoginView();
         });
 
@@ -338,6 +347,17 @@ public class MainGUI extends Application {
             centerBox.getChildren().clear();
             ordersTable = createOrdersTable();
             centerBox.getChildren().addAll(new Label("Your Orders:"), ordersTable);
+            if (ordersCursor != null) {
+                Button loadMoreBtn = new Button("Load older orders");
+                loadMoreBtn.setOnAction(ev -> {
+                    OrderStore.Page page = OrderService.getCustomerOrders(currentCustomer.getCustomerID(),
+                            null, null, ordersCursor, ORDERS_PAGE_SIZE);
+                    ordersTable.getItems().addAll(page.getOrders());
+                    ordersCursor = page.getNextCursor();
+                    loadMoreBtn.setDisable(ordersCursor == null);
+                });
+                centerBox.getChildren().add(loadMoreBtn);
+            }
         });
 
         checkoutBtn.setOnAction(e -> showCheckoutDialog());
@@ -371,7 +391,11 @@ public class MainGUI extends Application {
             } catch (Exception ex) { qty = 1; }
             if (qty <= 0) { showAlert(Alert.AlertType.ERROR, "Input Error", "Quantity must be positive."); return; }
 
-            cart.addItem(p, qty);
+            if (!cart().addItem(p, qty)) {
+                showAlert(Alert.AlertType.ERROR, "Out of Stock",
+                        "Only " + Inventory.getAvailable(p.getProductID()) + " more " + p.getProductName() + " in stock.");
+                return;
+            }
             showAlert(Alert.AlertType.INFORMATION, "Added", p.getProductName() + " x" + qty + " added to cart.");
             productIdField.clear();
             quantityField.clear();
@@ -428,7 +452,11 @@ public class MainGUI extends Application {
                         try {
                             int q = Integer.parseInt(qs.trim());
                             if (q <= 0) throw new NumberFormatException();
-                            cart.addItem(rowData, q);
+                            if (!cart().addItem(rowData, q)) {
+                                showAlert(Alert.AlertType.ERROR, "Out of Stock", "Only " + Inventory.getAvailable(rowData.getProductID())
+                                        + " more " + rowData.getProductName() + " in stock.");
+                                return;
+                            }
                             showAlert(Alert.AlertType.INFORMATION, "Added", rowData.getProductName() + " x" + q + " added to cart.");
                         } catch (NumberFormatException ex) {
                             showAlert(Alert.AlertType.ERROR, "Invalid Quantity", "Enter a positive integer.");
@@ -470,13 +498,13 @@ public class MainGUI extends Application {
         TableColumn<CartItem, Double> totalColumn = new TableColumn<>("Total");
         totalColumn.setCellValueFactory(cellData ->
                 new SimpleDoubleProperty(
-                        cellData.getValue().getProduct().getPrice() * cellData.getValue().getQuantity()
+                        cellData.getValue().getTotalPrice()
                 ).asObject());
 
         table.getColumns().setAll(idColumn, nameColumn, quantityColumn, priceColumn, totalColumn);
 
         // get list from cart assumed method getItems()
-        List<CartItem> items = cart.getItems();
+        List<CartItem> items = cart().getItems();
         ObservableList<CartItem> obs = FXCollections.observableArrayList(items);
         table.setItems(obs);
 
@@ -495,15 +523,13 @@ public class MainGUI extends Application {
                         try {
                             int q = Integer.parseInt(qs.trim());
                             if (q < 0) throw new NumberFormatException();
-                            if (q == 0) {
-                                cart.removeItem(item.getProduct().getProductID(), item.getQuantity());
-                            } else {
-                                // remove all then re-add with q (assuming Cart supports set via remove/add)
-                                cart.removeItem(item.getProduct().getProductID(), item.getQuantity());
-                                cart.addItem(item.getProduct(), q);
+                            // 0 removes the item; otherwise the quantity is changed in place
+                            if (!cart().setQuantity(item.getProduct().getProductID(), q)) {
+                                showAlert(Alert.AlertType.ERROR, "Out of Stock", "Not enough "
+                                        + item.getProduct().getProductName() + " in stock; the quantity was not changed.");
                             }
                             // refresh table
-                            table.setItems(FXCollections.observableArrayList(cart.getItems()));
+                            table.setItems(FXCollections.observableArrayList(cart().getItems()));
                         } catch (NumberFormatException ex) {
                             showAlert(Alert.AlertType.ERROR, "Invalid Quantity", "Enter a non-negative integer.");
                         }
@@ -517,7 +543,8 @@ public class MainGUI extends Application {
     }
     /**
      * Creates and configures the TableView for displaying the customer's past orders.
-     * Includes a double-click event listener to show detailed information about an order.
+     * Shows the first page of orders (newest first) and includes a double-click event listener
+     * to show detailed information about an order.
      *
      * @return A fully configured {@link TableView} of {@link Order} objects.
      */
@@ -544,8 +571,10 @@ public class MainGUI extends Application {
 
         table.getColumns().addAll(idC, dateC, totalC);
 
-        List<Order> orders = OrderService.getCustomerOrders(currentCustomer.getCustomerID());
-        table.setItems(FXCollections.observableArrayList(orders));
+        // First page only (newest first); more pages are loaded on request
+        OrderStore.Page page = OrderService.getCustomerOrders(currentCustomer.getCustomerID(), null, null, null, ORDERS_PAGE_SIZE);
+        ordersCursor = page.getNextCursor();
+        table.setItems(FXCollections.observableArrayList(page.getOrders()));
 
         // double click shows details
         table.setRowFactory(tv -> {
@@ -568,6 +597,7 @@ public class MainGUI extends Application {
      * for card validation and re-attempts.
      */
     private void showCheckoutDialog() {
+        Cart cart = cart();
         if (cart.isEmpty()) {
             showAlert(Alert.AlertType.ERROR, "Empty Cart", "Your cart is empty.");
             return;
@@ -582,12 +612,16 @@ public class MainGUI extends Application {
         for (CartItem item : cart.getItems()) {
             sb.append(item.toString()).append("\n");
         }
-        double total = cart.getTotal();
-        sb.append("\nSubtotal: $").append(String.format("%.2f", total));
-        sb.append("\nTax (8%): $").append(String.format("%.2f", total * 0.08));
+        Quote quote = cart.getQuote(null);
+        PricingRules rules = PricingEngine.getRules();
+        sb.append("\nSubtotal: $").append(Money.format(quote.getSubTotalCents()));
+        if (quote.getDiscountCents() > 0) {
+            sb.append("\nDiscount: -$").append(Money.format(quote.getDiscountCents()));
+        }
+        sb.append("\nTax (").append(rules.getTaxRateText()).append("): $").append(Money.format(quote.getTaxCents()));
         summary.setContentText(sb.toString());
 
-        ButtonType mail = new ButtonType("Mail ($3 fee)");
+        ButtonType mail = new ButtonType("Mail ($" + Money.format(rules.getDeliveryFeeCents("mail")) + " fee)");
         ButtonType pickup = new ButtonType("Pickup (Free)");
         ButtonType cancel = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
         summary.getButtonTypes().setAll(mail, pickup, cancel);
@@ -598,8 +632,9 @@ public class MainGUI extends Application {
         String delivery = (res.get() == mail) ? "mail" : "pickup";
         // Now process payment using customer's card (use same flow as console)
         CreditCard card = currentCustomer.getCreditCard();
-        double totalPrice = cart.getTotal();
-        if (delivery.equals("mail")) totalPrice += 3.00;
+        // One key for this checkout, so a repeated submission cannot charge twice
+        String idempotencyKey = UUID.randomUUID().toString();
+        long totalCents = cart.getQuote(delivery).getTotalCents();
 
         // If card expired or insufficient, prompt user to enter new card or add funds
         while (true) {
@@ -613,16 +648,34 @@ public class MainGUI extends Application {
                 currentCustomer.setCreditCard(card);
             }
 
-            if (card.getBalance() >= totalPrice) {
+            if (card.getLedger().getAvailableCents() >= totalCents) {
                 // place order
-                String result = OrderService.placeOrder(currentCustomer, cart, delivery);
+                String result = OrderService.placeOrder(sessionToken, currentCustomer, cart, delivery, idempotencyKey);
+                if (OrderService.isPaymentDeclined(result)) {
+                    // let the user try another card
+                    Alert declined = new Alert(Alert.AlertType.CONFIRMATION);
+                    declined.setTitle("Payment Declined");
+                    declined.setHeaderText(result);
+                    declined.setContentText("Would you like to try another card?");
+                    Optional<ButtonType> retry = declined.showAndWait();
+                    if (retry.isPresent() && retry.get() == ButtonType.OK) {
+                        CreditCard newCard = askForNewCard();
+                        if (newCard != null) {
+                            card = newCard;
+                            currentCustomer.setCreditCard(card);
+                            continue;
+                        }
+                    }
+                    showAlert(Alert.AlertType.INFORMATION, "Cancelled", "Checkout cancelled.");
+                    return;
+                }
                 showAlert(Alert.AlertType.INFORMATION, "Order Result", result);
                 return;
             } else {
                 // insufficient
                 Alert insufficient = new Alert(Alert.AlertType.CONFIRMATION);
                 insufficient.setTitle("Insufficient Balance");
-                insufficient.setHeaderText(String.format("Card balance: $%.2f, needed: $%.2f", card.getBalance(), totalPrice));
+                insufficient.setHeaderText(String.format("Card balance: $%.2f, needed: $%s", card.getBalance(), Money.format(totalCents)));
                 ButtonType enterNew = new ButtonType("Enter New Card");
                 ButtonType addFunds = new ButtonType("Add Funds");
                 ButtonType cancelBtn = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
@@ -651,7 +704,7 @@ public class MainGUI extends Application {
                         try {
                             double add = Double.parseDouble(fundRes.get().trim());
                             if (add <= 0) throw new NumberFormatException();
-                            card.setBalance(card.getBalance() + add);
+                            card.addFunds(add);
                             showAlert(Alert.AlertType.INFORMATION, "Funds Added", String.format("New balance: $%.2f", card.getBalance()));
                         } catch (NumberFormatException ex) {
                             showAlert(Alert.AlertType.ERROR, "Invalid Input", "Amount must be a positive number.");
@@ -710,7 +763,7 @@ public class MainGUI extends Application {
                     double bal = Double.parseDouble(balance.getText().trim());
                     CreditCard c = new CreditCard(ccNum.getText().trim(), ccHolder.getText().trim(), ccExp.getText().trim(), ccCvv.getText().trim(), bal);
                     if (!c.isValid()) {
-                        showAlert(Alert.AlertType.ERROR, "Invalid Card", "Card number must be 16 digits.");
+                        showAlert(Alert.AlertType.ERROR, "Invalid Card", "Card number is not valid (check the digits and length).");
                         return null;
                     }
                     if (c.isExpired()) {
@@ -730,6 +783,21 @@ public class MainGUI extends Application {
         return result.orElse(null);
     }
 
+    /**
+     * Returns the logged-in customer's cart from the {@link OrderService}'s cart store.
+     * Fetched on every use, so the store sees the cart is still active; the session token is
+     * refreshed at the same time so it does not expire while the customer is shopping.
+     *
+     * @return The current customer's cart.
+     */
+    private Cart cart() {
+        String refreshed = AccountService.refreshSessionToken(sessionToken);
+        if (refreshed != null) {
+            sessionToken = refreshed; // an expired token makes checkout ask to log in again
+        }
+        return OrderService.getCart(currentCustomer.getCustomerID());
+    }
+
     /**
      * A utility method to display a standardized alert dialog to the user.
      *
@@ -755,6 +823,14 @@ public class MainGUI extends Application {
         catalog.addProduct(new Product("P5", "Smart Watch", "Fitness tracking and notifications", 299.99, 249.99));
         catalog.addProduct(new Product("P6", "Wireless Earbuds", "True wireless with charging case", 149.99, 0));
         catalog.addProduct(new Product("P7", "Gaming Console", "Next-gen gaming system", 499.99, 449.99));
+        // Stock levels (products without one can be ordered in any quantity)
+        Inventory.setStock("P1", 25);
+        Inventory.setStock("P2", 40);
+        Inventory.setStock("P3", 60);
+        Inventory.setStock("P4", 30);
+        Inventory.setStock("P5", 50);
+        Inventory.setStock("P6", 80);
+        Inventory.setStock("P7", 20);
     }
 }
 
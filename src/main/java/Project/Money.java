@@ -0,0 +1,87 @@
+package Project;
+
+/**
+ * Utility class for amounts of money kept as whole cents in a {@code long}.
+ * <p>
+ * Prices and totals are added and multiplied as exact integers, so sums never drift the way
+ * {@code double} sums do. Rounding only happens in two explicit places: converting a dollar amount
+ * entered by a user ({@link #toCents(double)}, nearest cent) and applying a percentage such as sales
+ * tax ({@link #percentOf(long, int)}, half a cent rounds up).
+ */
+public class Money {
+    private Money() {
+    }
+
+    /**
+     * Converts a dollar amount to cents, rounding to the nearest cent.
+     *
+     * @param dollars The amount in dollars.
+     * @return The amount in cents.
+     */
+    public static long toCents(double dollars) {
+        return Math.round(dollars * 100);
+    }
+
+    /**
+     * @param cents An amount in cents.
+     * @return The amount in dollars (for display or legacy callers only).
+     */
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Multiplies a unit price by a quantity.
+     *
+     * @param unitCents The price of one unit in cents.
+     * @param quantity  The number of units.
+     * @return The total in cents.
+     * @throws ArithmeticException If the result does not fit in a long.
+     */
+    public static long times(long unitCents, long quantity) {
+        return Math.multiplyExact(unitCents, quantity);
+    }
+
+    /**
+     * Applies a percentage given in basis points (1/100 of a percent, so 8% is 800).
+     * The result is rounded to the nearest cent, with half a cent rounded away from zero.
+     *
+     * @param cents       The amount in cents.
+     * @param basisPoints The percentage in basis points.
+     * @return The percentage of the amount, in cents.
+     */
+    public static long percentOf(long cents, int basisPoints) {
+        long scaled = Math.multiplyExact(cents, (long) basisPoints);
+        return scaled >= 0 ? (scaled + 5000) / 10000 : -((-scaled + 5000) / 10000);
+    }
+
+    /**
+     * Formats cents as dollars with two decimals, e.g. 123456 as "1234.56" (no currency sign).
+     *
+     * @param cents The amount in cents.
+     * @return The formatted amount.
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    /**
+     * Appends cents as dollars with two decimals, without creating any intermediate strings.
+     *
+     * @param text  Where to append.
+     * @param cents The amount in cents.
+     * @return The same StringBuilder.
+     */
+    public static StringBuilder appendTo(StringBuilder text, long cents) {
+        long absolute = Math.abs(cents);
+        if (cents < 0) {
+            text.append('-');
+        }
+        long remainder = absolute % 100;
+        text.append(absolute / 100).append('.');
+        if (remainder < 10) {
+            text.append('0');
+        }
+        return text.append(remainder);
+    }
+}
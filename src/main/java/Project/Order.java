@@ -12,11 +12,11 @@ public class Order {
     private Date orderDate;
     private List<CartItem> items;
     private String deliveryMethod;
-    private double total;
+    private Quote quote; // what the customer was charged
     private String authorizationNumber;
 
     /**
-     * Constructor for order creating a new Order instance.
+     * Constructor for order creating a new Order instance, priced with the current {@link PricingEngine} rules.
      *
      * @param orderId A unique identifier for this order.
      * @param customer The {@link Customer} object who placed this order.
@@ -26,13 +26,48 @@ public class Order {
      */
     public Order(String orderId, Customer customer, List<CartItem> items,
                  String deliveryMethod, String authorizationNumber) {
+        this(orderId, customer, items, deliveryMethod, authorizationNumber, PricingEngine.quote(items, deliveryMethod));
+    }
+
+    /**
+     * Creates an order with the price it was charged at.
+     *
+     * @param orderId             A unique identifier for this order.
+     * @param customer            The customer who placed this order.
+     * @param items               The products and quantities in the order.
+     * @param deliveryMethod      The method chosen for delivery.
+     * @param authorizationNumber The payment authorization number.
+     * @param quote               The price of the items and delivery.
+     */
+    Order(String orderId, Customer customer, List<CartItem> items, String deliveryMethod,
+          String authorizationNumber, Quote quote) {
         this.orderId = orderId;
         this.customer = customer;
         this.orderDate = new Date();
         this.items = items;
         this.deliveryMethod = deliveryMethod;
         this.authorizationNumber = authorizationNumber;
-        this.total = calculateTotal();
+        this.quote = quote;
+    }
+
+    /**
+     * Recreates a saved order with its original date (used when recovering from the order journal).
+     *
+     * @param orderId             The order's ID.
+     * @param customer            The customer who placed the order.
+     * @param orderDate           When the order was placed.
+     * @param items               The products and quantities in the order.
+     * @param deliveryMethod      The method chosen for delivery.
+     * @param authorizationNumber The payment authorization number.
+     * @param quote               The saved price, or null (older journals) to price the items with the current rules.
+     * @return The restored Order.
+     */
+    static Order restore(String orderId, Customer customer, Date orderDate, List<CartItem> items,
+                         String deliveryMethod, String authorizationNumber, Quote quote) {
+        Order order = new Order(orderId, customer, items, deliveryMethod, authorizationNumber,
+                quote != null ? quote : PricingEngine.quote(items, deliveryMethod));
+        order.orderDate = orderDate;
+        return order;
     }
     //Getters
     public Customer getCustomer() {
@@ -57,50 +92,27 @@ public class Order {
         return orderDate;
     }
     public double getTotal() {
-        return total;
+        return Money.toDollars(quote.getTotalCents());
+    }
+    public long getTotalCents() {
+        return quote.getTotalCents();
     }
 
     /**
-     * Calculates the total cost of the order, including item subtotals, sales tax, and delivery fees.
-     * Called internally when the Order object is constructed.
-     *
-     * @return The calculated total cost of the order.
+     * @return The breakdown of the total (subtotal, discount, tax and delivery fee).
      */
-    private double calculateTotal() {
-        double subtotal = 0;
-        for (CartItem item : items) {
-            subtotal += item.getTotalPrice();
-        }
-
-        double tax = subtotal * 0.08; // 8% tax
-        double shipping = deliveryMethod.equals("mail") ? 3.00 : 0.00;
-
-        return subtotal + tax + shipping;
+    public Quote getQuote() {
+        return quote;
     }
 
     /**
      * Generates a formatted string containing all relevant details of the order.
      * This includes Order ID, Date, Delivery Method, a list of items, the total cost,
-     * and the payment authorization number.
+     * and the payment authorization number (see {@link ReceiptRenderer}).
      *
      * @return A formatted String containing the complete order details.
      */
     public String getOrderDetails() {
-        String details = "Order ID: " + orderId + "\n";
-        details += "Date: " + orderDate + "\n";
-        details += "Delivery: " + deliveryMethod;
-        if (deliveryMethod.equals("mail")) {
-            details += " ($3.00 fee)";
-        }
-        details += "\nItems:\n";
-
-        for (CartItem item : items) {
-            details += "  " + item.toString() + "\n";
-        }
-
-        details += "Total: $" + String.format("%.2f", total) + "\n";
-        details += "Auth#: " + authorizationNumber;
-
-        return details;
+        return ReceiptRenderer.toText(this);
     }
 }
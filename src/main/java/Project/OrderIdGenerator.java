@@ -0,0 +1,136 @@
+package Project;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique, time-ordered order IDs (Snowflake layout).
+ * <p>
+ * Each ID is a 63-bit number made of a millisecond timestamp (41 bits, counted from 2025-01-01),
+ * a node ID (10 bits, so up to 1024 instances can generate IDs independently) and a per-millisecond
+ * sequence (12 bits, 4096 IDs per millisecond per node). The last timestamp and sequence are kept in
+ * one {@link AtomicLong} and advanced with compare-and-set, so no locking is needed.
+ * <p>
+ * If the clock goes backwards, or more than 4096 IDs are needed in one millisecond, the generator keeps
+ * counting from its last timestamp (borrowing the next millisecond) instead of waiting or repeating an ID.
+ * After a restart the generator must be moved past the IDs already issued with {@link #advancePast(String)}
+ * (the order journal does this for every order it replays), otherwise a clock that is now behind
+ * could repeat them.
+ */
+public class OrderIdGenerator {
+    private static final long EPOCH = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13; // base 36 digits needed for a 63-bit number
+
+    private final long nodeID;
+    private final AtomicLong lastState = new AtomicLong(); // (timestamp << SEQUENCE_BITS) | sequence
+
+    /**
+     * Creates a generator for one node.
+     *
+     * @param nodeID The ID of this instance (0-1023); must be different on every instance.
+     */
+    public OrderIdGenerator(long nodeID) {
+        if (nodeID < 0 || nodeID > MAX_NODE) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE + ".");
+        }
+        this.nodeID = nodeID;
+    }
+
+    /**
+     * @return The next ID as a number. IDs from one generator always increase.
+     */
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH;
+            long previous = lastState.get();
+            long lastTimestamp = previous >>> SEQUENCE_BITS;
+            long timestamp;
+            long sequence;
+            if (now > lastTimestamp) {
+                timestamp = now;
+                sequence = 0;
+            } else {
+                // Same millisecond, or the clock went backwards: continue from the last timestamp
+                timestamp = lastTimestamp;
+                sequence = (previous & MAX_SEQUENCE) + 1;
+                if (sequence > MAX_SEQUENCE) {
+                    timestamp++;
+                    sequence = 0;
+                }
+            }
+            if (lastState.compareAndSet(previous, (timestamp << SEQUENCE_BITS) | sequence)) {
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeID << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * Makes sure every later ID is greater than an ID that was already issued (by any node).
+     *
+     * @param id An ID issued earlier, e.g. before a restart.
+     */
+    public void advancePast(long id) {
+        long issued = (id >>> (NODE_BITS + SEQUENCE_BITS) << SEQUENCE_BITS) | (id & MAX_SEQUENCE);
+        lastState.accumulateAndGet(issued, Math::max);
+    }
+
+    /**
+     * Same as {@link #advancePast(long)} for an order number; does nothing if it is not one of ours.
+     *
+     * @param orderId An order number issued earlier, e.g. "ORD01SU1N5LBF4FJ".
+     */
+    public void advancePast(String orderId) {
+        long id = decode(orderId);
+        if (id >= 0) {
+            advancePast(id);
+        }
+    }
+
+    /**
+     * @return The next ID as an order number, e.g. "ORD01SU1N5LBF4FJ".
+     * Order numbers sort the same way as the IDs they encode.
+     */
+    public String nextOrderId() {
+        return "ORD" + encode(nextId());
+    }
+
+    /**
+     * Encodes an ID as fixed-width, upper case base 36 so that string order matches numeric order.
+     *
+     * @param id A non-negative ID.
+     * @return The 13-character encoded ID.
+     */
+    static String encode(long id) {
+        char[] digits = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            int digit = (int) (id % 36);
+            digits[i] = (char) (digit < 10 ? '0' + digit : 'A' + digit - 10);
+            id /= 36;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Reads back an order number made by {@link #nextOrderId()}.
+     *
+     * @param orderId The order number.
+     * @return The ID, or -1 if the order number was not made by this class.
+     */
+    static long decode(String orderId) {
+        if (orderId == null || orderId.length() != 3 + ENCODED_LENGTH || !orderId.startsWith("ORD")) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 3; i < orderId.length(); i++) {
+            int digit = Character.digit(orderId.charAt(i), 36);
+            if (digit < 0 || Character.isLowerCase(orderId.charAt(i)) || id > (Long.MAX_VALUE - digit) / 36) {
+                return -1;
+            }
+            id = id * 36 + digit;
+        }
+        return id;
+    }
+}
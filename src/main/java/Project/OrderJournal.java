@@ -0,0 +1,375 @@
+package Project;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of placed orders.
+ * <p>
+ * Orders are appended before they are confirmed to the customer. Instead of one fsync per order,
+ * a single writer thread takes every order that arrived while the previous write was being forced
+ * to disk and writes them together with one {@link FileChannel#force(boolean)} (group commit).
+ * Under load many orders share one fsync; when idle an order is written on its own right away.
+ * <p>
+ * Records are {@code [length][crc][order]}; a torn record at the end of the file (crash mid-write)
+ * is cut off when the journal is opened.
+ * <p>
+ * An order can also be journaled before its payment is captured ({@link #appendPending(Order)}); it is
+ * then only replayed if a capture record for it ({@link #appendCaptured(String)}) follows. A checkout
+ * that fails (or a crash) between the two leaves no placed order behind.
+ */
+public class OrderJournal {
+    private static final String JOURNAL_FILE = "orders.journal";
+    private static final int MAX_BATCH = 4096;
+    private static final int READ_BUFFER = 1 << 16;
+    // Records start with the negated format version; version 1 records had none and dollar prices,
+    // version 2 records had no record type (they are all placed orders)
+    private static final int RECORD_VERSION = 3;
+    private static final byte PLACED = 0; // an order that is placed as soon as it is on disk
+    private static final byte PENDING = 1; // an order whose payment is not captured yet
+    private static final byte CAPTURED = 2; // the payment of a pending order was captured: just its ID
+
+    /**
+     * An order waiting to be written, and the future to complete once it is on disk.
+     */
+    private static class PendingWrite {
+        final byte[] record;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(byte[] record) {
+            this.record = record;
+        }
+    }
+
+    private static final PendingWrite END = new PendingWrite(new byte[0]); // queued by close()
+
+    private final FileChannel channel;
+    private final LinkedBlockingQueue<PendingWrite> pending = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final Object closeLock = new Object();
+    private boolean closed; // guarded by closeLock
+
+    /**
+     * Opens (or creates) the journal in a directory, replaying every complete order in it.
+     *
+     * @param directory Where the journal file lives.
+     * @param recovered Receives each order found in the journal, oldest first.
+     * @throws IOException If the journal cannot be read or created.
+     */
+    public OrderJournal(Path directory, Consumer<Order> recovered) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(JOURNAL_FILE);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replay(recovered);
+        channel.position(channel.size());
+
+        writer = new Thread(this::writeLoop, "order-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues an order to be written.
+     *
+     * @param order The order to journal.
+     * @return A future that completes once the order has been forced to disk
+     * (or completes exceptionally if the write failed).
+     */
+    public CompletableFuture<Void> append(Order order) {
+        return queue(encode(order, PLACED));
+    }
+
+    /**
+     * Queues an order whose payment is not captured yet. It is only replayed once
+     * {@link #appendCaptured(String)} has been written for it too.
+     *
+     * @param order The order to journal.
+     * @return A future that completes once the order has been forced to disk
+     * (or completes exceptionally if the write failed).
+     */
+    public CompletableFuture<Void> appendPending(Order order) {
+        return queue(encode(order, PENDING));
+    }
+
+    /**
+     * Queues the record that the payment of an order written with {@link #appendPending(Order)} was captured.
+     *
+     * @param orderId The ID of the pending order.
+     * @return A future that completes once the record has been forced to disk
+     * (or completes exceptionally if the write failed).
+     */
+    public CompletableFuture<Void> appendCaptured(String orderId) {
+        byte[] id = bytes(orderId);
+        return queue(ByteBuffer.allocate(4 + 1 + 4 + id.length)
+                .putInt(-RECORD_VERSION).put(CAPTURED).putInt(id.length).put(id).array());
+    }
+
+    private CompletableFuture<Void> queue(byte[] record) {
+        PendingWrite write = new PendingWrite(record);
+        synchronized (closeLock) { // so no write can be queued behind the end marker
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("Order journal is closed"));
+            }
+            pending.add(write);
+        }
+        return write.done;
+    }
+
+    /**
+     * Writes the orders still queued and closes the journal.
+     *
+     * @throws IOException If the journal cannot be closed.
+     */
+    public void close() throws IOException {
+        synchronized (closeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.add(END); // queued after every accepted write, so they are all written first
+        }
+        // No interrupt: FileChannel closes itself when its thread is interrupted mid-write
+        boolean interrupted = false;
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        channel.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Group commit loop: wait for at least one order, take everything else that is queued,
+     * write it all and force it to disk once.
+     */
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (true) {
+            PendingWrite first;
+            try {
+                first = pending.take();
+            } catch (InterruptedException e) {
+                continue; // only close() stops the writer, via the end marker
+            }
+            batch.add(first);
+            pending.drainTo(batch, MAX_BATCH - 1);
+            boolean end = batch.remove(END); // always the last one queued
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+            batch.clear();
+            if (end) {
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        int size = 0;
+        for (PendingWrite write : batch) {
+            size += 8 + write.record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (PendingWrite write : batch) {
+            buffer.putInt(write.record.length).putInt(crc(write.record)).put(write.record);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            for (PendingWrite write : batch) {
+                write.done.complete(null);
+            }
+        } catch (IOException e) {
+            for (PendingWrite write : batch) {
+                write.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Reads every complete record and truncates a torn one at the end.
+     * Pending orders are passed on when their capture record is read; those without one are dropped.
+     */
+    private void replay(Consumer<Order> recovered) throws IOException {
+        // Streamed through a fixed buffer rather than mapped, so the journal can grow past what one mapping holds
+        long size = channel.size();
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER));
+        long validEnd = 0;
+        Map<String, Order> uncaptured = new HashMap<>();
+        while (size - validEnd >= 8) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > size - validEnd - 8) {
+                break;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            if (crc(record) != checksum) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.wrap(record);
+            byte type = type(body);
+            if (type == CAPTURED) {
+                body.position(4 + 1);
+                Order order = uncaptured.remove(string(body));
+                if (order != null) {
+                    recovered.accept(order);
+                }
+            } else {
+                Order order = decode(body);
+                if (order != null && type == PENDING) {
+                    uncaptured.put(order.getOrderId(), order);
+                } else if (order != null) {
+                    recovered.accept(order);
+                }
+            }
+            validEnd += 8 + length;
+        }
+        if (!uncaptured.isEmpty()) {
+            System.out.println("Dropping " + uncaptured.size() + " journaled orders whose payment was never captured");
+        }
+        if (validEnd < channel.size()) {
+            System.out.println("Discarding incomplete record at the end of the order journal");
+            channel.truncate(validEnd);
+        }
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return The type of a record: records written before version 3 are all placed orders.
+     */
+    private static byte type(ByteBuffer record) {
+        return record.getInt(0) == -RECORD_VERSION ? record.get(4) : PLACED;
+    }
+
+    /**
+     * Serializes an order: its header fields, every item with its product details, then the price charged.
+     * All amounts are in cents.
+     */
+    static byte[] encode(Order order, byte type) {
+        List<byte[]> strings = new ArrayList<>();
+        int size = 4 + 1 + 8 + 4; // version + type + date + item count
+        for (String field : new String[]{order.getOrderId(), order.getCustomer().getCustomerID(),
+                order.getDeliveryMethod(), order.getAuthorizationNumber()}) {
+            byte[] bytes = bytes(field);
+            strings.add(bytes);
+            size += 4 + bytes.length;
+        }
+        for (CartItem item : order.getItems()) {
+            Product product = item.getProduct();
+            for (String field : new String[]{product.getProductID(), product.getProductName(), product.getProductDescription()}) {
+                byte[] bytes = bytes(field);
+                strings.add(bytes);
+                size += 4 + bytes.length;
+            }
+            size += 8 + 8 + 4; // prices + quantity
+        }
+        size += 4 * 8; // quote: subtotal, discount, tax, delivery fee
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(-RECORD_VERSION).put(type);
+        int next = 0;
+        for (int i = 0; i < 4; i++) {
+            byte[] bytes = strings.get(next++);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.putLong(order.getOrderDate().getTime());
+        buffer.putInt(order.getItems().size());
+        for (CartItem item : order.getItems()) {
+            for (int i = 0; i < 3; i++) {
+                byte[] bytes = strings.get(next++);
+                buffer.putInt(bytes.length).put(bytes);
+            }
+            buffer.putLong(item.getProduct().getRegularPriceCents());
+            buffer.putLong(item.getProduct().getSalesPriceCents());
+            buffer.putInt(item.getQuantity());
+        }
+        Quote quote = order.getQuote();
+        buffer.putLong(quote.getSubTotalCents()).putLong(quote.getDiscountCents())
+                .putLong(quote.getTaxCents()).putLong(quote.getDeliveryFeeCents());
+        return buffer.array();
+    }
+
+    /**
+     * Reads an order written by {@link #encode(Order, byte)}.
+     *
+     * @return The order, or null if its customer no longer exists.
+     */
+    static Order decode(ByteBuffer buffer) {
+        int version = 1;
+        if (buffer.getInt(buffer.position()) < 0) {
+            version = -buffer.getInt();
+        }
+        if (version >= 3) {
+            buffer.get(); // the record type
+        }
+        String orderId = string(buffer);
+        String customerID = string(buffer);
+        String deliveryMethod = string(buffer);
+        String authorizationNumber = string(buffer);
+        Date orderDate = new Date(buffer.getLong());
+        int itemCount = buffer.getInt();
+        List<CartItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            String id = string(buffer);
+            String name = string(buffer);
+            String description = string(buffer);
+            Product product = version >= 2
+                    ? Product.restore(id, name, description, buffer.getLong(), buffer.getLong())
+                    : new Product(id, name, description, buffer.getDouble(), buffer.getDouble());
+            items.add(new CartItem(product, buffer.getInt()));
+        }
+        Quote quote = null;
+        if (buffer.remaining() >= 4 * 8) { // records written before prices were saved have no quote
+            quote = new Quote(deliveryMethod, buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+        }
+        Customer customer = AccountService.getCustomerByID(customerID);
+        if (customer == null) {
+            System.out.println("Skipping journaled order " + orderId + ": customer " + customerID + " not found.");
+            return null;
+        }
+        return Order.restore(orderId, customer, orderDate, items, deliveryMethod, authorizationNumber, quote);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
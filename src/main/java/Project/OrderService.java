@@ -1,14 +1,40 @@
 package Project;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service class responsible for handling order-related operations(placing new orders, processing payments, and retrieving customer order history) in the Customer Order System.
+ * Payments go through a {@link PaymentGateway}; if a card is declined, the caller decides whether to
+ * ask the customer for another card and try again.
  */
 public class OrderService {
-    private static List<Order> orders = new ArrayList<>();
+    static final String PAYMENT_DECLINED = "Error: Payment declined";
+
+    private static final OrderStore orders = new OrderStore();
+    // Set -Dcos.node.id to a different value (0-1023) on each instance
+    private static final OrderIdGenerator orderIds = new OrderIdGenerator(Long.getLong("cos.node.id", 0L));
+    private static volatile PaymentGateway paymentGateway = new BankSimulator();
+    // Optional write-ahead journal; when null, orders only live in memory
+    private static volatile OrderJournal journal;
+    private static final SalesAggregates sales = new SalesAggregates();
+    private static final CheckoutPipeline checkout = new CheckoutPipeline(orders, orderIds, sales, () -> paymentGateway, 1024);
+    // Idempotency keys seen recently (per customer) and the order each one placed;
+    // -Dcos.idempotency.max bounds the number of keys, -Dcos.idempotency.ttl.hours how long they are kept
+    private static final IdempotencyCache<CompletableFuture<Order>> recentRequests = new IdempotencyCache<>(
+            Integer.getInteger("cos.idempotency.max", 1_000_000),
+            Long.getLong("cos.idempotency.ttl.hours", 24L) * 60 * 60 * 1000);
+    // Customers' carts; -Dcos.carts.max bounds how many are kept in memory, -Dcos.carts.idle.hours when one is abandoned
+    private static final CartStore carts = new CartStore(
+            Integer.getInteger("cos.carts.max", 1_000_000),
+            Long.getLong("cos.carts.idle.hours", 24L) * 60 * 60 * 1000);
 
     /**
      * Places a new order for a customer based on their current cart contents.
@@ -22,160 +48,321 @@ public class OrderService {
      * along with order details if successful.
      */
     public static String placeOrder(Customer customer, Cart cart, String deliveryMethod) {
-        // Validate parameters
-        if (!AccountService.isLoggedIn(customer.getCustomerID())) {
-            return "Error: You must be logged in to place an order";
-        }
+        return completeOrder(null, customer, cart, deliveryMethod).join();
+    }
 
-        if (cart.isEmpty()) {
-            return "Error: Your cart is empty";
-        }
+    /**
+     * Places a new order, checking the login with a signed session token instead of the
+     * in-memory session list, so it works on any node that shares the token secret.
+     *
+     * @param sessionToken   The token returned by {@link AccountService#loginCustomer(String)}.
+     * @param customer       The Customer object placing the order.
+     * @param cart           The Cart object containing the items to be ordered.
+     * @param deliveryMethod The chosen delivery method ("mail" or "pickup").
+     * @return A String message indicating the success or failure of the order placement,
+     * along with order details if successful.
+     */
+    public static String placeOrder(String sessionToken, Customer customer, Cart cart, String deliveryMethod) {
+        return placeOrderAsync(sessionToken, customer, cart, deliveryMethod).join();
+    }
 
-        if (!deliveryMethod.equals("mail") && !deliveryMethod.equals("pickup")) {
-            return "Error: Invalid delivery method";
+    /**
+     * Places a new order without waiting for the payment authorization.
+     * The cart must not be changed until the returned future completes (it is cleared on success).
+     *
+     * @param sessionToken   The token returned by {@link AccountService#loginCustomer(String)}.
+     * @param customer       The Customer object placing the order.
+     * @param cart           The Cart object containing the items to be ordered.
+     * @param deliveryMethod The chosen delivery method ("mail" or "pickup").
+     * @return A future with the same message {@link #placeOrder(String, Customer, Cart, String)} returns.
+     */
+    public static CompletableFuture<String> placeOrderAsync(String sessionToken, Customer customer, Cart cart,
+                                                            String deliveryMethod) {
+        if (sessionToken == null) {
+            return CompletableFuture.completedFuture("Error: You must be logged in to place an order");
         }
+        return completeOrder(sessionToken, customer, cart, deliveryMethod);
+    }
 
-        // Calculate total with delivery fee
-        double total = cart.getTotal();
-        if (deliveryMethod.equals("mail")) {
-            total += 3.00; // Add mailing fee
-        }
+    /**
+     * Places an order at most once per idempotency key. If the same customer submits the same key
+     * again (for example a client retrying after a timeout), the card is not charged again: the
+     * result of the original order is returned instead, waiting for it if it is still in progress.
+     * A key whose order failed (e.g. payment declined) is forgotten so that it can be retried.
+     *
+     * @param sessionToken   The token returned by {@link AccountService#loginCustomer(String)}.
+     * @param customer       The Customer object placing the order.
+     * @param cart           The Cart object containing the items to be ordered.
+     * @param deliveryMethod The chosen delivery method ("mail" or "pickup").
+     * @param idempotencyKey A key the client chooses once per order and reuses on every retry.
+     * @return A String message indicating the success or failure of the order placement,
+     * along with order details if successful.
+     */
+    public static String placeOrder(String sessionToken, Customer customer, Cart cart, String deliveryMethod,
+                                    String idempotencyKey) {
+        return placeOrderAsync(sessionToken, customer, cart, deliveryMethod, idempotencyKey).join();
+    }
 
-        // Display order summary
-        System.out.println("\n=== Order Summary ===");
-        cart.displayCartDetails();
-        System.out.println("Delivery Method: " + deliveryMethod +
-                (deliveryMethod.equals("mail") ? " ($3.00 fee)" : " (Free pickup)"));
-        System.out.println("Total with delivery: $" + String.format("%.2f", total));
+    /**
+     * Asynchronous version of {@link #placeOrder(String, Customer, Cart, String, String)}.
+     *
+     * @param sessionToken   The token returned by {@link AccountService#loginCustomer(String)}.
+     * @param customer       The Customer object placing the order.
+     * @param cart           The Cart object containing the items to be ordered.
+     * @param deliveryMethod The chosen delivery method ("mail" or "pickup").
+     * @param idempotencyKey A key the client chooses once per order and reuses on every retry.
+     * @return A future with the result message.
+     */
+    public static CompletableFuture<String> placeOrderAsync(String sessionToken, Customer customer, Cart cart,
+                                                            String deliveryMethod, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return CompletableFuture.completedFuture("Error: Idempotency key cannot be empty");
+        }
+        if (sessionToken == null) {
+            return CompletableFuture.completedFuture("Error: You must be logged in to place an order");
+        }
+        String key = customer.getCustomerID() + '|' + idempotencyKey;
+        CompletableFuture<Order> placed = new CompletableFuture<>();
+        CompletableFuture<Order> original = recentRequests.putIfAbsent(key, placed);
+        if (original != null) {
+            System.out.println("Order request " + idempotencyKey + " was already submitted, returning its result.");
+            return original.handle((order, error) -> error == null
+                    ? CheckoutPipeline.placedMessage(order) : error.getMessage());
+        }
+        return completeOrder(sessionToken, customer, cart, deliveryMethod, placed::complete)
+                .whenComplete((result, error) -> {
+                    if (!placed.isDone()) { // no order was placed: let the key be used again
+                        recentRequests.remove(key, placed);
+                        placed.completeExceptionally(new IllegalStateException(
+                                error != null ? "Error: Order could not be placed: " + error.getMessage() : result));
+                    }
+                });
+    }
 
-        // Process payment
-        CreditCard card = customer.getCreditCard();
-        String authNumber = processPayment(total, card);
+    /**
+     * Checks whether a result from placeOrder means the card was declined
+     * (so the customer may want to try another card).
+     *
+     * @param result The message returned by placeOrder.
+     * @return true if the payment was declined, false otherwise.
+     */
+    public static boolean isPaymentDeclined(String result) {
+        return result != null && result.startsWith(PAYMENT_DECLINED);
+    }
 
-        if (authNumber == null) {
-            System.out.println("Payment failed with current card.");
-            return "Error: Payment could not be processed";
+    /**
+     * Replaces the payment gateway (e.g. to connect to a real bank instead of the simulator).
+     *
+     * @param gateway The gateway to use for new orders.
+     */
+    public static void setPaymentGateway(PaymentGateway gateway) {
+        if (gateway == null) {
+            throw new IllegalArgumentException("Payment gateway cannot be null.");
         }
+        paymentGateway = gateway;
+    }
 
-        // Create and store order
-        String orderId = "ORD" + System.currentTimeMillis();
-        Order newOrder = new Order(orderId, customer, cart.getItems(), deliveryMethod, authNumber);
-        orders.add(newOrder);
+    /**
+     * Prints the order summary and hands the checkout to the {@link CheckoutPipeline}
+     * (validate, price, authorize, persist, notify).
+     *
+     * @param sessionToken   The customer's session token, or null to check the in-memory session list.
+     * @param customer       The Customer placing the order.
+     * @param cart           The Cart object containing the items to be ordered.
+     * @param deliveryMethod The chosen delivery method ("mail" or "pickup").
+     * @return A future with a message indicating the success or failure of the order placement.
+     */
+    private static CompletableFuture<String> completeOrder(String sessionToken, Customer customer, Cart cart,
+                                                           String deliveryMethod) {
+        return completeOrder(sessionToken, customer, cart, deliveryMethod, null);
+    }
 
-        // Clear cart
-        cart.clearCart();
+    private static CompletableFuture<String> completeOrder(String sessionToken, Customer customer, Cart cart,
+                                                           String deliveryMethod, Consumer<Order> onPlaced) {
+        if (!cart.isEmpty()) {
+            // Display order summary
+            System.out.println("\n=== Order Summary ===");
+            cart.displayCartDetails();
+            long fee = PricingEngine.getRules().getDeliveryFeeCents(deliveryMethod);
+            System.out.println("Delivery Method: " + deliveryMethod +
+                    (fee > 0 ? " ($" + Money.format(fee) + " fee)" : " (Free " + deliveryMethod + ")"));
+            System.out.println("Paying with card ending in " + lastDigits(customer.getCreditCard()));
+        }
+        return checkout.submit(sessionToken, customer, cart, deliveryMethod, onPlaced);
+    }
+
+    /**
+     * @return The checkout pipeline stages with their queue depths and latencies, for monitoring.
+     */
+    public static List<CheckoutPipeline.Stage> getCheckoutStages() {
+        return checkout.getStages();
+    }
 
-        // Return confirmation
-        return "Order placed successfully!\n" + newOrder.getOrderDetails();
+    private static String lastDigits(CreditCard card) {
+        String number = card == null ? null : card.getNumber();
+        if (number == null || number.length() < 4) {
+            return "????";
+        }
+        return number.substring(number.length() - 4);
     }
 
     /**
-     * Retrieves all orders for a specific customer
+     * Returns a customer's cart, restoring it if it was put aside (see {@link CartStore}).
+     * Call this whenever the customer uses the cart, so an active cart is never treated as abandoned.
      *
-     * @param customerID The ID of the customer to find orders for
-     * @return List of orders belonging to the customer
+     * @param customerID The ID of the customer.
+     * @return The customer's cart.
      */
-    public static List<Order> getCustomerOrders(String customerID) {
-        List<Order> customerOrders = new ArrayList<>();
-        for (Order order : orders) {
-            if (order.getCustomer().getCustomerID().equals(customerID)) {
-                customerOrders.add(order);
-            }
-        }
-        return customerOrders;
-    }
-
-    /**
-     * Simulates processing a credit card payment for a given amount.
-     * Handles credit card validation, simulates bank approval/denial,
-     * and allows for up to 3 attempts to enter a new credit card if the initial one fails.
-     *
-     * @param amount The total amount to be charged to the credit card.
-     * @param originalCard   The initial CreditCard object to attempt charging. This object is updated
-     *               internally if the user enters a new card.
-     * @return A four-digit authorization number as a String if payment is approved, or {@code null} if
-     * payment is declined after all attempts or the user chooses to exit.
-     */
-    private static String processPayment(double amount, CreditCard originalCard) {
-        Scanner scanner = new Scanner(System.in);
-        int attempts = 0;
-        CreditCard currentCard = originalCard;
-        boolean cardChanged = false;
-
-        while (attempts < 3) {
-            // First, check card validity before bank approval
-            if (!currentCard.isValid()) {
-                System.out.println("Stored card is invalid.");
-            } else {
-                // Simulate realistic bank approval
-                System.out.println("Processing payment of $" + String.format("%.2f", amount) +
-                        " with card ending in " + currentCard.getNumber().substring(12));
-
-                if (simulateBankApproval(currentCard, amount)) {
-                    String authNumber = String.format("%04d", (int) (Math.random() * 10000));
-                    System.out.println("Payment approved. Auth#: " + authNumber);
-
-                    // If customer entered a new card, save it to their account
-                    if (cardChanged) {
-                        originalCard.setNumber(currentCard.getNumber());
-                        originalCard.setHolderName(currentCard.getHolderName());
-                        originalCard.setExpirationDate(currentCard.getExpirationDate());
-                        originalCard.setCvv(currentCard.getCvv());
-                        originalCard.setBalance(currentCard.getBalance());
-                    }
+    public static Cart getCart(String customerID) {
+        return carts.getCart(customerID);
+    }
 
-                    return authNumber; // success
-                } else {
-                    System.out.println("Payment declined by bank.");
-                }
-            }
-
-            attempts++;
-
-            // Only prompt for a new card if we still have attempts left
-            if (attempts < 3) {
-                System.out.println("Would you like to try another card? (yes/no)");
-                String response = scanner.nextLine();
-                if (!response.equalsIgnoreCase("yes")) break;
-                currentCard = readNewCard(scanner);
-                cardChanged = true;
-            }
-        }
+    /**
+     * @return The store of customers' carts, for monitoring.
+     */
+    public static CartStore getCartStore() {
+        return carts;
+    }
 
-        return null; // All attempts failed
+    /**
+     * Keeps carts that are evicted from memory (or still open at shutdown) in a directory, so
+     * customers find them again at their next login.
+     *
+     * @param directory Where saved carts are kept.
+     * @param catalog   The products for sale, which give saved items their current price.
+     * @throws IOException If the directory cannot be created.
+     */
+    public static void openCartStore(Path directory, ProductListing catalog) throws IOException {
+        carts.spillTo(directory, catalog);
     }
 
+    /**
+     * Saves every open cart (if a cart directory was set) and stops the cart expiry task.
+     */
+    public static void closeCartStore() {
+        carts.close();
+    }
 
-    private static boolean simulateBankApproval(CreditCard card, double amount) {
-        if (card.isExpired()) {
-            System.out.println("Bank declined: Card expired.");
-            return false;
+    /**
+     * Opens the order journal in a directory and reloads every journaled order.
+     * Customers must already be loaded (see {@link AccountService#openStore}) so orders can be matched to them.
+     *
+     * @param directory Where the order journal is kept.
+     * @throws IOException If the journal cannot be read or created.
+     */
+    public static synchronized void openJournal(Path directory) throws IOException {
+        if (journal != null) {
+            throw new IllegalStateException("Order journal is already open.");
         }
+        journal = new OrderJournal(directory, order -> {
+            orders.add(order);
+            orderIds.advancePast(order.getOrderId()); // never issue a journaled ID again, even if the clock is behind
+        });
+        sales.rebuild(orders.getAll());
+    }
 
-        if (card.getBalance() < amount) {
-            System.out.println("Bank declined: Insufficient balance.");
-            return false;
+    /**
+     * Writes any orders still waiting and closes the order journal, if one is open.
+     * Returns once the journaled orders are also charged and stored, so the customer store can be closed next.
+     */
+    public static synchronized void closeJournal() {
+        OrderJournal currentJournal = journal;
+        if (currentJournal == null) {
+            return;
+        }
+        journal = null;
+        // Checkouts already journaled still write their capture record, so wait for them before closing
+        if (!checkout.awaitCommitted(30_000)) {
+            System.out.println("Warning: some journaled orders were still being completed at shutdown.");
+        }
+        try {
+            currentJournal.close();
+        } catch (IOException e) {
+            System.out.println("Warning: order journal could not be closed cleanly: " + e.getMessage());
         }
+    }
+
+    /**
+     * @return The open order journal, or null if orders only live in memory.
+     */
+    static OrderJournal getJournal() {
+        return journal;
+    }
 
-        card.setBalance(card.getBalance() - amount);
-        return true;
+    /**
+     * Writes the receipts of every order placed on one day to a file (e.g. for end-of-day mailing),
+     * oldest first. The day's orders come from the store's date index, so other days are not read.
+     *
+     * @param day  The day, in the system time zone.
+     * @param file The file to write to (replaced if it exists).
+     * @return The number of receipts written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static int writeDailyReceipts(LocalDate day, Path file) throws IOException {
+        ZoneId zone = ZoneId.systemDefault();
+        long start = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new ReceiptRenderer().renderAll(orders.getPlacedBetween(new Date(start), new Date(end)), file);
     }
 
+    /**
+     * Retrieves all orders for a specific customer
+     *
+     * @param customerID The ID of the customer to find orders for
+     * @return List of orders belonging to the customer
+     */
+    public static List<Order> getCustomerOrders(String customerID) {
+        return orders.getByCustomer(customerID);
+    }
 
-    // Helper to read new card input
-    private static CreditCard readNewCard(Scanner scanner) {
-        System.out.print("Enter new card number: ");
-        String number = scanner.nextLine();
+    /**
+     * Retrieves one page of a customer's order history, newest first. Only the orders on the page
+     * are read, so the first page is just as fast for a customer with thousands of orders.
+     *
+     * @param customerID The ID of the customer
+     * @param from       Only orders placed at or after this time (null for no lower limit)
+     * @param to         Only orders placed before this time (null for no upper limit)
+     * @param after      {@link OrderStore.Page#getNextCursor()} of the previous page, or null for the first page
+     * @param limit      The maximum number of orders on the page
+     * @return The page of orders and the cursor for the next page
+     */
+    public static OrderStore.Page getCustomerOrders(String customerID, Date from, Date to, String after, int limit) {
+        return orders.getPage(customerID, from, to, after, limit, true);
+    }
 
-        System.out.print("Enter card holder name: ");
-        String name = scanner.nextLine();
+    /**
+     * Streams a customer's order history, newest first, without copying it into a list.
+     *
+     * @param customerID The ID of the customer
+     * @param from       Only orders placed at or after this time (null for no lower limit)
+     * @param to         Only orders placed before this time (null for no upper limit)
+     * @return The customer's orders in the range
+     */
+    public static Stream<Order> streamCustomerOrders(String customerID, Date from, Date to) {
+        return orders.stream(customerID, from, to, true);
+    }
 
-        System.out.print("Enter expiration date (MM/YY): ");
-        String exp = scanner.nextLine();
+    /**
+     * @return Revenue and counts by product, day and delivery method, kept up to date as orders are placed.
+     */
+    public static SalesAggregates getSalesAggregates() {
+        return sales;
+    }
 
-        System.out.print("Enter CVV: ");
-        String cvv = scanner.nextLine();
+    /**
+     * Recomputes the sales totals from the full order history (e.g. if they are suspected to be wrong).
+     */
+    public static void rebuildSalesAggregates() {
+        sales.rebuild(orders.getAll());
+    }
 
-        return new CreditCard(number, name, exp, cvv);
+    /**
+     * Retrieves a single order by its ID.
+     *
+     * @param orderID The ID of the order
+     * @return The order, or null if no order has that ID
+     */
+    public static Order getOrderByID(String orderID) {
+        return orders.getByID(orderID);
     }
 }
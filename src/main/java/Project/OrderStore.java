@@ -0,0 +1,239 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory store of placed orders.
+ * Orders are indexed by order ID and, for history lookups, by customer ID,
+ * so finding one customer's orders only touches that customer's orders.
+ * <p>
+ * Each customer's orders are kept sorted by date (then order ID) in a skip list, so a page of
+ * history, a date range or a resume-after-cursor lookup starts with a logarithmic search and
+ * only reads the orders it returns, however long the customer's history is. All orders are also
+ * kept sorted by date in one more skip list, so a day's orders are found the same way.
+ */
+public class OrderStore {
+    /**
+     * Sort key of an order in a customer's history: its date, then its ID (to break ties).
+     */
+    private static class HistoryKey {
+        private static final Comparator<HistoryKey> ORDER = Comparator.<HistoryKey>comparingLong(key -> key.time)
+                .thenComparing(key -> key.orderID);
+        final long time;
+        final String orderID;
+
+        HistoryKey(long time, String orderID) {
+            this.time = time;
+            this.orderID = orderID;
+        }
+
+        static HistoryKey of(Order order) {
+            return new HistoryKey(order.getOrderDate().getTime(), order.getOrderId());
+        }
+    }
+
+    /**
+     * One page of a customer's order history.
+     */
+    public static class Page {
+        private final List<Order> orders;
+        private final String nextCursor;
+
+        Page(List<Order> orders, String nextCursor) {
+            this.orders = orders;
+            this.nextCursor = nextCursor;
+        }
+
+        /**
+         * @return The orders on this page.
+         */
+        public List<Order> getOrders() {
+            return orders;
+        }
+
+        /**
+         * @return The cursor to pass as {@code after} to get the next page, or null if this is the last page.
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean hasMore() {
+            return nextCursor != null;
+        }
+    }
+
+    private final Map<String, Order> ordersByID = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentNavigableMap<HistoryKey, Order>> ordersByCustomer = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<HistoryKey, Order> ordersByDate = new ConcurrentSkipListMap<>(HistoryKey.ORDER);
+
+    /**
+     * Adds an order to the store.
+     *
+     * @param order The order to add.
+     * @return true if the order was added, false if an order with the same ID already exists.
+     */
+    public boolean add(Order order) {
+        if (ordersByID.putIfAbsent(order.getOrderId(), order) != null) {
+            return false;
+        }
+        ordersByCustomer.computeIfAbsent(order.getCustomer().getCustomerID(),
+                id -> new ConcurrentSkipListMap<>(HistoryKey.ORDER)).put(HistoryKey.of(order), order);
+        ordersByDate.put(HistoryKey.of(order), order);
+        return true;
+    }
+
+    /**
+     * Retrieves an order by its ID.
+     *
+     * @param orderID The ID of the order.
+     * @return The Order if found, or null otherwise.
+     */
+    public Order getByID(String orderID) {
+        return orderID == null ? null : ordersByID.get(orderID);
+    }
+
+    /**
+     * Retrieves all orders of one customer, oldest first.
+     *
+     * @param customerID The ID of the customer.
+     * @return A new list with the customer's orders (empty if there are none).
+     */
+    public List<Order> getByCustomer(String customerID) {
+        NavigableMap<HistoryKey, Order> customerOrders = customerID == null ? null : ordersByCustomer.get(customerID);
+        if (customerOrders == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(customerOrders.values());
+    }
+
+    /**
+     * Retrieves one page of a customer's orders sorted by date.
+     *
+     * @param customerID  The ID of the customer.
+     * @param from        Only orders placed at or after this time (null for no lower limit).
+     * @param to          Only orders placed before this time (null for no upper limit).
+     * @param after       The cursor of the previous page, or null for the first page. A cursor from
+     *                    before the time range starts at the range's first order; one past it gives an empty page.
+     * @param limit       The maximum number of orders on the page.
+     * @param newestFirst true to list the newest orders first, false for oldest first.
+     * @return The page (empty if there are no matching orders, or the cursor is unknown or another customer's).
+     */
+    public Page getPage(String customerID, Date from, Date to, String after, int limit, boolean newestFirst) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than zero.");
+        }
+        HistoryKey cursor = null;
+        if (after != null) {
+            Order last = ordersByID.get(after);
+            if (last == null || !last.getCustomer().getCustomerID().equals(customerID)) {
+                return new Page(new ArrayList<>(), null);
+            }
+            cursor = HistoryKey.of(last);
+        }
+        NavigableMap<HistoryKey, Order> range = range(customerID, from, to, cursor, newestFirst);
+        List<Order> page = new ArrayList<>(Math.min(limit, 64));
+        for (Order order : range.values()) {
+            if (page.size() == limit) {
+                // there is at least one more order
+                return new Page(page, page.get(limit - 1).getOrderId());
+            }
+            page.add(order);
+        }
+        return new Page(page, null);
+    }
+
+    /**
+     * Streams a customer's orders sorted by date without copying the history first.
+     * The stream reflects orders added while it is being read (weakly consistent).
+     *
+     * @param customerID  The ID of the customer.
+     * @param from        Only orders placed at or after this time (null for no lower limit).
+     * @param to          Only orders placed before this time (null for no upper limit).
+     * @param newestFirst true to stream the newest orders first, false for oldest first.
+     * @return The orders in the range.
+     */
+    public Stream<Order> stream(String customerID, Date from, Date to, boolean newestFirst) {
+        return range(customerID, from, to, null, newestFirst).values().stream();
+    }
+
+    /**
+     * @return A view of the customer's orders between two times, in the requested direction,
+     * starting after the cursor. A cursor outside the times is clamped to them: one before the
+     * range starts at its first order, one past it gives an empty view.
+     */
+    private NavigableMap<HistoryKey, Order> range(String customerID, Date from, Date to, HistoryKey cursor, boolean newestFirst) {
+        ConcurrentNavigableMap<HistoryKey, Order> customerOrders = customerID == null ? null : ordersByCustomer.get(customerID);
+        if (customerOrders == null) {
+            return Collections.emptyNavigableMap();
+        }
+        HistoryKey low = from == null ? null : new HistoryKey(from.getTime(), "");
+        boolean lowInclusive = true;
+        HistoryKey high = to == null ? null : new HistoryKey(to.getTime(), "");
+        if (cursor != null && !newestFirst && (low == null || HistoryKey.ORDER.compare(cursor, low) >= 0)) {
+            low = cursor;
+            lowInclusive = false;
+        }
+        if (cursor != null && newestFirst && (high == null || HistoryKey.ORDER.compare(cursor, high) < 0)) {
+            high = cursor;
+        }
+        ConcurrentNavigableMap<HistoryKey, Order> range;
+        if (low != null && high != null) {
+            if (HistoryKey.ORDER.compare(low, high) > 0) {
+                return Collections.emptyNavigableMap();
+            }
+            range = customerOrders.subMap(low, lowInclusive, high, false);
+        } else if (low != null) {
+            range = customerOrders.tailMap(low, lowInclusive);
+        } else if (high != null) {
+            range = customerOrders.headMap(high, false);
+        } else {
+            range = customerOrders;
+        }
+        return newestFirst ? range.descendingMap() : range;
+    }
+
+    /**
+     * Retrieves the orders of all customers placed between two times, oldest first, reading only
+     * the orders in the range.
+     *
+     * @param from Only orders placed at or after this time.
+     * @param to   Only orders placed before this time.
+     * @return A read-only view of the orders in the range (weakly consistent, like {@link #stream}).
+     */
+    public Collection<Order> getPlacedBetween(Date from, Date to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Both ends of the time range are required.");
+        }
+        if (!from.before(to)) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableCollection(ordersByDate.subMap(
+                new HistoryKey(from.getTime(), ""), true, new HistoryKey(to.getTime(), ""), false).values());
+    }
+
+    /**
+     * @return A read-only view of every order in the store (in no particular order).
+     */
+    public Collection<Order> getAll() {
+        return Collections.unmodifiableCollection(ordersByID.values());
+    }
+
+    /**
+     * @return The number of orders in the store.
+     */
+    public int size() {
+        return ordersByID.size();
+    }
+}
@@ -0,0 +1,166 @@
+package Project;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Utility class for salted PBKDF2 password hashing.
+ * <p>
+ * Hashes are stored as {@code pbkdf2$iterations$salt$hash} so the cost factor can be raised
+ * later without breaking existing accounts. The async variants run on a small dedicated pool
+ * with a bounded queue, so a burst of logins cannot pile up unlimited hashing work.
+ * <p>
+ * Tuning (system properties): {@code cos.pbkdf2.iterations} (cost factor, default 65536),
+ * {@code cos.hash.threads} (pool size, default number of cores) and
+ * {@code cos.hash.queue} (max queued requests, default 1024).
+ */
+public class PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int ITERATIONS = Integer.getInteger("cos.pbkdf2.iterations", 65536);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ExecutorService POOL = createPool(
+            Integer.getInteger("cos.hash.threads", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("cos.hash.queue", 1024));
+
+    /**
+     * Hashes a password with a fresh random salt using the configured cost factor.
+     *
+     * @param password The plaintext password.
+     * @return The encoded hash string.
+     */
+    public static String hash(String password) {
+        return hash(password, ITERATIONS);
+    }
+
+    /**
+     * Hashes a password with a fresh random salt and the given cost factor.
+     *
+     * @param password   The plaintext password.
+     * @param iterations The number of PBKDF2 iterations.
+     * @return The encoded hash string.
+     */
+    public static String hash(String password, int iterations) {
+        if (password == null) {
+            throw new IllegalArgumentException("Password cannot be null.");
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password.toCharArray(), salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Checks a password against a stored hash (constant-time comparison).
+     *
+     * @param password   The password to check.
+     * @param storedHash The hash produced by {@link #hash(String)}.
+     * @return true if the password matches, false otherwise (including malformed hashes).
+     */
+    public static boolean verify(String password, String storedHash) {
+        if (password == null || storedHash == null) {
+            return false;
+        }
+        String[] parts = storedHash.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(PREFIX)) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password.toCharArray(), salt, iterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param value A string that may be an encoded hash.
+     * @return true if the value has the form produced by {@link #hash(String)}.
+     */
+    public static boolean isHash(String value) {
+        if (value == null) {
+            return false;
+        }
+        String[] parts = value.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(PREFIX)) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(parts[1]) > 0
+                    && Base64.getDecoder().decode(parts[2]).length > 0
+                    && Base64.getDecoder().decode(parts[3]).length > 0;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hashes a password on the hashing pool.
+     *
+     * @param password The plaintext password.
+     * @return A future with the encoded hash; fails with {@link RejectedExecutionException} if the queue is full.
+     */
+    public static CompletableFuture<String> hashAsync(String password) {
+        return submit(() -> hash(password));
+    }
+
+    /**
+     * Checks a password on the hashing pool.
+     *
+     * @param password   The password to check.
+     * @param storedHash The hash produced by {@link #hash(String)}.
+     * @return A future with the result; fails with {@link RejectedExecutionException} if the queue is full.
+     */
+    public static CompletableFuture<Boolean> verifyAsync(String password, String storedHash) {
+        return submit(() -> verify(password, storedHash));
+    }
+
+    private static <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, POOL);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static ExecutorService createPool(int threads, int queueLimit) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
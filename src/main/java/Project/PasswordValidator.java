@@ -1,10 +1,69 @@
 package Project;
+
+import java.util.List;
+
 /**
  * Utility class for checking password format.
+ * <p>
+ * A validator holds a password policy (minimum length, which character classes are required,
+ * and which characters count as special) and checks a password in a single pass over its
+ * characters without allocating. {@link #DEFAULT} is the policy used by both the console and the GUI.
  */
 public class PasswordValidator {
     /**
-     * Validates if a password meets the specified criteria:
+     * The system's password policy: at least 6 characters, one digit, one uppercase letter
+     * and one special character (@,#,$,%,&,*).
+     */
+    public static final PasswordValidator DEFAULT = new PasswordValidator(6, true, true, "@#$%&*");
+
+    private final int minLength;
+    private final boolean requireDigit;
+    private final boolean requireUppercase;
+    private final boolean requireSpecial;
+    private final String specialCharacters;
+    private final boolean[] asciiSpecial = new boolean[128]; // fast lookup for the common case
+    private final String requirements;
+
+    /**
+     * Creates a password policy.
+     *
+     * @param minLength         Minimum number of characters.
+     * @param requireDigit      Whether at least one digit (0-9) is required.
+     * @param requireUppercase  Whether at least one uppercase letter (A-Z) is required.
+     * @param specialCharacters The characters that count as special; at least one is required
+     *                          unless this is null or empty.
+     */
+    public PasswordValidator(int minLength, boolean requireDigit, boolean requireUppercase, String specialCharacters) {
+        if (minLength < 0) {
+            throw new IllegalArgumentException("Minimum length cannot be negative.");
+        }
+        this.minLength = minLength;
+        this.requireDigit = requireDigit;
+        this.requireUppercase = requireUppercase;
+        this.specialCharacters = specialCharacters == null ? "" : specialCharacters;
+        this.requireSpecial = !this.specialCharacters.isEmpty();
+        for (int i = 0; i < this.specialCharacters.length(); i++) {
+            char c = this.specialCharacters.charAt(i);
+            if (c < 128) {
+                asciiSpecial[c] = true;
+            }
+        }
+
+        StringBuilder text = new StringBuilder("It must be at least " + minLength + " characters long");
+        if (requireDigit) {
+            text.append(", contain one digit");
+        }
+        if (requireUppercase) {
+            text.append(", contain one uppercase letter");
+        }
+        if (requireSpecial) {
+            text.append(", contain one special character (").append(String.join(", ", this.specialCharacters.split(""))).append(")");
+        }
+        requirements = text.append(".").toString();
+    }
+
+    /**
+     * Validates a password against the default policy:
      * - Minimum of six characters.
      * - Includes at least one digit.
      * - Includes at least one special character (@,#,$,%,&,*).
@@ -14,23 +73,58 @@ public class PasswordValidator {
      * @return true if the password is valid, false otherwise.
      */
     public static boolean isValid(String password) {
-        if (password == null || password.length() < 6) {
+        return DEFAULT.validate(password);
+    }
+
+    /**
+     * Validates a password against this policy in a single pass.
+     *
+     * @param password The password string to validate.
+     * @return true if the password is valid, false otherwise.
+     */
+    public boolean validate(String password) {
+        if (password == null || password.length() < minLength) {
             return false;
         }
 
-        boolean containsDigit = false;
-        boolean containsUppercase = false;
-        boolean containsSpecialCharacters = false;
+        boolean containsDigit = !requireDigit;
+        boolean containsUppercase = !requireUppercase;
+        boolean containsSpecialCharacters = !requireSpecial;
 
-        if(password.matches(".*\\d.*")) {       // Using regular expression:  \\d for any digits between [0 to 9]
-            containsDigit = true;
-        }
-        if(password.matches(".*[A-Z].*")) {     // [A-Z] for any uppercase letter
-            containsUppercase = true;
-        }
-        if(password.matches(".*[@#$%&*].*")) {  // [!@#$%&*] for any special characters
-            containsSpecialCharacters = true;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (c >= '0' && c <= '9') {
+                containsDigit = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                containsUppercase = true;
+            } else if (c < 128 ? asciiSpecial[c] : specialCharacters.indexOf(c) >= 0) {
+                containsSpecialCharacters = true;
+            }
+            if (containsDigit && containsUppercase && containsSpecialCharacters) {
+                return true; // nothing left to look for
+            }
         }
         return containsDigit && containsUppercase && containsSpecialCharacters;
     }
+
+    /**
+     * Validates many passwords at once (e.g. for an import).
+     *
+     * @param passwords The passwords to validate.
+     * @return An array where entry i is true if passwords.get(i) is valid.
+     */
+    public boolean[] validateAll(List<String> passwords) {
+        boolean[] results = new boolean[passwords.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = validate(passwords.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * @return A sentence describing this policy, for error messages.
+     */
+    public String getRequirements() {
+        return requirements;
+    }
 }
@@ -0,0 +1,37 @@
+package Project;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A service that can authorize (charge) credit card payments.
+ * Authorization is asynchronous so many checkouts can wait on the bank at the same time.
+ * An authorization may only put the money on hold; the caller then captures it once the order
+ * is saved, or releases it if the order could not be completed.
+ */
+public interface PaymentGateway {
+    /**
+     * Asks the bank to charge an amount to a card.
+     *
+     * @param card        The card to charge.
+     * @param amountCents The amount to charge, in cents.
+     * @return A future that completes with the bank's decision.
+     */
+    CompletableFuture<Authorization> authorize(CreditCard card, long amountCents);
+
+    /**
+     * Finalizes the charge of an approved authorization. Does nothing if the payment was not on hold.
+     *
+     * @param card          The card that was authorized.
+     * @param authorization The approved authorization.
+     */
+    void capture(CreditCard card, Authorization authorization);
+
+    /**
+     * Cancels an approved authorization and gives the held money back. Does nothing if the
+     * payment was not on hold.
+     *
+     * @param card          The card that was authorized.
+     * @param authorization The approved authorization.
+     */
+    void release(CreditCard card, Authorization authorization);
+}
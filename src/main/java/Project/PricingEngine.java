@@ -0,0 +1,78 @@
+package Project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Service class that holds the pricing rules in effect and prices carts and orders with them.
+ * It is the only place sales tax, delivery fees and discounts are applied: {@link Cart} totals,
+ * the checkout's price stage and {@link Order} totals all come from here.
+ * <p>
+ * The current {@link PricingRules} are immutable and published through a single volatile field.
+ * Reloading compiles the new rules first and then swaps the reference in one write, so prices
+ * never mix old and new rules, and checkouts already being priced are neither blocked nor
+ * changed: each one keeps the rules it read.
+ * <p>
+ * Set -Dcos.pricing.file to a properties file (see {@link PricingRules}) to start with custom rules.
+ */
+public class PricingEngine {
+    private static volatile PricingRules rules = initialRules();
+
+    /**
+     * @return The rules currently in effect. Read them once and use that instance for a whole
+     * calculation, so a reload cannot change the rules halfway.
+     */
+    public static PricingRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Prices items with the current rules.
+     *
+     * @param items          The products and quantities.
+     * @param deliveryMethod The delivery method, or null to price the items without delivery.
+     * @return The quote.
+     * @throws IllegalArgumentException If the delivery method is not known.
+     */
+    public static Quote quote(Iterable<CartItem> items, String deliveryMethod) {
+        return rules.quote(items, deliveryMethod);
+    }
+
+    /**
+     * Puts new rules into effect for every quote from now on.
+     *
+     * @param newRules The new rules.
+     */
+    public static void reload(PricingRules newRules) {
+        if (newRules == null) {
+            throw new IllegalArgumentException("Pricing rules cannot be null.");
+        }
+        rules = newRules;
+        System.out.println("Pricing rules updated (sales tax " + newRules.getTaxRateText() + ").");
+    }
+
+    /**
+     * Loads rules from a properties file and puts them into effect. If the file is invalid the
+     * current rules stay in effect.
+     *
+     * @param file The properties file.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the file contains an invalid rule.
+     */
+    public static void reload(Path file) throws IOException {
+        reload(PricingRules.load(file));
+    }
+
+    private static PricingRules initialRules() {
+        String file = System.getProperty("cos.pricing.file");
+        if (file != null) {
+            try {
+                return PricingRules.load(Paths.get(file));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Could not load pricing rules from " + file + ", using defaults: " + e.getMessage());
+            }
+        }
+        return PricingRules.defaults();
+    }
+}
@@ -0,0 +1,254 @@
+package Project;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable, compiled set of pricing rules: the sales tax rate, the fee of each delivery method
+ * and the discounts (a percentage off given products, and a percentage off orders above a minimum).
+ * <p>
+ * All amounts are resolved to cents and basis points when the rules are created, and the lookups
+ * a quote needs are plain hash map reads, so {@link #quote(Iterable, String)} does no parsing,
+ * no allocation besides the {@link Quote} and skips discount lookups entirely when there are none.
+ * A cart that keeps running totals is priced by {@link #quote(long, long, String)} in constant time.
+ * Because the rules never change, one instance can price any number of checkouts at once;
+ * {@link PricingEngine} swaps in a new instance to change prices.
+ * <p>
+ * Rules can be loaded from a properties file:
+ * <pre>
+ * tax.percent=8
+ * delivery.mail=3.00
+ * delivery.pickup=0
+ * discount.product.P1=10
+ * discount.order.minimum=100.00
+ * discount.order.percent=5
+ * </pre>
+ * Percentages may have up to two decimals and fees are in dollars.
+ */
+public class PricingRules {
+    private static final int DEFAULT_TAX_BASIS_POINTS = 800; // Randomly taken (8%)
+    private static final long DEFAULT_MAIL_FEE_CENTS = 300; // $3.00 delivery fee for mail orders
+
+    private final int taxBasisPoints;
+    private final Map<String, Long> deliveryFeesCents;
+    private final Map<String, Integer> productDiscountBasisPoints;
+    private final long orderDiscountMinimumCents;
+    private final int orderDiscountBasisPoints;
+
+    /**
+     * Compiles a set of rules.
+     *
+     * @param taxBasisPoints             The sales tax rate in basis points (8% is 800).
+     * @param deliveryFeesCents          The fee of each delivery method, in cents.
+     * @param productDiscountBasisPoints The discount on each discounted product (by product ID), in basis points.
+     * @param orderDiscountMinimumCents  The subtotal from which the order discount applies, in cents.
+     * @param orderDiscountBasisPoints   The order discount in basis points (0 for none).
+     */
+    public PricingRules(int taxBasisPoints, Map<String, Long> deliveryFeesCents,
+                        Map<String, Integer> productDiscountBasisPoints,
+                        long orderDiscountMinimumCents, int orderDiscountBasisPoints) {
+        if (taxBasisPoints < 0 || orderDiscountMinimumCents < 0 || !isPercentage(orderDiscountBasisPoints)) {
+            throw new IllegalArgumentException("Tax, discounts and minimums cannot be negative or over 100%.");
+        }
+        if (deliveryFeesCents == null || deliveryFeesCents.isEmpty()) {
+            throw new IllegalArgumentException("At least one delivery method is required.");
+        }
+        for (Long fee : deliveryFeesCents.values()) {
+            if (fee == null || fee < 0) {
+                throw new IllegalArgumentException("Delivery fees cannot be negative.");
+            }
+        }
+        if (productDiscountBasisPoints != null) {
+            for (Integer discount : productDiscountBasisPoints.values()) {
+                if (discount == null || !isPercentage(discount)) {
+                    throw new IllegalArgumentException("Product discounts must be between 0% and 100%.");
+                }
+            }
+        }
+        this.taxBasisPoints = taxBasisPoints;
+        this.deliveryFeesCents = Collections.unmodifiableMap(new HashMap<>(deliveryFeesCents));
+        this.productDiscountBasisPoints = productDiscountBasisPoints == null ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new HashMap<>(productDiscountBasisPoints));
+        this.orderDiscountMinimumCents = orderDiscountMinimumCents;
+        this.orderDiscountBasisPoints = orderDiscountBasisPoints;
+    }
+
+    /**
+     * @return The standard rules: 8% sales tax, $3.00 for mail, free pickup and no discounts.
+     */
+    public static PricingRules defaults() {
+        Map<String, Long> fees = new HashMap<>();
+        fees.put("mail", DEFAULT_MAIL_FEE_CENTS);
+        fees.put("pickup", 0L);
+        return new PricingRules(DEFAULT_TAX_BASIS_POINTS, fees, null, 0, 0);
+    }
+
+    /**
+     * Reads rules from a properties file (see the class description for the keys).
+     * Missing tax and delivery entries keep their default values.
+     *
+     * @param file The properties file.
+     * @return The compiled rules.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If a value is not a valid amount or percentage.
+     */
+    public static PricingRules load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        int tax = DEFAULT_TAX_BASIS_POINTS;
+        Map<String, Long> fees = new HashMap<>();
+        fees.put("mail", DEFAULT_MAIL_FEE_CENTS);
+        fees.put("pickup", 0L);
+        Map<String, Integer> productDiscounts = new HashMap<>();
+        long orderMinimum = 0;
+        int orderDiscount = 0;
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            if (key.equals("tax.percent")) {
+                tax = basisPoints(key, value);
+            } else if (key.startsWith("delivery.")) {
+                fees.put(key.substring("delivery.".length()), cents(key, value));
+            } else if (key.startsWith("discount.product.")) {
+                productDiscounts.put(key.substring("discount.product.".length()), basisPoints(key, value));
+            } else if (key.equals("discount.order.minimum")) {
+                orderMinimum = cents(key, value);
+            } else if (key.equals("discount.order.percent")) {
+                orderDiscount = basisPoints(key, value);
+            } else {
+                System.out.println("Ignoring unknown pricing rule: " + key);
+            }
+        }
+        return new PricingRules(tax, fees, productDiscounts, orderMinimum, orderDiscount);
+    }
+
+    /**
+     * Prices a list of items. Product discounts are taken off each item first, then the order
+     * discount off the rest if the subtotal (before discounts) reaches the minimum. Tax is charged
+     * once on the discounted subtotal; the delivery fee is not taxed.
+     *
+     * @param items          The products and quantities.
+     * @param deliveryMethod The delivery method, or null to price the items without delivery.
+     * @return The quote.
+     * @throws IllegalArgumentException If the delivery method is not known.
+     */
+    public Quote quote(Iterable<CartItem> items, String deliveryMethod) {
+        long subTotal = 0;
+        for (CartItem item : items) {
+            subTotal = Math.addExact(subTotal, item.getTotalPriceCents());
+        }
+        return quote(subTotal, getItemDiscountCents(items), deliveryMethod);
+    }
+
+    /**
+     * Prices items from their running totals (see {@link Cart}), without looking at the items again.
+     * Gives the same quote as {@link #quote(Iterable, String)} for the same items.
+     *
+     * @param subTotalCents     The sum of the item totals, in cents.
+     * @param itemDiscountCents The sum of the product discounts of the items under these rules, in cents.
+     * @param deliveryMethod    The delivery method, or null to price the items without delivery.
+     * @return The quote.
+     * @throws IllegalArgumentException If the delivery method is not known.
+     */
+    public Quote quote(long subTotalCents, long itemDiscountCents, String deliveryMethod) {
+        long deliveryFee = 0;
+        if (deliveryMethod != null) {
+            Long fee = deliveryFeesCents.get(deliveryMethod);
+            if (fee == null) {
+                throw new IllegalArgumentException("Invalid delivery method: " + deliveryMethod);
+            }
+            deliveryFee = fee;
+        }
+        long discount = itemDiscountCents;
+        if (orderDiscountBasisPoints > 0 && subTotalCents > 0 && subTotalCents >= orderDiscountMinimumCents) {
+            discount += Money.percentOf(subTotalCents - discount, orderDiscountBasisPoints);
+        }
+        long tax = Money.percentOf(subTotalCents - discount, taxBasisPoints);
+        return new Quote(deliveryMethod, subTotalCents, discount, tax, deliveryFee);
+    }
+
+    /**
+     * @param productID  The ID of a product.
+     * @param lineCents  The total price of a cart line with that product, in cents.
+     * @return The product discount on that line, in cents (0 if the product is not discounted).
+     */
+    public long getItemDiscountCents(String productID, long lineCents) {
+        if (productDiscountBasisPoints.isEmpty()) {
+            return 0;
+        }
+        Integer rate = productDiscountBasisPoints.get(productID);
+        return rate == null ? 0 : Money.percentOf(lineCents, rate);
+    }
+
+    /**
+     * @param items The products and quantities.
+     * @return The sum of the product discounts on the items, in cents.
+     */
+    public long getItemDiscountCents(Iterable<CartItem> items) {
+        if (productDiscountBasisPoints.isEmpty()) {
+            return 0;
+        }
+        long discount = 0;
+        for (CartItem item : items) {
+            discount += getItemDiscountCents(item.getProduct().getProductID(), item.getTotalPriceCents());
+        }
+        return discount;
+    }
+
+    /**
+     * @param deliveryMethod A delivery method.
+     * @return true if orders can use this delivery method.
+     */
+    public boolean isDeliveryMethod(String deliveryMethod) {
+        return deliveryMethod != null && deliveryFeesCents.containsKey(deliveryMethod);
+    }
+
+    /**
+     * @param deliveryMethod A delivery method.
+     * @return The fee of the delivery method in cents, or 0 if it is not known.
+     */
+    public long getDeliveryFeeCents(String deliveryMethod) {
+        Long fee = deliveryMethod == null ? null : deliveryFeesCents.get(deliveryMethod);
+        return fee == null ? 0 : fee;
+    }
+
+    public int getTaxBasisPoints() {
+        return taxBasisPoints;
+    }
+
+    /**
+     * @return The sales tax rate for display, e.g. "8%" or "8.25%".
+     */
+    public String getTaxRateText() {
+        return BigDecimal.valueOf(taxBasisPoints, 2).stripTrailingZeros().toPlainString() + "%";
+    }
+
+    private static boolean isPercentage(int basisPoints) {
+        return basisPoints >= 0 && basisPoints <= 10000;
+    }
+
+    private static int basisPoints(String key, String percent) {
+        try {
+            return new BigDecimal(percent).movePointRight(2).intValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid percentage for " + key + ": " + percent);
+        }
+    }
+
+    private static long cents(String key, String dollars) {
+        try {
+            return new BigDecimal(dollars).movePointRight(2).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount for " + key + ": " + dollars);
+        }
+    }
+}
@@ -4,8 +4,9 @@ public class Product {
     private String productID;
     private String productName;
     private String productDescription;
-    private double regularPrice;
-    private double salesPrice;
+    // Prices in cents (see Money)
+    private long regularPrice;
+    private long salesPrice;
     /**
      * Constructs a new Product with the given details.
      * @param ID A unique identifier for the product.
@@ -18,8 +19,23 @@ public class Product {
         productID = ID;
         productName = name;
         productDescription = description;
-        regularPrice = price;
-        salesPrice = discountedPrice;
+        regularPrice = Money.toCents(price);
+        salesPrice = Money.toCents(discountedPrice);
+    }
+    /**
+     * Recreates a saved product with its exact prices (used when loading saved orders).
+     * @param ID A unique identifier for the product.
+     * @param name The name of the product.
+     * @param description A brief description of the product.
+     * @param priceCents The standard price of the product, in cents.
+     * @param discountedPriceCents The discounted price of the product, in cents.
+     * @return The restored Product.
+     */
+    static Product restore(String ID, String name, String description, long priceCents, long discountedPriceCents) {
+        Product product = new Product(ID, name, description, 0, 0);
+        product.regularPrice = priceCents;
+        product.salesPrice = discountedPriceCents;
+        return product;
     }
     // Getters
     public String getProductID() {
@@ -32,24 +48,36 @@ public class Product {
         return productDescription;
     }
     public double getRegularPrice() {
-        return regularPrice;
+        return Money.toDollars(regularPrice);
     }
     public double getSalesPrice() {
+        return Money.toDollars(salesPrice);
+    }
+    public long getRegularPriceCents() {
+        return regularPrice;
+    }
+    public long getSalesPriceCents() {
         return salesPrice;
     }
     /**
      * Returns the effective price of the product (sales price if available and lower, otherwise regular price).
-     * @return The price to be used for calculations.
+     * @return The price to be used for calculations, in cents.
      */
-    public double getPrice(){
+    public long getPriceCents(){
         if (salesPrice > 0 && salesPrice < regularPrice){
             return salesPrice;
         }
         return regularPrice;
     }
+    /**
+     * @return The effective price in dollars (for display); calculations use {@link #getPriceCents()}.
+     */
+    public double getPrice(){
+        return Money.toDollars(getPriceCents());
+    }
     @Override
     public String toString() {
-        return "ID: " + productID + ", Name: "+ productName + ", Description: " + productDescription + ", Reg. Price: $ " + String.format("%.2f", regularPrice) + (salesPrice > 0 && salesPrice < regularPrice ? ", Sale Price: $" + String.format("%.2f", salesPrice) : "");
+        return "ID: " + productID + ", Name: "+ productName + ", Description: " + productDescription + ", Reg. Price: $ " + Money.format(regularPrice) + (salesPrice > 0 && salesPrice < regularPrice ? ", Sale Price: $" + Money.format(salesPrice) : "");
     }
 }
 
@@ -48,7 +48,8 @@ public class ProductListing {
         System.out.println("PRODUCT LIST:");
         for( int i = 0; i <  productList.size(); i++ ) {
             Product pro = productList.get(i);
-            System.out.println((i +1) +  ".  " + pro.toString());
+            long inStock = Inventory.getAvailable(pro.getProductID());
+            System.out.println((i +1) +  ".  " + pro.toString() + (inStock >= 0 ? ", In stock: " + inStock : ""));
         }
 
         }
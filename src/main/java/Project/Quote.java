@@ -0,0 +1,65 @@
+package Project;
+
+/**
+ * The price of a list of items under one set of {@link PricingRules}: subtotal, discount, sales tax,
+ * delivery fee and total, all in cents. Quotes are immutable, so a cart can hand out the same quote
+ * until its items or the rules change, and an order keeps the exact amounts it was charged.
+ */
+public class Quote {
+    private final String deliveryMethod;
+    private final long subTotalCents;
+    private final long discountCents;
+    private final long taxCents;
+    private final long deliveryFeeCents;
+    private final long totalCents;
+
+    /**
+     * Creates a quote. The total is the discounted subtotal plus tax and delivery fee.
+     *
+     * @param deliveryMethod   The delivery method priced, or null if no delivery was chosen yet.
+     * @param subTotalCents    The item subtotal before discounts.
+     * @param discountCents    The discount taken off the subtotal.
+     * @param taxCents         The sales tax on the discounted subtotal.
+     * @param deliveryFeeCents The delivery fee.
+     */
+    Quote(String deliveryMethod, long subTotalCents, long discountCents, long taxCents, long deliveryFeeCents) {
+        this.deliveryMethod = deliveryMethod;
+        this.subTotalCents = subTotalCents;
+        this.discountCents = discountCents;
+        this.taxCents = taxCents;
+        this.deliveryFeeCents = deliveryFeeCents;
+        this.totalCents = Math.addExact(subTotalCents - discountCents, Math.addExact(taxCents, deliveryFeeCents));
+    }
+
+    // Getters
+    public String getDeliveryMethod() {
+        return deliveryMethod;
+    }
+
+    public long getSubTotalCents() {
+        return subTotalCents;
+    }
+
+    public long getDiscountCents() {
+        return discountCents;
+    }
+
+    public long getTaxCents() {
+        return taxCents;
+    }
+
+    public long getDeliveryFeeCents() {
+        return deliveryFeeCents;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    @Override
+    public String toString() {
+        return "Subtotal $" + Money.format(subTotalCents) + ", discount $" + Money.format(discountCents)
+                + ", tax $" + Money.format(taxCents) + ", delivery $" + Money.format(deliveryFeeCents)
+                + ", total $" + Money.format(totalCents);
+    }
+}
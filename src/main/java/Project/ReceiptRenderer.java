@@ -0,0 +1,107 @@
+package Project;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes order receipts (the text of {@link Order#getOrderDetails()}) straight to an
+ * {@link Appendable} such as a {@link Writer} or {@link StringBuilder}.
+ * <p>
+ * A receipt is built in one reusable buffer in a single pass over the items; prices are appended
+ * as digits without {@code String.format} or temporary strings. After the first few receipts a
+ * renderer stops allocating buffers, so one renderer can write thousands of receipts cheaply.
+ * A renderer is not thread-safe; use one per thread (see {@link #toText(Order)}).
+ */
+public class ReceiptRenderer {
+    private static final String SEPARATOR = "\n----------------------------------------\n";
+    private static final ThreadLocal<ReceiptRenderer> SHARED = ThreadLocal.withInitial(ReceiptRenderer::new);
+
+    private final StringBuilder text = new StringBuilder(512);
+    private char[] chars = new char[512];
+
+    /**
+     * Writes one receipt.
+     *
+     * @param order The order to describe.
+     * @param out   Where to write the receipt.
+     * @throws IOException If writing fails.
+     */
+    public void render(Order order, Appendable out) throws IOException {
+        build(order);
+        if (out instanceof Writer) {
+            // copy into the reusable array so the Writer gets chars without a temporary String
+            int length = text.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            text.getChars(0, length, chars, 0);
+            ((Writer) out).write(chars, 0, length);
+        } else {
+            out.append(text);
+        }
+    }
+
+    /**
+     * Writes receipts for many orders to a file (for example all of a day's orders for mailing),
+     * separated by a dashed line. An existing file is replaced.
+     *
+     * @param orders The orders to write.
+     * @param file   The file to write to.
+     * @return The number of receipts written.
+     * @throws IOException If the file cannot be written.
+     */
+    public int renderAll(Iterable<Order> orders, Path file) throws IOException {
+        int count = 0;
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Order order : orders) {
+                render(order, writer);
+                writer.write(SEPARATOR);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Renders a receipt as a String using this thread's renderer.
+     *
+     * @param order The order to describe.
+     * @return The receipt text.
+     */
+    public static String toText(Order order) {
+        ReceiptRenderer renderer = SHARED.get();
+        renderer.build(order);
+        return renderer.text.toString();
+    }
+
+    private void build(Order order) {
+        StringBuilder out = text;
+        out.setLength(0);
+        out.append("Order ID: ").append(order.getOrderId()).append('\n');
+        out.append("Date: ").append(order.getOrderDate()).append('\n');
+        Quote quote = order.getQuote();
+        out.append("Delivery: ").append(order.getDeliveryMethod());
+        if (quote.getDeliveryFeeCents() > 0) {
+            out.append(" ($");
+            Money.appendTo(out, quote.getDeliveryFeeCents()).append(" fee)");
+        }
+        out.append("\nItems:\n");
+        for (CartItem item : order.getItems()) {
+            // same layout as CartItem.toString()
+            out.append("  ").append(item.getQuantity()).append(" x ").append(item.getProduct().getProductName())
+                    .append(" (@ $");
+            Money.appendTo(out, item.getProduct().getPriceCents()).append(" each) = $");
+            Money.appendTo(out, item.getTotalPriceCents()).append('\n');
+        }
+        if (quote.getDiscountCents() > 0) {
+            out.append("Discount: -$");
+            Money.appendTo(out, quote.getDiscountCents()).append('\n');
+        }
+        out.append("Total: $");
+        Money.appendTo(out, quote.getTotalCents()).append('\n');
+        out.append("Auth#: ").append(order.getAuthorizationNumber());
+    }
+}
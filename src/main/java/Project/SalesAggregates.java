@@ -0,0 +1,175 @@
+package Project;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sales totals by product, by day and by delivery method, updated as each order is placed.
+ * <p>
+ * Every total is a pair of {@link LongAdder}s, which spread concurrent updates over several cells,
+ * so checkouts recording sales at the same time rarely touch the same memory and queries (a map
+ * lookup plus a sum) never block or slow down checkouts. Amounts are in cents:
+ * product revenue is the item subtotal before tax; daily and delivery-method revenue is the
+ * order total including tax and delivery fee. Days are in the system time zone.
+ * <p>
+ * The totals live only in memory; {@link #rebuild(Iterable)} recomputes them from the order history
+ * (e.g. after the order journal was replayed), even while new orders are being recorded.
+ */
+public class SalesAggregates {
+    /**
+     * Revenue and a count (units for products, orders otherwise).
+     */
+    private static class Counter {
+        final LongAdder revenueCents = new LongAdder();
+        final LongAdder count = new LongAdder();
+
+        void add(long cents, long amount) {
+            revenueCents.add(cents);
+            count.add(amount);
+        }
+    }
+
+    /**
+     * One complete set of totals. A rebuild fills a new set and swaps it in.
+     */
+    private static class Totals {
+        final Map<String, Counter> byProduct = new ConcurrentHashMap<>();
+        final Map<Long, Counter> byDay = new ConcurrentHashMap<>(); // epoch day -> counter
+        final Map<String, Counter> byDelivery = new ConcurrentHashMap<>();
+        // While a rebuild is replaying history: IDs of orders recorded directly, so they are not counted twice
+        volatile Set<String> recordedDuringRebuild;
+
+        void add(Order order, ZoneId zone) {
+            for (CartItem item : order.getItems()) {
+                counter(byProduct, item.getProduct().getProductID()).add(item.getTotalPriceCents(), item.getQuantity());
+            }
+            long day = Instant.ofEpochMilli(order.getOrderDate().getTime()).atZone(zone).toLocalDate().toEpochDay();
+            counter(byDay, day).add(order.getTotalCents(), 1);
+            counter(byDelivery, order.getDeliveryMethod()).add(order.getTotalCents(), 1);
+        }
+
+        private static <K> Counter counter(Map<K, Counter> counters, K key) {
+            Counter counter = counters.get(key); // usually present: avoid computeIfAbsent's locking
+            return counter != null ? counter : counters.computeIfAbsent(key, k -> new Counter());
+        }
+    }
+
+    private final ZoneId zone;
+    private volatile Totals totals = new Totals();
+
+    /**
+     * Creates empty aggregates that bucket days in the system time zone.
+     */
+    public SalesAggregates() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Creates empty aggregates.
+     *
+     * @param zone The time zone that decides which day an order belongs to.
+     */
+    public SalesAggregates(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Adds a placed order to the totals. Call this before the order becomes visible in the order history.
+     *
+     * @param order The placed order.
+     */
+    public void record(Order order) {
+        Totals current = totals;
+        while (true) {
+            Set<String> rebuilding = current.recordedDuringRebuild;
+            if (rebuilding != null) {
+                rebuilding.add(order.getOrderId());
+            }
+            current.add(order, zone);
+            Totals latest = totals;
+            if (latest == current) {
+                return;
+            }
+            current = latest; // a rebuild swapped in new totals meanwhile: make sure they count this order too
+        }
+    }
+
+    /**
+     * Recomputes all totals from the order history, replacing the current ones.
+     * Orders recorded while the rebuild runs are counted exactly once.
+     *
+     * @param history Every placed order.
+     */
+    public synchronized void rebuild(Iterable<Order> history) {
+        Totals fresh = new Totals();
+        Set<String> recordedDirectly = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        fresh.recordedDuringRebuild = recordedDirectly;
+        totals = fresh; // from now on, new orders go into the fresh totals
+        for (Order order : history) {
+            if (!recordedDirectly.contains(order.getOrderId())) {
+                fresh.add(order, zone);
+            }
+        }
+        fresh.recordedDuringRebuild = null;
+    }
+
+    /**
+     * @param productID The ID of the product.
+     * @return The revenue from the product (before tax), in cents.
+     */
+    public long getProductRevenueCents(String productID) {
+        Counter counter = totals.byProduct.get(productID);
+        return counter == null ? 0 : counter.revenueCents.sum();
+    }
+
+    /**
+     * @param productID The ID of the product.
+     * @return The number of units of the product sold.
+     */
+    public long getProductUnitsSold(String productID) {
+        Counter counter = totals.byProduct.get(productID);
+        return counter == null ? 0 : counter.count.sum();
+    }
+
+    /**
+     * @param day The day.
+     * @return The revenue of all orders placed on that day (including tax and delivery), in cents.
+     */
+    public long getDailyRevenueCents(LocalDate day) {
+        Counter counter = totals.byDay.get(day.toEpochDay());
+        return counter == null ? 0 : counter.revenueCents.sum();
+    }
+
+    /**
+     * @param day The day.
+     * @return The number of orders placed on that day.
+     */
+    public long getDailyOrderCount(LocalDate day) {
+        Counter counter = totals.byDay.get(day.toEpochDay());
+        return counter == null ? 0 : counter.count.sum();
+    }
+
+    /**
+     * @param deliveryMethod The delivery method ("mail" or "pickup").
+     * @return The revenue of all orders with that delivery method (including tax and delivery), in cents.
+     */
+    public long getDeliveryRevenueCents(String deliveryMethod) {
+        Counter counter = totals.byDelivery.get(deliveryMethod);
+        return counter == null ? 0 : counter.revenueCents.sum();
+    }
+
+    /**
+     * @param deliveryMethod The delivery method ("mail" or "pickup").
+     * @return The number of orders with that delivery method.
+     */
+    public long getDeliveryOrderCount(String deliveryMethod) {
+        Counter counter = totals.byDelivery.get(deliveryMethod);
+        return counter == null ? 0 : counter.count.sum();
+    }
+}
@@ -0,0 +1,120 @@
+package Project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of which customers are currently logged in.
+ * Each session remembers when it was last used and is expired once it has been idle
+ * for longer than the configured timeout (checked on access and by a background sweeper).
+ */
+public class SessionStore {
+    private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+    private final long idleTimeoutMillis;
+    private final AtomicLong expiredSessions = new AtomicLong();
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Creates a session store and starts its background expiry task.
+     *
+     * @param idleTimeoutMillis   How long (in milliseconds) a session may stay unused before it expires.
+     * @param sweepIntervalMillis How often (in milliseconds) the background task removes idle sessions.
+     */
+    public SessionStore(long idleTimeoutMillis, long sweepIntervalMillis) {
+        if (idleTimeoutMillis <= 0 || sweepIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Timeout and sweep interval must be greater than zero.");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-expiry");
+            thread.setDaemon(true); // never keep the application alive just for this
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::expireIdleSessions, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts (or refreshes) a session for the given customer.
+     *
+     * @param customerID The ID of the customer logging in.
+     */
+    public void login(String customerID) {
+        lastAccess.put(customerID, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks whether the customer has a live session and, if so, marks it as used.
+     *
+     * @param customerID The ID to check.
+     * @return true if the session exists and has not expired, false otherwise.
+     */
+    public boolean isActive(String customerID) {
+        if (customerID == null) {
+            return false;
+        }
+        Long last = lastAccess.get(customerID);
+        if (last == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - last > idleTimeoutMillis) {
+            if (lastAccess.remove(customerID, last)) {
+                expiredSessions.incrementAndGet();
+            }
+            return false;
+        }
+        // Only refresh if nobody logged out (or in) in the meantime
+        lastAccess.replace(customerID, last, now);
+        return true;
+    }
+
+    /**
+     * Ends the customer's session, if there is one.
+     *
+     * @param customerID The ID of the customer logging out.
+     */
+    public void logout(String customerID) {
+        if (customerID != null) {
+            lastAccess.remove(customerID);
+        }
+    }
+
+    /**
+     * Removes every session that has been idle for longer than the timeout.
+     * Runs periodically on the background sweeper.
+     */
+    void expireIdleSessions() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        for (Map.Entry<String, Long> entry : lastAccess.entrySet()) {
+            Long last = entry.getValue();
+            if (last < cutoff && lastAccess.remove(entry.getKey(), last)) {
+                expiredSessions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return The number of sessions currently held in memory.
+     */
+    public int getActiveSessionCount() {
+        return lastAccess.size();
+    }
+
+    /**
+     * @return The total number of sessions that have expired because they were idle.
+     */
+    public long getExpiredSessionCount() {
+        return expiredSessions.get();
+    }
+
+    /**
+     * Stops the background expiry task.
+     */
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
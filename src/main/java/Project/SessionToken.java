@@ -0,0 +1,218 @@
+package Project;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues and verifies HMAC-SHA256 signed session tokens.
+ * A token carries the customer ID and its own expiry time, so any JVM that shares the
+ * signing secret can check it without looking anything up. Logged-out tokens are kept
+ * in a small revocation list until they would have expired anyway.
+ * <p>
+ * Expiry slides like a {@link SessionStore} session: {@link #refresh(String)} re-issues a token with
+ * a fresh expiry on every customer action, so only an idle token runs out. Refreshed tokens keep the
+ * session's nonce, so revoking one revokes them all.
+ * <p>
+ * The revocation list lives in this process only. Another instance keeps accepting a logged-out
+ * token until its expiry, at most one TTL after the customer's last action; keep the TTL short
+ * where that matters.
+ * <p>
+ * The secret is read from the {@code cos.session.secret} system property so several
+ * instances can accept each other's tokens; without it a random per-process secret is used.
+ */
+public class SessionToken {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final ThreadLocal<Mac> macs; // Mac objects are not thread-safe
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>(); // token nonce -> expiry time
+    private final AtomicLong revocations = new AtomicLong();
+
+    /**
+     * Creates a token service.
+     *
+     * @param secret    The shared signing secret.
+     * @param ttlMillis How long (in milliseconds) an issued token stays valid.
+     */
+    public SessionToken(byte[] secret, long ttlMillis) {
+        if (secret == null || secret.length == 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Secret cannot be empty and TTL must be greater than zero.");
+        }
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.ttlMillis = ttlMillis;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Creates a token service using the {@code cos.session.secret} system property,
+     * or a random secret if it is not set.
+     *
+     * @param ttlMillis How long (in milliseconds) an issued token stays valid.
+     * @return A new token service.
+     */
+    public static SessionToken fromSystemProperties(long ttlMillis) {
+        String configured = System.getProperty("cos.session.secret");
+        byte[] secret;
+        if (configured != null && !configured.isEmpty()) {
+            secret = configured.getBytes(StandardCharsets.UTF_8);
+        } else {
+            secret = new byte[32];
+            RANDOM.nextBytes(secret);
+        }
+        return new SessionToken(secret, ttlMillis);
+    }
+
+    /**
+     * Issues a new signed token for the customer.
+     *
+     * @param customerID The ID of the logged-in customer.
+     * @return The token string ("payload.signature", both Base64 URL encoded).
+     */
+    public String issue(String customerID) {
+        byte[] nonce = new byte[12];
+        RANDOM.nextBytes(nonce);
+        return encode(System.currentTimeMillis() + ttlMillis, ENCODER.encodeToString(nonce), customerID);
+    }
+
+    /**
+     * Re-issues a valid token with a fresh expiry (call it whenever the customer does something).
+     *
+     * @param token The customer's current token.
+     * @return The token to use from now on, or null if the token is invalid, expired or revoked.
+     */
+    public String refresh(String token) {
+        String[] fields = parse(token);
+        if (fields == null || revoked.containsKey(fields[1])) {
+            return null;
+        }
+        return encode(System.currentTimeMillis() + ttlMillis, fields[1], fields[2]);
+    }
+
+    /**
+     * Reads the customer ID from a token without checking its signature or expiry. Only use it on a
+     * token that was just issued, refreshed or verified, to avoid computing its signature again.
+     *
+     * @param token A token issued by this class.
+     * @return The customer ID the token was issued to.
+     */
+    static String customerIDOf(String token) {
+        byte[] payloadBytes = DECODER.decode(token.substring(0, token.indexOf('.')));
+        return new String(payloadBytes, StandardCharsets.UTF_8).split(":", 3)[2];
+    }
+
+    /**
+     * Checks the token's signature, expiry and revocation status.
+     *
+     * @param token The token to check.
+     * @return The customer ID the token was issued to, or null if it is invalid, expired or revoked.
+     */
+    public String verify(String token) {
+        String[] fields = parse(token);
+        if (fields == null || revoked.containsKey(fields[1])) {
+            return null;
+        }
+        return fields[2];
+    }
+
+    /**
+     * Revokes a token and every refreshed copy of it (e.g. on logout). It is remembered only
+     * until the latest copy issued so far would have expired.
+     *
+     * @param token The token to revoke.
+     */
+    public void revoke(String token) {
+        String[] fields = parse(token);
+        if (fields == null) {
+            return; // already invalid, nothing to remember
+        }
+        revoked.put(fields[1], System.currentTimeMillis() + ttlMillis);
+        if (revocations.incrementAndGet() % 1024 == 0) {
+            purgeExpiredRevocations();
+        }
+    }
+
+    /**
+     * Drops revocation entries for tokens that have expired on their own.
+     */
+    void purgeExpiredRevocations() {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt < now);
+    }
+
+    /**
+     * @return The number of tokens currently in the revocation list.
+     */
+    public int getRevokedCount() {
+        return revoked.size();
+    }
+
+    /**
+     * Verifies the signature and expiry of a token and splits its payload.
+     *
+     * @param token The token to parse.
+     * @return {expiresAt, nonce, customerID}, or null if the token is malformed, forged or expired.
+     */
+    private String[] parse(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(signature, sign(payloadBytes))) {
+            return null;
+        }
+        String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 3);
+        if (fields.length != 3) {
+            return null;
+        }
+        try {
+            if (Long.parseLong(fields[0]) < System.currentTimeMillis()) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return fields;
+    }
+
+    private String encode(long expiresAt, String nonce, String customerID) {
+        // customer ID goes last so it may contain the separator
+        String payload = expiresAt + ":" + nonce + ":" + customerID;
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(payloadBytes));
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+}
@@ -0,0 +1,87 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountImporterTest {
+    private static final String PASSWORD = "Passw0rd#";
+
+    @TempDir
+    Path directory;
+
+    private static String row(String id, String password, String answer) {
+        return String.join(",", id, password, "Name " + id, "1 Main St", "4111111111111111", "Holder",
+                "12/99", "123", "2", answer, "50.25");
+    }
+
+    @Test
+    void rejectsDuplicatesAndInvalidRowsAndKeepsGivenHashes() throws Exception {
+        AccountService.registerCustomers(List.of(Customer.restore("import-existing", "hash", "Existing",
+                "Address", new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A")));
+        String passwordHash = PasswordHasher.hash(PASSWORD, 1000);
+        String answerHash = PasswordHasher.hash("Blue", 1000);
+        List<String> lines = new ArrayList<>();
+        lines.add("customerID,password,name,address,cardNumber,cardHolder,expiration,cvv,question,answer,balance");
+        lines.add(row("import-plain", PASSWORD, "Blue"));
+        lines.add(row("import-plain", PASSWORD, "Blue")); // repeated in the file
+        lines.add(row("import-existing", PASSWORD, "Blue")); // already registered
+        lines.add(row("import-hashed", passwordHash, answerHash));
+        lines.add(row("import-weak", "short", "Blue"));
+        lines.add("import-short,columns");
+        Path input = directory.resolve("accounts.csv");
+        Files.write(input, lines, StandardCharsets.UTF_8);
+        Path rejectsFile = directory.resolve("rejects.tsv");
+
+        AccountImporter.Result result = AccountImporter.importAccounts(input, rejectsFile);
+
+        assertEquals(2, result.getImported(), String.join("\n", Files.readAllLines(rejectsFile)));
+        assertEquals(4, result.getRejected());
+        List<String> rejects = Files.readAllLines(rejectsFile, StandardCharsets.UTF_8);
+        assertEquals(4, rejects.size());
+        assertTrue(rejects.get(0).startsWith("3\tError: Customer ID 'import-plain' is already taken!"), rejects.get(0));
+        assertTrue(rejects.get(1).startsWith("4\tError: Customer ID 'import-existing' is already taken!"), rejects.get(1));
+
+        Customer plain = AccountService.getCustomerByID("import-plain");
+        assertTrue(plain.checkPassword(PASSWORD));
+        assertTrue(plain.checkSecurityAnswer("Blue"));
+        assertEquals(5_025, plain.getCreditCard().getLedger().getAvailableCents());
+        Customer hashed = AccountService.getCustomerByID("import-hashed");
+        assertEquals(passwordHash, hashed.getPasswordHash(), "a given hash is kept as is");
+        assertTrue(hashed.checkPassword(PASSWORD));
+        assertTrue(hashed.checkSecurityAnswer("Blue"));
+    }
+
+    @Test
+    void preHashedImportThroughput() throws Exception {
+        int count = 20_000;
+        String passwordHash = PasswordHasher.hash(PASSWORD, 1000);
+        String answerHash = PasswordHasher.hash("Blue", 1000);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(row("import-bulk-" + i, passwordHash, answerHash));
+        }
+        for (int i = 0; i < count; i++) {
+            lines.add(row("import-bulk-" + i, PASSWORD, "Blue")); // duplicates must not cost a hash each
+        }
+        Path input = directory.resolve("bulk.csv");
+        Files.write(input, lines, StandardCharsets.UTF_8);
+
+        long start = System.nanoTime();
+        AccountImporter.Result result = AccountImporter.importAccounts(input, directory.resolve("bulk-rejects.tsv"));
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%d rows (half of them duplicates) imported in %.1f ms%n", 2 * count, elapsed / 1e6);
+        assertEquals(count, result.getImported());
+        assertEquals(count, result.getRejected());
+        assertTrue(elapsed < 30_000_000_000L, "duplicates are rejected before hashing");
+    }
+}
@@ -0,0 +1,138 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardLedgerTest {
+    private static final int THREADS = 32;
+    private static final int OPERATIONS = 5_000;
+
+    /** Runs {@code task} on {@code THREADS} threads started together, while another thread watches the ledger. */
+    private static void race(CardLedger ledger, Runnable task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean negative = new AtomicBoolean();
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                if (ledger.getAvailableCents() < 0 || ledger.getBalanceCents() < 0) {
+                    negative.set(true);
+                }
+                Thread.yield();
+            }
+        });
+        try {
+            watcher.start();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            watcher.join();
+            pool.shutdownNow();
+        }
+        assertFalse(negative.get(), "the balance went below zero");
+    }
+
+    @Test
+    void holdsCapturesAndReleasesOnOneCardConserveTheMoney() throws Exception {
+        long starting = 1_000_000;
+        CardLedger ledger = new CardLedger(starting);
+        LongAdder charged = new LongAdder();
+        LongAdder declined = new LongAdder();
+        race(ledger, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS; i++) {
+                long amount = 1 + random.nextInt(500);
+                if (random.nextInt(8) == 0) {
+                    if (ledger.debit(amount, null)) {
+                        charged.add(amount);
+                    } else {
+                        declined.increment();
+                    }
+                    continue;
+                }
+                long holdID = ledger.hold(amount, null);
+                if (holdID < 0) {
+                    declined.increment();
+                } else if (random.nextBoolean()) {
+                    assertTrue(ledger.capture(holdID));
+                    assertFalse(ledger.release(holdID), "a captured hold cannot be released");
+                    charged.add(amount);
+                } else {
+                    assertTrue(ledger.release(holdID));
+                    assertFalse(ledger.capture(holdID), "a released hold cannot be captured");
+                }
+            }
+        });
+
+        assertTrue(declined.sum() > 0, "the card should run dry during the test");
+        assertEquals(0, ledger.getHeldCents());
+        assertEquals(starting, ledger.getAvailableCents() + ledger.getHeldCents() + charged.sum());
+        assertEquals(ledger.getAvailableCents() + ledger.getHeldCents(), ledger.getBalanceCents());
+    }
+
+    @Test
+    void resetWhileHoldsComeAndGoKeepsTheTotalConsistent() throws Exception {
+        CardLedger ledger = new CardLedger(100_000);
+        List<Long> open = new ArrayList<>();
+        race(ledger, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS; i++) {
+                switch (random.nextInt(10)) {
+                    case 0 -> ledger.reset(random.nextInt(200_000));
+                    case 1 -> ledger.credit(random.nextInt(100), null);
+                    default -> {
+                        long holdID = ledger.hold(1 + random.nextInt(100), null);
+                        if (holdID < 0) {
+                            continue;
+                        }
+                        int outcome = random.nextInt(3);
+                        if (outcome == 0) {
+                            ledger.capture(holdID);
+                        } else if (outcome == 1) {
+                            ledger.release(holdID);
+                        } else {
+                            synchronized (open) {
+                                open.add(holdID); // left on hold
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        long held = ledger.getHeldCents();
+        assertTrue(held > 0);
+        assertEquals(ledger.getAvailableCents() + held, ledger.getBalanceCents());
+        long available = ledger.getAvailableCents();
+        for (long holdID : open) {
+            assertTrue(ledger.release(holdID));
+        }
+        assertEquals(available + held, ledger.getAvailableCents());
+        assertEquals(ledger.getAvailableCents(), ledger.getBalanceCents());
+    }
+}
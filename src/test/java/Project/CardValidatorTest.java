@@ -0,0 +1,131 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardValidatorTest {
+    /** @return A number of {@code length} digits starting with {@code prefix}, ending with its Luhn check digit. */
+    private static String number(String prefix, int length) {
+        StringBuilder digits = new StringBuilder(prefix);
+        for (int i = 0; digits.length() < length - 1; i++) {
+            digits.append((char) ('0' + (i * 7 + 3) % 10));
+        }
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(i) - '0';
+            if (((digits.length() - i) & 1) == 1) { // every second digit left of the check digit
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return digits.append((char) ('0' + (10 - sum % 10) % 10)).toString();
+    }
+
+    private static void assertLengths(String prefix, int... valid) {
+        for (int length = 13; length <= 19; length++) {
+            boolean allowed = false;
+            for (int v : valid) {
+                allowed |= v == length;
+            }
+            assertEquals(allowed, CardValidator.isValidNumber(number(prefix, length)), prefix + " with " + length + " digits");
+        }
+    }
+
+    private static String expiry(YearMonth month) {
+        return String.format("%02d/%02d", month.getMonthValue(), month.getYear() % 100);
+    }
+
+    @Test
+    void numbersMustPassTheLuhnChecksum() {
+        assertTrue(CardValidator.isValidNumber("4111111111111111"));
+        assertTrue(CardValidator.isValidNumber("378282246310005"));
+        assertFalse(CardValidator.isValidNumber("4111111111111112"));
+        String valid = number("4", 16);
+        for (int digit = 0; digit <= 9; digit++) {
+            String changed = valid.substring(0, 15) + digit;
+            assertEquals(changed.equals(valid), CardValidator.isValidNumber(changed), changed);
+        }
+        assertFalse(CardValidator.isValidNumber(null));
+        assertFalse(CardValidator.isValidNumber(""));
+        assertFalse(CardValidator.isValidNumber("4111 1111 1111 1111"));
+        assertFalse(CardValidator.isValidNumber("411111111111111a"));
+        assertFalse(CardValidator.isValidNumber(number("4", 12)));
+        assertFalse(CardValidator.isValidNumber(number("4", 20)));
+    }
+
+    @Test
+    void eachIssuerOnlyAllowsItsLengths() {
+        assertLengths("4", 13, 16, 19); // Visa
+        assertLengths("34", 15); // American Express
+        assertLengths("37", 15);
+        for (String mastercard : new String[]{"51", "55", "2221", "2500", "2720"}) {
+            assertLengths(mastercard, 16);
+        }
+        for (String discover : new String[]{"6011", "65", "644", "649"}) {
+            assertLengths(discover, 16, 17, 18, 19);
+        }
+        // Just outside the Discover ranges: other issuers, 16 digits only
+        assertLengths("643", 16);
+        assertLengths("6010", 16);
+        assertLengths("36", 16);
+    }
+
+    @Test
+    void expiryIsParsedAsAMonthIndex() {
+        assertEquals(2030 * 12 + 11, CardValidator.parseExpiry("12/30"));
+        assertEquals(2000 * 12, CardValidator.parseExpiry("01/00"));
+        assertEquals(2099 * 12 + 5, CardValidator.parseExpiry("06/99"));
+        for (String invalid : new String[]{"00/30", "13/30", "99/30", "1/30", "01/3", "01-30", "ab/30", "01/cd",
+                "01/301", "", null}) {
+            assertEquals(-1, CardValidator.parseExpiry(invalid), invalid);
+        }
+    }
+
+    @Test
+    void cardsExpireAfterTheirMonth() {
+        YearMonth now = YearMonth.now();
+        assertFalse(CardValidator.isExpired(CardValidator.parseExpiry(expiry(now))), "valid through its month");
+        assertFalse(CardValidator.isExpired(CardValidator.parseExpiry(expiry(now.plusMonths(1)))));
+        assertTrue(CardValidator.isExpired(CardValidator.parseExpiry(expiry(now.minusMonths(1)))));
+        assertTrue(CardValidator.isExpired(CardValidator.parseExpiry("13/99")), "an unreadable date is expired");
+        assertTrue(CardValidator.isExpired(CardValidator.parseExpiry("00/99")));
+        assertTrue(CardValidator.isExpired(-1));
+    }
+
+    @Test
+    void sweepFindsEveryUnusableCard() {
+        String future = expiry(YearMonth.now().plusYears(2));
+        String past = expiry(YearMonth.now().minusMonths(1));
+        List<Customer> customers = new ArrayList<>();
+        List<String> unusable = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String id = "card-" + i;
+            CreditCard card = switch (i % 5) {
+                case 0 -> new CreditCard(number("5", 16), "Test", future, "123");
+                case 1 -> new CreditCard(number("4", 15), "Test", future, "123"); // wrong length for Visa
+                case 2 -> new CreditCard(number("37", 15), "Test", past, "1234");
+                case 3 -> null;
+                default -> new CreditCard(number("6011", 19), "Test", "13/40", "123");
+            };
+            if (i % 5 != 0) {
+                unusable.add(id);
+            }
+            customers.add(Customer.restore(id, "hash", "Test", "Address", card, "Q", "A"));
+        }
+        List<String> found = new ArrayList<>();
+        for (Customer customer : CardValidator.findUnusableCards(customers)) {
+            found.add(customer.getCustomerID());
+        }
+        assertEquals(unusable, found, "every unusable card, in the order given");
+    }
+}
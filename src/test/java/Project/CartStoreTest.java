@@ -0,0 +1,205 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartStoreTest {
+    @TempDir
+    Path directory;
+
+    private static ProductListing catalog(Product... products) {
+        ProductListing catalog = new ProductListing();
+        for (Product product : products) {
+            catalog.addProduct(product);
+        }
+        return catalog;
+    }
+
+    private long spillFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void restoredCartIsPricedFromTheCatalog() throws Exception {
+        Product cheap = Product.restore("store-p1", "Lamp", "Test", 1_000, 0);
+        Product dropped = Product.restore("store-p2", "Chair", "Test", 5_000, 0);
+        CartStore store = new CartStore(1, 60_000);
+        store.spillTo(directory, catalog(cheap, dropped));
+        store.getCart("a").addItem(cheap, 2);
+        store.getCart("a").addItem(dropped, 1);
+        store.getCart("b"); // evicts a's cart to disk
+        assertEquals(1, store.getSpilledCartCount());
+
+        // The price went up and the chair is no longer sold
+        store.spillTo(directory, catalog(Product.restore("store-p1", "Lamp", "Test", 1_250, 0)));
+        Cart restored = store.getCart("a");
+        List<CartItem> items = restored.getItems();
+        assertEquals(1, items.size());
+        assertEquals(1_250, items.get(0).getProduct().getPriceCents());
+        assertEquals(2_500, restored.getSubTotalCents());
+        store.close();
+    }
+
+    @Test
+    void cartBeingCheckedOutIsNotEvicted() throws Exception {
+        Product product = Product.restore("store-p3", "Desk", "Test", 20_000, 0);
+        CartStore store = new CartStore(1, 60_000);
+        store.spillTo(directory, catalog(product));
+        Cart cart = store.getCart("a");
+        cart.addItem(product, 1);
+        assertTrue(cart.startCheckout());
+
+        store.getCart("b");
+        assertEquals(2, store.size()); // over the limit until the checkout ends
+        assertEquals(0, store.getEvictedCartCount());
+        assertSame(cart, store.getCart("a"));
+
+        cart.clearCart(); // the order was placed
+        cart.endCheckout();
+        store.getCart("c"); // evicts b, then a
+        assertEquals(1, store.size());
+        assertEquals(2, store.getEvictedCartCount());
+        assertFalse(cart.startCheckout()); // put aside: it can no longer be ordered
+        assertNotSame(cart, store.getCart("a"));
+        assertTrue(store.getCart("a").isEmpty());
+        store.close();
+    }
+
+    @Test
+    void closeDoesNotSaveACartBeingCheckedOut() throws Exception {
+        Product product = Product.restore("store-p4", "Shelf", "Test", 7_500, 0);
+        CartStore store = new CartStore(10, 60_000);
+        store.spillTo(directory, catalog(product));
+        Cart ordering = store.getCart("a");
+        ordering.addItem(product, 1);
+        assertTrue(ordering.startCheckout());
+        store.getCart("b").addItem(product, 3);
+        store.close();
+
+        assertEquals(1, spillFiles());
+        CartStore next = new CartStore(10, 60_000);
+        next.spillTo(directory, catalog(product));
+        assertTrue(next.getCart("a").isEmpty());
+        assertEquals(3, next.getCart("b").getItems().get(0).getQuantity());
+        next.close();
+    }
+
+    @Test
+    void idleCartBeingCheckedOutExpiresAfterTheCheckout() throws Exception {
+        CartStore store = new CartStore(10, 1);
+        Cart ordering = store.getCart("a");
+        assertTrue(ordering.startCheckout());
+        store.getCart("b");
+
+        Thread.sleep(1_100); // past the next tick
+        store.expireIdleCarts();
+        assertEquals(1, store.size());
+        assertSame(ordering, store.getCart("a"));
+
+        ordering.endCheckout();
+        Thread.sleep(1_100);
+        store.expireIdleCarts();
+        Thread.sleep(1_100);
+        store.expireIdleCarts();
+        assertEquals(0, store.size());
+        assertEquals(2, store.getExpiredCartCount());
+        store.close();
+    }
+
+    @Test
+    void concurrentRestoresOfOneCartShareIt() throws Exception {
+        Product product = Product.restore("store-p5", "Rug", "Test", 3_000, 0);
+        ProductListing catalog = catalog(product);
+        CartStore first = new CartStore(10, 60_000);
+        first.spillTo(directory, catalog);
+        first.getCart("a").addItem(product, 4);
+        first.close();
+
+        int threads = 16;
+        for (int round = 0; round < 20; round++) {
+            CartStore store = new CartStore(10, 60_000);
+            store.spillTo(directory, catalog);
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<Cart>> carts = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    carts.add(pool.submit(() -> {
+                        start.await();
+                        return store.getCart("a");
+                    }));
+                }
+                start.countDown();
+                Cart restored = carts.get(0).get(10, TimeUnit.SECONDS);
+                for (Future<Cart> cart : carts) {
+                    assertSame(restored, cart.get(10, TimeUnit.SECONDS), "round " + round);
+                }
+                assertEquals(4, restored.getItems().get(0).getQuantity(), "round " + round);
+                assertEquals(1, store.getRestoredCartCount());
+            } finally {
+                pool.shutdownNow();
+            }
+            store.close(); // saves it again for the next round
+        }
+    }
+
+    @Test
+    void cartAskedForWhileItIsEvictedIsNotLost() throws Exception {
+        Product lamp = Product.restore("store-p6", "Lamp", "Test", 1_000, 0);
+        Product desk = Product.restore("store-p7", "Desk", "Test", 9_000, 0);
+        CartStore store = new CartStore(1, 60_000); // every other customer's cart evicts this one
+        store.spillTo(directory, catalog(lamp, desk));
+        store.getCart("a").addItem(lamp, 1);
+        store.getCart("b").addItem(desk, 2);
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> shoppers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String customerID = t % 2 == 0 ? "a" : "b";
+                int expected = t % 2 == 0 ? 1 : 2;
+                shoppers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 500; i++) {
+                        List<CartItem> items = store.getCart(customerID).getItems();
+                        // the cart may be evicted again right away, but never comes back empty or stale
+                        assertEquals(1, items.size(), customerID);
+                        assertEquals(expected, items.get(0).getQuantity(), customerID);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> shopper : shoppers) {
+                shopper.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(store.getEvictedCartCount() > 0);
+        assertEquals(1, store.getCart("a").getItems().get(0).getQuantity());
+        assertEquals(2, store.getCart("b").getItems().get(0).getQuantity());
+        store.close();
+    }
+}
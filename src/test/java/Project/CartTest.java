@@ -0,0 +1,183 @@
+package Project;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartTest {
+    private static final String[] DELIVERY_METHODS = {null, "mail", "pickup"};
+
+    @AfterEach
+    void restoreDefaultRules() {
+        PricingEngine.reload(PricingRules.defaults());
+    }
+
+    private static PricingRules discountRules(Random random, List<Product> products) {
+        Map<String, Long> fees = new HashMap<>();
+        fees.put("mail", 300L);
+        fees.put("pickup", 0L);
+        Map<String, Integer> productDiscounts = new HashMap<>();
+        for (Product product : products) {
+            if (random.nextBoolean()) {
+                productDiscounts.put(product.getProductID(), random.nextInt(5_001));
+            }
+        }
+        return new PricingRules(random.nextInt(1_500), fees, productDiscounts,
+                random.nextInt(50_000), random.nextInt(2_001));
+    }
+
+    private static void assertMatchesRecompute(Cart cart, int step) {
+        PricingRules rules = PricingEngine.getRules();
+        for (String deliveryMethod : DELIVERY_METHODS) {
+            Quote expected = rules.quote(cart.getItems(), deliveryMethod);
+            Quote actual = cart.getQuote(deliveryMethod);
+            String where = "step " + step + ", delivery " + deliveryMethod;
+            assertEquals(expected.getSubTotalCents(), actual.getSubTotalCents(), where);
+            assertEquals(expected.getDiscountCents(), actual.getDiscountCents(), where);
+            assertEquals(expected.getTaxCents(), actual.getTaxCents(), where);
+            assertEquals(expected.getTotalCents(), actual.getTotalCents(), where);
+        }
+        Quote items = rules.quote(cart.getItems(), null);
+        assertEquals(items.getSubTotalCents(), cart.getSubTotalCents(), "step " + step);
+        assertEquals(items.getDiscountCents(), cart.getDiscountCents(), "step " + step);
+        assertEquals(items.getTaxCents(), cart.getTaxCents(), "step " + step);
+        assertEquals(items.getTotalCents(), cart.getTotalCents(), "step " + step);
+    }
+
+    @Test
+    void runningTotalsMatchAFullRecomputeAfterRandomChanges() {
+        Random random = new Random(24);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            long price = 1 + random.nextInt(25_000);
+            products.add(Product.restore("cart-" + i, "Product " + i, "Test", price, random.nextInt((int) price + 1)));
+        }
+
+        for (int run = 0; run < 20; run++) {
+            PricingEngine.reload(run % 2 == 0 ? PricingRules.defaults() : discountRules(random, products));
+            Cart cart = new Cart();
+            for (int step = 0; step < 300; step++) {
+                Product product = products.get(random.nextInt(products.size()));
+                switch (random.nextInt(4)) {
+                    case 0 -> cart.addItem(product, 1 + random.nextInt(5));
+                    case 1 -> cart.removeItem(product.getProductID(), random.nextInt(4));
+                    case 2 -> cart.setQuantity(product.getProductID(), random.nextInt(6));
+                    default -> {
+                        if (random.nextInt(10) == 0) {
+                            // The rules change while the cart is in use: the totals must follow
+                            PricingEngine.reload(discountRules(random, products));
+                        }
+                    }
+                }
+                assertMatchesRecompute(cart, step);
+            }
+            cart.clearCart();
+            assertMatchesRecompute(cart, -1);
+        }
+    }
+
+    @Test
+    void addingAProductAgainAtANewPriceKeepsTheLinePrice() {
+        Product lamp = Product.restore("cart-lamp", "Lamp", "Test", 1_000, 0);
+        Product repriced = Product.restore("cart-lamp", "Lamp", "Test", 5_000, 0); // same ID, new catalog price
+        Cart cart = new Cart();
+        cart.addItem(lamp, 1);
+        cart.addItem(repriced, 2);
+
+        assertEquals(1, cart.getItems().size());
+        assertEquals(3, cart.getItems().get(0).getQuantity());
+        assertEquals(3_000, cart.getSubTotalCents());
+        assertMatchesRecompute(cart, 1);
+        cart.removeItem("cart-lamp", 3);
+        assertEquals(0, cart.getSubTotalCents());
+        assertMatchesRecompute(cart, 2);
+    }
+
+    /** @return The time (in nanoseconds) per operation of updating, adding and removing lines in a cart of {@code lines} lines. */
+    private static double nanosPerChange(int lines, int changes) {
+        Cart cart = new Cart();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < lines + changes; i++) {
+            products.add(Product.restore("bulk-" + lines + "-" + i, "Bulk " + i, "Test", 100 + i, 0));
+        }
+        for (int i = 0; i < lines; i++) {
+            cart.addItem(products.get(i), 1);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < changes; i++) {
+            Product existing = products.get((i * 7919) % lines);
+            cart.setQuantity(existing.getProductID(), 2 + i % 3);
+            cart.addItem(existing, 1);
+            Product added = products.get(lines + i);
+            cart.addItem(added, 1);
+            cart.removeItem(added.getProductID(), 0);
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(lines, cart.getItems().size());
+        assertEquals(products.get(0).getProductID(), cart.getItems().get(0).getProduct().getProductID());
+        return (double) nanos / (changes * 4);
+    }
+
+    @Test
+    void changesCostTheSameInALargeCart() {
+        double small = Double.MAX_VALUE;
+        double large = Double.MAX_VALUE;
+        for (int round = 0; round < 4; round++) { // the best round, after the JIT has warmed up
+            small = Math.min(small, nanosPerChange(50, 2_000));
+            large = Math.min(large, nanosPerChange(5_000, 2_000));
+        }
+        System.out.printf("Cart change: %.0f ns with 50 lines, %.0f ns with 5,000 lines%n", small, large);
+        // 100 times the lines: a scan of the items would make every change about 100 times slower
+        assertTrue(large < small * 5, "changes should not depend on the number of lines");
+    }
+
+    /**
+     * @return The time (in nanoseconds) to change one line of the cart and quote it, with the cart's
+     * running totals or, if {@code recompute}, by pricing every item again.
+     */
+    private static double nanosPerQuote(Cart cart, List<Product> products, int changes, boolean recompute) {
+        PricingRules rules = PricingEngine.getRules();
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < changes; i++) {
+            cart.setQuantity(products.get((i * 7919) % products.size()).getProductID(), 1 + i % 4);
+            Quote quote = recompute ? rules.quote(cart.getItems(), "mail") : cart.getQuote("mail");
+            checksum += quote.getTotalCents();
+        }
+        long nanos = System.nanoTime() - start;
+        assertTrue(checksum > 0);
+        return (double) nanos / changes;
+    }
+
+    @Test
+    void runningTotalsBeatARecompute() {
+        Random random = new Random(16);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            products.add(Product.restore("quote-" + i, "Product " + i, "Test", 100 + random.nextInt(10_000), 0));
+        }
+        PricingEngine.reload(discountRules(random, products));
+        Cart cart = new Cart();
+        for (Product product : products) {
+            cart.addItem(product, 1);
+        }
+        double running = Double.MAX_VALUE;
+        double recomputed = Double.MAX_VALUE;
+        for (int round = 0; round < 4; round++) { // the best round, after the JIT has warmed up
+            running = Math.min(running, nanosPerQuote(cart, products, 2_000, false));
+            recomputed = Math.min(recomputed, nanosPerQuote(cart, products, 2_000, true));
+        }
+        assertMatchesRecompute(cart, -1);
+        System.out.printf("Quote after a change, 2,000 lines: %.0f ns from running totals, %.0f ns recomputed (x%.1f)%n",
+                running, recomputed, recomputed / running);
+        assertTrue(running * 3 < recomputed, "running totals should not price every line again");
+    }
+}
@@ -0,0 +1,333 @@
+package Project;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckoutPipelineTest {
+    private static final int CUSTOMERS = 8;
+    private static final int ORDERS_PER_CUSTOMER = 200;
+
+    @TempDir
+    Path directory;
+
+    private CheckoutPipeline pipeline;
+
+    @AfterEach
+    void stopPipeline() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+        OrderService.closeJournal();
+        AccountService.closeStore();
+    }
+
+    private static Customer customer(String id) {
+        Customer customer = Customer.restore(id, "hash", "Test", "Address",
+                new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A");
+        AccountService.registerCustomers(List.of(customer));
+        return AccountService.getCustomerByID(id);
+    }
+
+    private static Cart cart(int n) {
+        Cart cart = new Cart();
+        cart.addItem(new Product("PIPE" + n, "Product", "Description", 1.0, 1.0), 1);
+        return cart;
+    }
+
+    @Test
+    void concurrentCheckoutsAreJournaledChargedAndStored() throws Exception {
+        AccountService.openStore(directory.resolve("customers"), 60 * 60 * 1000L);
+        OrderService.openJournal(directory.resolve("orders"));
+        OrderStore orders = new OrderStore();
+        SalesAggregates sales = new SalesAggregates();
+        BankSimulator bank = new BankSimulator();
+        pipeline = new CheckoutPipeline(orders, new OrderIdGenerator(1), sales, () -> bank, 64);
+
+        List<Thread> shoppers = new ArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < CUSTOMERS; c++) {
+            Customer customer = customer("pipeline-" + c);
+            String token = AccountService.loginCustomer(customer.getCustomerID());
+            Thread shopper = new Thread(() -> {
+                List<CompletableFuture<String>> own = new ArrayList<>();
+                for (int i = 0; i < ORDERS_PER_CUSTOMER; i++) {
+                    own.add(pipeline.submit(token, customer, cart(i), "pickup"));
+                }
+                synchronized (results) {
+                    results.addAll(own);
+                }
+            });
+            shoppers.add(shopper);
+            shopper.start();
+        }
+        for (Thread shopper : shoppers) {
+            shopper.join();
+        }
+        for (CompletableFuture<String> result : results) {
+            assertTrue(result.get(30, TimeUnit.SECONDS).startsWith("Order placed successfully"), result.join());
+        }
+        long elapsed = System.nanoTime() - start;
+        int total = CUSTOMERS * ORDERS_PER_CUSTOMER;
+        System.out.printf("%d checkouts in %.1f ms (%.0f/s)%n", total, elapsed / 1e6, total / (elapsed / 1e9));
+        for (CheckoutPipeline.Stage stage : pipeline.getStages()) {
+            System.out.println(stage);
+        }
+
+        assertEquals(total, orders.size());
+        assertTrue(pipeline.awaitCommitted(10_000));
+        long charged = 0;
+        for (int c = 0; c < CUSTOMERS; c++) {
+            CreditCard card = AccountService.getCustomerByID("pipeline-" + c).getCreditCard();
+            charged += Money.toCents(1000.0) - card.getLedger().getAvailableCents();
+        }
+        long expected = 0;
+        for (Order order : orders.getAll()) {
+            expected += order.getTotalCents();
+        }
+        assertEquals(expected, charged, "every placed order was charged exactly once");
+    }
+
+    @Test
+    void slowBankDoesNotTieUpAuthorizeWorkers() throws Exception {
+        long bankMillis = 50;
+        int checkouts = 200;
+        BankSimulator bank = new BankSimulator();
+        PaymentGateway slow = new PaymentGateway() {
+            @Override
+            public CompletableFuture<Authorization> authorize(CreditCard card, long amountCents) {
+                return bank.authorize(card, amountCents).thenApplyAsync(authorization -> authorization,
+                        CompletableFuture.delayedExecutor(bankMillis, TimeUnit.MILLISECONDS));
+            }
+
+            @Override
+            public void capture(CreditCard card, Authorization authorization) {
+                bank.capture(card, authorization);
+            }
+
+            @Override
+            public void release(CreditCard card, Authorization authorization) {
+                bank.release(card, authorization);
+            }
+        };
+        OrderStore orders = new OrderStore();
+        pipeline = new CheckoutPipeline(orders, new OrderIdGenerator(3), new SalesAggregates(), () -> slow, 256);
+        Customer customer = customer("pipeline-slow-bank");
+        String token = AccountService.loginCustomer(customer.getCustomerID());
+
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < checkouts; i++) {
+            results.add(pipeline.submit(token, customer, cart(i), "pickup"));
+        }
+        for (CompletableFuture<String> result : results) {
+            assertTrue(result.get(30, TimeUnit.SECONDS).startsWith("Order placed successfully"), result.join());
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(checkouts + " checkouts with a " + bankMillis + " ms bank in " + elapsedMillis + " ms");
+        // Waiting for the bank on the authorize workers would take checkouts / workers * bankMillis
+        int authorizeWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        assertTrue(elapsedMillis < checkouts / authorizeWorkers * bankMillis / 2,
+                "authorizations overlap instead of holding a worker each");
+        assertEquals(checkouts, orders.size());
+    }
+
+    @Test
+    void failedCaptureStillCompletesTheCheckout() throws Exception {
+        BankSimulator bank = new BankSimulator();
+        PaymentGateway failing = new PaymentGateway() {
+            @Override
+            public CompletableFuture<Authorization> authorize(CreditCard card, long amountCents) {
+                return bank.authorize(card, amountCents);
+            }
+
+            @Override
+            public void capture(CreditCard card, Authorization authorization) {
+                throw new IllegalStateException("capture failed");
+            }
+
+            @Override
+            public void release(CreditCard card, Authorization authorization) {
+                bank.release(card, authorization);
+            }
+        };
+        OrderStore orders = new OrderStore();
+        pipeline = new CheckoutPipeline(orders, new OrderIdGenerator(2), new SalesAggregates(), () -> failing, 8);
+        Customer customer = customer("pipeline-failing");
+        String token = AccountService.loginCustomer(customer.getCustomerID());
+        Inventory.setStock("PIPE-STOCKED", 5);
+        Cart cart = new Cart();
+        cart.addItem(new Product("PIPE-STOCKED", "Product", "Description", 1.0, 1.0), 2);
+
+        String result = pipeline.submit(token, customer, cart, "pickup").get(10, TimeUnit.SECONDS);
+
+        assertTrue(result.startsWith("Error:"), result);
+        assertEquals(0, orders.size());
+        assertTrue(pipeline.awaitCommitted(10_000));
+        // The hold and the committed stock were given back
+        assertEquals(Money.toCents(1000.0), customer.getCreditCard().getLedger().getAvailableCents());
+        assertEquals(0, customer.getCreditCard().getLedger().getHeldCents());
+        assertEquals(5, Inventory.getAvailable("PIPE-STOCKED"));
+        assertEquals(0, Inventory.getSold("PIPE-STOCKED"));
+    }
+
+    @Test
+    void failedCaptureIsNotReplayedFromTheJournal() throws Exception {
+        BankSimulator bank = new BankSimulator();
+        AtomicBoolean failCapture = new AtomicBoolean();
+        PaymentGateway flaky = new PaymentGateway() {
+            @Override
+            public CompletableFuture<Authorization> authorize(CreditCard card, long amountCents) {
+                return bank.authorize(card, amountCents);
+            }
+
+            @Override
+            public void capture(CreditCard card, Authorization authorization) {
+                if (failCapture.get()) {
+                    throw new IllegalStateException("capture failed");
+                }
+                bank.capture(card, authorization);
+            }
+
+            @Override
+            public void release(CreditCard card, Authorization authorization) {
+                bank.release(card, authorization);
+            }
+        };
+        Path journalDirectory = directory.resolve("orders");
+        OrderService.openJournal(journalDirectory);
+        OrderStore orders = new OrderStore();
+        pipeline = new CheckoutPipeline(orders, new OrderIdGenerator(4), new SalesAggregates(), () -> flaky, 8);
+        Customer customer = customer("pipeline-journal-capture");
+        String token = AccountService.loginCustomer(customer.getCustomerID());
+
+        String placed = pipeline.submit(token, customer, cart(1), "pickup").get(10, TimeUnit.SECONDS);
+        assertTrue(placed.startsWith("Order placed successfully"), placed);
+        failCapture.set(true);
+        String failed = pipeline.submit(token, customer, cart(2), "pickup").get(10, TimeUnit.SECONDS);
+        assertTrue(failed.startsWith("Error:"), failed);
+        OrderService.closeJournal();
+
+        List<Order> replayed = new ArrayList<>();
+        new OrderJournal(journalDirectory, replayed::add).close();
+        assertEquals(1, replayed.size(), "only the charged order comes back");
+        assertEquals(orders.getAll().iterator().next().getOrderId(), replayed.get(0).getOrderId());
+    }
+
+    /** @return Checkouts per second of {@code count} carts submitted at once by a new customer. */
+    private static double checkoutsPerSecond(CheckoutPipeline pipeline, String customerID, int count) throws Exception {
+        Customer customer = customer(customerID);
+        String token = AccountService.loginCustomer(customerID);
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(pipeline.submit(token, customer, cart(i), "pickup"));
+        }
+        for (CompletableFuture<String> result : results) {
+            assertTrue(result.get(30, TimeUnit.SECONDS).startsWith("Order placed successfully"), result.join());
+        }
+        return count * 1e9 / (System.nanoTime() - start);
+    }
+
+    @Test
+    void throughputWithOneWorkerAndWithOnePerCore() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int checkouts = 500; // $1 carts: well within the $1,000 on a new customer's card
+        Map<Integer, Double> rates = new LinkedHashMap<>();
+        for (int workers : new int[]{1, Math.max(2, cores)}) {
+            BankSimulator bank = new BankSimulator();
+            CheckoutPipeline measured = new CheckoutPipeline(new OrderStore(), new OrderIdGenerator(5 + workers),
+                    new SalesAggregates(), () -> bank, 256, workers);
+            try {
+                String prefix = "pipeline-workers-" + workers + "-";
+                checkoutsPerSecond(measured, prefix + "warm-up", checkouts);
+                double best = 0;
+                for (int round = 0; round < 3; round++) {
+                    best = Math.max(best, checkoutsPerSecond(measured, prefix + round, checkouts));
+                }
+                rates.put(workers, best);
+            } finally {
+                measured.shutdown();
+            }
+        }
+        List<Integer> counts = new ArrayList<>(rates.keySet());
+        double ratio = rates.get(counts.get(1)) / rates.get(counts.get(0));
+        System.out.printf("Checkout throughput on %d cores: %.0f/s with 1 worker per stage, %.0f/s with %d (x%.2f)%n",
+                cores, rates.get(counts.get(0)), rates.get(counts.get(1)), counts.get(1), ratio);
+        assertTrue(ratio > 0.5, "more workers should not slow checkouts down");
+    }
+
+    @Test
+    void checkoutChargesTheCartAsItWasWhenSubmitted() throws Exception {
+        BankSimulator bank = new BankSimulator();
+        CountDownLatch bankReplies = new CountDownLatch(1);
+        PaymentGateway held = new PaymentGateway() {
+            @Override
+            public CompletableFuture<Authorization> authorize(CreditCard card, long amountCents) {
+                return bank.authorize(card, amountCents).thenApplyAsync(authorization -> {
+                    try {
+                        bankReplies.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return authorization;
+                });
+            }
+
+            @Override
+            public void capture(CreditCard card, Authorization authorization) {
+                bank.capture(card, authorization);
+            }
+
+            @Override
+            public void release(CreditCard card, Authorization authorization) {
+                bank.release(card, authorization);
+            }
+        };
+        pipeline = new CheckoutPipeline(new OrderStore(), new OrderIdGenerator(6), new SalesAggregates(), () -> held, 8);
+        Customer customer = customer("pipeline-snapshot");
+        String token = AccountService.loginCustomer(customer.getCustomerID());
+        Product product = Product.restore("PIPE-SNAPSHOT", "Product", "Description", 500, 0);
+        Cart cart = new Cart();
+        cart.addItem(product, 1);
+        List<Order> placed = new ArrayList<>();
+
+        CompletableFuture<String> result = pipeline.submit(token, customer, cart, "pickup", placed::add);
+        cart.setQuantity(product.getProductID(), 5); // changes the cart's own CartItem while the bank thinks
+        bankReplies.countDown();
+
+        assertTrue(result.get(10, TimeUnit.SECONDS).startsWith("Order placed successfully"), result.join());
+        Order order = placed.get(0);
+        assertEquals(1, order.getItems().get(0).getQuantity());
+        assertEquals(order.getTotalCents(), Money.toCents(1000.0) - customer.getCreditCard().getLedger().getAvailableCents());
+    }
+
+    @Test
+    void cartIsReleasedIfTheCheckoutCannotStart() {
+        pipeline = new CheckoutPipeline(new OrderStore(), new OrderIdGenerator(7), new SalesAggregates(),
+                BankSimulator::new, 8);
+        Cart cart = new Cart() {
+            @Override
+            synchronized List<CartItem> copyItems() {
+                throw new IllegalStateException("cart could not be read");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(null, customer("pipeline-broken"), cart, "pickup"));
+        assertTrue(cart.putAside(), "the checkout that never started must not keep the cart");
+    }
+}
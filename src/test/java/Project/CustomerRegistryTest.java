@@ -0,0 +1,100 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerRegistryTest {
+    private static Customer customer(String id) {
+        return Customer.restore(id, "hash", "Test", "Address",
+                new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A");
+    }
+
+    private static void register(String prefix, int from, int to) {
+        List<Customer> batch = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            batch.add(customer(prefix + i));
+        }
+        assertTrue(AccountService.registerCustomers(batch).isEmpty());
+    }
+
+    /** @return The best time (in nanoseconds) of a few rounds of lookups cycling through the first {@code count} IDs. */
+    private static long lookupNanos(String prefix, int count, int lookups) {
+        String[] ids = new String[lookups];
+        for (int i = 0; i < lookups; i++) {
+            ids[i] = prefix + (i % count);
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (String id : ids) {
+                if (AccountService.getCustomerByID(id) == null || !AccountService.customerIDTaken(id)) {
+                    throw new AssertionError("missing " + id);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    @Test
+    void lookupTimeStaysFlatAsCustomersGrow() {
+        String prefix = "registry-" + System.nanoTime() + "-";
+        int lookups = 200_000;
+        register(prefix, 0, 1_000);
+        long small = lookupNanos(prefix, 1_000, lookups);
+        register(prefix, 1_000, 30_000);
+        long medium = lookupNanos(prefix, 30_000, lookups);
+        register(prefix, 30_000, 300_000);
+        long large = lookupNanos(prefix, 300_000, lookups);
+        System.out.printf("Customer lookup: %.0f ns with 1k, %.0f ns with 30k, %.0f ns with 300k customers%n",
+                (double) small / lookups, (double) medium / lookups, (double) large / lookups);
+        // 300 times the customers would make a scan 300 times slower
+        assertTrue(large < small * 4, "lookups should not grow with the number of customers");
+    }
+
+    @Test
+    void onlyOneOfManyConcurrentRegistrationsOfAnIDWins() throws Exception {
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 50; round++) {
+                String id = "registry-race-" + System.nanoTime() + "-" + round;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<List<Customer>>> results = new ArrayList<>();
+                List<Customer> candidates = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    Customer candidate = customer(id);
+                    candidates.add(candidate);
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        return AccountService.registerCustomers(List.of(candidate));
+                    }));
+                }
+                start.countDown();
+                int winners = 0;
+                Customer winner = null;
+                for (int i = 0; i < threads; i++) {
+                    if (results.get(i).get(10, TimeUnit.SECONDS).isEmpty()) {
+                        winners++;
+                        winner = candidates.get(i);
+                    }
+                }
+                assertEquals(1, winners);
+                assertSame(winner, AccountService.getCustomerByID(id));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerStoreTest {
+    @TempDir
+    Path directory;
+
+    private static Customer customer(String id, long balanceCents) {
+        CreditCard card = CreditCard.restore("4111111111111111", "Test", "12/99", "123", balanceCents);
+        return Customer.restore(id, "hash", "Test", "Address", card, "Q", "A");
+    }
+
+    @Test
+    void balanceIsSavedToTheCentIncludingHolds() throws Exception {
+        Map<String, Customer> customers = new ConcurrentHashMap<>();
+        CustomerStore store = new CustomerStore(directory, customers);
+        Customer customer = customer("store-1", 100_003);
+        CardLedger ledger = customer.getCreditCard().getLedger();
+        long captured = ledger.hold(1_001, "captured");
+        ledger.capture(captured);
+        ledger.hold(2_002, "still on hold at shutdown");
+        customers.put(customer.getCustomerID(), customer);
+        store.save(customer);
+        store.close();
+
+        Map<String, Customer> replayed = new ConcurrentHashMap<>();
+        new CustomerStore(directory, replayed).close();
+        CardLedger restored = replayed.get("store-1").getCreditCard().getLedger();
+        assertEquals(100_003 - 1_001, restored.getAvailableCents(), "the uncaptured hold is given back");
+        assertEquals(0, restored.getHeldCents());
+
+        store = new CustomerStore(directory, replayed);
+        store.snapshot();
+        store.close();
+        Map<String, Customer> fromSnapshot = new ConcurrentHashMap<>();
+        new CustomerStore(directory, fromSnapshot).close();
+        assertEquals(100_003 - 1_001, fromSnapshot.get("store-1").getCreditCard().getLedger().getAvailableCents());
+    }
+
+    @Test
+    void neitherTheCvvNorThePlainSecurityAnswerIsSaved() throws Exception {
+        CreditCard card = new CreditCard("4111111111111111", "Test", "12/99", "987");
+        Customer customer = new Customer("store-secret", "Passw0rd!", "Test", "Address", card,
+                "What is your favorite color?", "Ultramarine");
+        String saved = new String(CustomerStore.encode(customer), StandardCharsets.UTF_8);
+        assertFalse(saved.contains("987"), "CVV is not saved");
+        assertFalse(saved.contains("Ultramarine"), "security answer is saved hashed");
+
+        Customer restored = CustomerStore.decode(ByteBuffer.wrap(CustomerStore.encode(customer)));
+        assertTrue(restored.checkSecurityAnswer("Ultramarine"));
+        assertFalse(restored.checkSecurityAnswer("ultramarine"));
+        assertTrue(restored.checkPassword("Passw0rd!"));
+        assertEquals("", restored.getCreditCard().getCvv());
+    }
+
+    @Test
+    void readsRecordsWithADollarBalance() {
+        String[] fields = {"old-1", "hash", "Test", "Address", "Q", "A", "4111111111111111", "Test", "12/99", "123"};
+        int size = 8;
+        List<byte[]> encoded = new ArrayList<>();
+        for (String field : fields) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            size += 4 + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] bytes : encoded) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.putDouble(12.34).flip();
+
+        Customer customer = CustomerStore.decode(buffer);
+
+        assertEquals("old-1", customer.getCustomerID());
+        assertEquals(1_234, customer.getCreditCard().getLedger().getAvailableCents());
+        assertTrue(customer.checkSecurityAnswer("A"), "the old plaintext answer is hashed on load");
+        assertEquals("", customer.getCreditCard().getCvv());
+    }
+
+    @Test
+    void encodeDecodeThroughput() {
+        int count = 200_000;
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            customers.add(customer("throughput-" + i, i));
+        }
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (Customer customer : customers) {
+            Customer decoded = CustomerStore.decode(ByteBuffer.wrap(CustomerStore.encode(customer)));
+            checksum += decoded.getCreditCard().getLedger().getBalanceCents();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d customer records encoded and decoded in %.1f ms (%.0f ns each)%n",
+                count, elapsed / 1e6, (double) elapsed / count);
+        assertEquals((long) count * (count - 1) / 2, checksum, "every balance survives exactly");
+    }
+}
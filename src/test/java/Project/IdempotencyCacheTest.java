@@ -0,0 +1,41 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyCacheTest {
+    @Test
+    void firstValueWinsUntilItIsRemoved() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, 60_000);
+        assertNull(cache.putIfAbsent("a|key", "first"));
+        assertEquals("first", cache.putIfAbsent("a|key", "second"));
+        assertNull(cache.putIfAbsent("b|key", "other"), "keys are independent");
+
+        assertFalse(cache.remove("a|key", "second"), "only the remembered value can be removed");
+        assertEquals("first", cache.get("a|key"));
+        assertTrue(cache.remove("a|key", "first"));
+        assertNull(cache.putIfAbsent("a|key", "second"));
+        assertEquals("second", cache.get("a|key"));
+    }
+
+    @Test
+    void keysExpireAndTheOldestAreDroppedAtTheLimit() throws InterruptedException {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(100, 50);
+        assertNull(cache.putIfAbsent("key", 1));
+        Thread.sleep(100);
+        assertNull(cache.get("key"));
+        assertNull(cache.putIfAbsent("key", 2), "an expired key is new again");
+
+        IdempotencyCache<Integer> bounded = new IdempotencyCache<>(100, 60_000);
+        for (int i = 0; i < 1_000; i++) {
+            bounded.putIfAbsent("key-" + i, i);
+        }
+        assertEquals(100, bounded.size());
+        assertNull(bounded.get("key-0"));
+        assertEquals(999, bounded.get("key-999"));
+    }
+}
@@ -0,0 +1,149 @@
+package Project;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryTest {
+    private static final int THREADS = 200;
+
+    @AfterEach
+    void restoreTimeout() {
+        Inventory.configureReservationTimeout(15 * 60 * 1000);
+    }
+
+    /** Runs the same task on {@code THREADS} threads started together and returns the sum of their results. */
+    private static long race(ExecutorService pool, Callable<Long> task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get(60, TimeUnit.SECONDS);
+        }
+        return total;
+    }
+
+    @Test
+    void oneHotProductIsNeverOversoldUnderContention() throws Exception {
+        String productID = "hot-" + System.nanoTime();
+        long units = 20_000;
+        Inventory.setStock(productID, units);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            // Carts reserving, buying and giving back the same product at once
+            int operations = 500;
+            long start = System.nanoTime();
+            long bought = race(pool, () -> {
+                long sold = 0;
+                for (int i = 0; i < operations; i++) {
+                    int quantity = 1 + ThreadLocalRandom.current().nextInt(3);
+                    Inventory.Reservation reservation = Inventory.reserve(productID, quantity);
+                    if (reservation == null) {
+                        continue;
+                    }
+                    if (ThreadLocalRandom.current().nextInt(4) == 0 && Inventory.commit(reservation)) {
+                        sold += quantity;
+                    } else {
+                        Inventory.release(reservation);
+                    }
+                }
+                return sold;
+            });
+            long nanos = System.nanoTime() - start;
+            System.out.printf("Inventory, one product, %d threads: %.0f reservations/s%n",
+                    THREADS, THREADS * operations * 1e9 / nanos);
+            assertEquals(bought, Inventory.getSold(productID));
+            assertEquals(units, Inventory.getAvailable(productID) + Inventory.getSold(productID));
+
+            // Flash sale: everyone buys until it is sold out
+            long soldOut = race(pool, () -> {
+                long sold = 0;
+                Inventory.Reservation reservation;
+                while ((reservation = Inventory.reserve(productID, 1)) != null) {
+                    assertTrue(Inventory.commit(reservation));
+                    sold++;
+                }
+                return sold;
+            });
+            assertEquals(units, bought + soldOut);
+            assertEquals(units, Inventory.getSold(productID));
+            assertEquals(0, Inventory.getAvailable(productID));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void multiUnitBuyersSharingTheWholeStockAllSucceed() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < 100; round++) {
+                // Buyers of 1 to 40 units each, together asking for exactly the stock
+                int[] quantities = new int[THREADS];
+                long units = 0;
+                for (int i = 0; i < THREADS; i++) {
+                    quantities[i] = 1 + ThreadLocalRandom.current().nextInt(40);
+                    units += quantities[i];
+                }
+                String productID = "split-" + System.nanoTime();
+                Inventory.setStock(productID, units);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Inventory.Reservation>> results = new ArrayList<>();
+                for (int quantity : quantities) {
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        return Inventory.reserve(productID, quantity);
+                    }));
+                }
+                start.countDown();
+                for (Future<Inventory.Reservation> result : results) {
+                    // nobody may be told it is sold out while the stock covers everyone
+                    assertNotNull(result.get(10, TimeUnit.SECONDS), "round " + round);
+                }
+                assertEquals(0, Inventory.getAvailable(productID));
+                assertNull(Inventory.reserve(productID, 1));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredReservationsGoBackOnSale() throws Exception {
+        String productID = "expiring-" + System.nanoTime();
+        Inventory.setStock(productID, 10);
+        Inventory.configureReservationTimeout(50);
+        Inventory.Reservation reservation = Inventory.reserve(productID, 10);
+        assertNotNull(reservation);
+        assertEquals(0, Inventory.getAvailable(productID));
+
+        Thread.sleep(100);
+        Inventory.expireReservations();
+        assertEquals(10, Inventory.getAvailable(productID));
+        assertFalse(reservation.isActive());
+        assertFalse(Inventory.commit(reservation));
+        assertEquals(0, Inventory.getSold(productID));
+    }
+}
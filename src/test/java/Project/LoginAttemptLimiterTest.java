@@ -0,0 +1,88 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginAttemptLimiterTest {
+    @Test
+    void concurrentAttemptsNeverExceedTheLimit() throws Exception {
+        int threads = 16;
+        for (int round = 0; round < 200; round++) {
+            LoginAttemptLimiter limiter = new LoginAttemptLimiter(3, 60_000);
+            AtomicInteger reserved = new AtomicInteger();
+            CountDownLatch go = new CountDownLatch(1);
+            List<Thread> attackers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread attacker = new Thread(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (limiter.tryAcquire("victim") != null) {
+                        reserved.incrementAndGet();
+                    }
+                });
+                attackers.add(attacker);
+                attacker.start();
+            }
+            go.countDown();
+            for (Thread attacker : attackers) {
+                attacker.join();
+            }
+            assertEquals(3, reserved.get(), "only as many password checks as the limit allows");
+            assertTrue(limiter.isLocked("victim"));
+        }
+    }
+
+    @Test
+    void refundedAttemptsAreNotCounted() {
+        LoginAttemptLimiter limiter = new LoginAttemptLimiter(2, 60_000);
+        LoginAttemptLimiter.Attempt first = limiter.tryAcquire("user");
+        LoginAttemptLimiter.Attempt second = limiter.tryAcquire("user");
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire("user"));
+
+        limiter.refund(second);
+        assertEquals(1, limiter.remainingAttempts("user"));
+        assertNotNull(limiter.tryAcquire("user"));
+
+        limiter.reset("user");
+        assertEquals(2, limiter.remainingAttempts("user"));
+    }
+
+    @Test
+    void attemptsAgeOutOfTheWindow() throws Exception {
+        LoginAttemptLimiter limiter = new LoginAttemptLimiter(1, 50);
+        assertNotNull(limiter.tryAcquire("user"));
+        assertNull(limiter.tryAcquire("user"));
+        Thread.sleep(80);
+        assertNotNull(limiter.tryAcquire("user"));
+    }
+
+    @Test
+    void uncontendedThroughput() {
+        LoginAttemptLimiter limiter = new LoginAttemptLimiter(3, 60_000);
+        int keys = 100_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < keys; i++) {
+            String key = "user-" + i;
+            LoginAttemptLimiter.Attempt attempt = limiter.tryAcquire(key);
+            limiter.reset(key);
+            assertNotNull(attempt);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d reserve/reset pairs in %.1f ms (%.0f ns each)%n", keys, elapsed / 1e6, (double) elapsed / keys);
+        assertEquals(0, limiter.getTrackedKeyCount());
+    }
+}
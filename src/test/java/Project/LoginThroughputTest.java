@@ -0,0 +1,91 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginThroughputTest {
+    private static final int LOGINS = 64;
+
+    private static List<String> register(int iterations) {
+        String hash = PasswordHasher.hash("Passw0rd#", iterations);
+        List<Customer> batch = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < LOGINS; i++) {
+            String id = "login-" + iterations + "-" + System.nanoTime() + "-" + i;
+            ids.add(id);
+            batch.add(Customer.restore(id, hash, "Test", "Address",
+                    new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A"));
+        }
+        assertTrue(AccountService.registerCustomers(batch).isEmpty());
+        return ids;
+    }
+
+    @Test
+    void loginThroughputByCostFactor() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        String warmUp = PasswordHasher.hash("Passw0rd#", 1_000);
+        for (int i = 0; i < 300; i++) { // let the JIT compile PBKDF2 before timing it
+            PasswordHasher.verify("Passw0rd#", warmUp);
+        }
+        double highestCostRate = 0;
+        double rate = 0;
+        for (int iterations : new int[]{16_000, 4_000, 1_000}) {
+            List<String> ids = register(iterations);
+
+            long start = System.nanoTime();
+            for (String id : ids) {
+                assertNotNull(AccountService.loginCustomer(id, "Passw0rd#"));
+            }
+            long sequentialNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<CompletableFuture<Customer>> logins = new ArrayList<>();
+            for (String id : ids) {
+                logins.add(AccountService.loginCustomerAsync(id, "Passw0rd#"));
+            }
+            long submitNanos = System.nanoTime() - start;
+            for (CompletableFuture<Customer> login : logins) {
+                assertNotNull(login.get(30, TimeUnit.SECONDS));
+            }
+            long asyncNanos = System.nanoTime() - start;
+
+            rate = LOGINS * 1e9 / asyncNanos;
+            System.out.printf("Login, %d iterations, %d cores: %.0f/s on the caller, %.0f/s on the hashing pool "
+                            + "(caller busy %.1f ms of %.1f ms)%n", iterations, cores, LOGINS * 1e9 / sequentialNanos,
+                    rate, submitNanos / 1e6, asyncNanos / 1e6);
+            if (highestCostRate == 0) {
+                highestCostRate = rate;
+                // The async variant hands the hashing to the pool instead of running it on the caller
+                assertTrue(submitNanos < asyncNanos / 2, "the caller should not wait for the hashing");
+            }
+        }
+        assertTrue(rate > highestCostRate, "a 16 times lower cost factor should raise the login rate");
+    }
+
+    @Test
+    void wrongPasswordFailsOnThePoolToo() throws Exception {
+        List<String> ids = register(1_000);
+        assertNull(AccountService.loginCustomerAsync(ids.get(0), "Wr0ng#pass").get(10, TimeUnit.SECONDS));
+        assertNotNull(AccountService.loginCustomerAsync(ids.get(0), "Passw0rd#").get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void asyncFailuresAreCountedPerSource() throws Exception {
+        String id = register(1_000).get(0);
+        for (int i = 0; i < 3; i++) {
+            assertNull(AccountService.loginCustomerAsync(id, "Wr0ng#pass", "10.0.0.66").get(10, TimeUnit.SECONDS));
+        }
+        // Locked for that source only, the same as a blocking login from it
+        assertNull(AccountService.loginCustomerAsync(id, "Passw0rd#", "10.0.0.66").get(10, TimeUnit.SECONDS));
+        assertNull(AccountService.loginCustomer(id, "Passw0rd#", "10.0.0.66"));
+        assertNotNull(AccountService.loginCustomerAsync(id, "Passw0rd#", "10.0.0.7").get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,79 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderIdGeneratorTest {
+    @Test
+    void concurrentIdsAreUniqueAndIncreasing() throws Exception {
+        int threads = 8;
+        int perThread = 200_000;
+        OrderIdGenerator generator = new OrderIdGenerator(7);
+        long[][] ids = new long[threads][perThread];
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long[] own = ids[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    own[i] = generator.nextId();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d IDs from %d threads in %.1f ms (%.1f M/s)%n", threads * perThread, threads,
+                elapsed / 1e6, threads * perThread / (elapsed / 1e3));
+
+        Set<Long> unique = new HashSet<>(threads * perThread * 2);
+        for (long[] own : ids) {
+            for (int i = 0; i < own.length; i++) {
+                assertTrue(i == 0 || own[i] > own[i - 1], "IDs seen by one thread increase");
+                unique.add(own[i]);
+            }
+        }
+        assertEquals(threads * perThread, unique.size());
+    }
+
+    @Test
+    void idsIssuedBeforeARestartAreNeverRepeated() {
+        OrderIdGenerator before = new OrderIdGenerator(0);
+        long issued = before.nextId();
+        // Pretend the last run issued IDs a minute ahead of this clock
+        long ahead = issued + (60_000L << 22);
+        OrderIdGenerator after = new OrderIdGenerator(0);
+        after.advancePast("ORD" + OrderIdGenerator.encode(ahead));
+        assertTrue(after.nextId() > ahead);
+    }
+
+    @Test
+    void orderNumbersRoundTrip() {
+        OrderIdGenerator generator = new OrderIdGenerator(1023);
+        for (int i = 0; i < 1000; i++) {
+            long id = generator.nextId();
+            assertEquals(id, OrderIdGenerator.decode("ORD" + OrderIdGenerator.encode(id)));
+        }
+        assertEquals(-1, OrderIdGenerator.decode("ORD-not-an-id"));
+        assertEquals(-1, OrderIdGenerator.decode(null));
+        assertEquals(-1, OrderIdGenerator.decode("ORD01su1n5lbf4fj"));
+    }
+}
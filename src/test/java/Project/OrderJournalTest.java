@@ -0,0 +1,141 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderJournalTest {
+    @TempDir
+    Path directory;
+
+    private static final Customer CUSTOMER = Customer.restore("journal-test", "hash", "Test", "Address",
+            new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A");
+
+    static {
+        AccountService.registerCustomers(List.of(CUSTOMER)); // replay looks the customer up
+    }
+
+    private static Order order(int n) {
+        List<CartItem> items = new ArrayList<>();
+        items.add(new CartItem(new Product("P" + n, "Product", "Description", 10.0, 9.5), 2));
+        return new Order("O" + n, CUSTOMER, items, "mail", "AUTH" + n);
+    }
+
+    @Test
+    void closeCompletesEveryAppendRacingWithIt() throws Exception {
+        int threads = 4;
+        int perThread = 2000;
+        OrderJournal journal = new OrderJournal(directory, order -> { });
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Thread> appenders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            List<CompletableFuture<Void>> own = new ArrayList<>();
+            Thread appender = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < perThread; i++) {
+                    own.add(journal.append(order(base + i)));
+                }
+                synchronized (futures) {
+                    futures.addAll(own);
+                }
+            });
+            appenders.add(appender);
+            appender.start();
+        }
+        started.await();
+        journal.close();
+        for (Thread appender : appenders) {
+            appender.join();
+        }
+        int written = 0;
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS); // never left pending
+                written++;
+            } catch (ExecutionException rejected) {
+                // appended after close: failed right away
+            }
+        }
+        List<Order> replayed = new ArrayList<>();
+        new OrderJournal(directory, replayed::add).close();
+        assertEquals(written, replayed.size(), "every acknowledged order is on disk");
+        assertTrue(replayed.size() <= threads * perThread);
+    }
+
+    @Test
+    void pricesAreJournaledToTheCent() throws Exception {
+        List<CartItem> items = new ArrayList<>();
+        items.add(new CartItem(Product.restore("P-CENTS", "Product", "Description", 1_999_999_999_99L, 33), 3));
+        Order placed = new Order("O-CENTS", CUSTOMER, items, "mail", "AUTH");
+        OrderJournal journal = new OrderJournal(directory, order -> { });
+        journal.append(placed).get(10, TimeUnit.SECONDS);
+        journal.close();
+
+        List<Order> replayed = new ArrayList<>();
+        new OrderJournal(directory, replayed::add).close();
+
+        Product product = replayed.get(0).getItems().get(0).getProduct();
+        assertEquals(1_999_999_999_99L, product.getRegularPriceCents());
+        assertEquals(33, product.getSalesPriceCents());
+        assertEquals(placed.getTotalCents(), replayed.get(0).getTotalCents());
+    }
+
+    @Test
+    void closeIsRepeatableAndLaterAppendsFail() throws Exception {
+        OrderJournal journal = new OrderJournal(directory, order -> { });
+        journal.append(order(1)).get(10, TimeUnit.SECONDS);
+        journal.close();
+        journal.close();
+        assertTrue(journal.append(order(2)).isCompletedExceptionally());
+    }
+
+    @Test
+    void pendingOrdersAreOnlyReplayedOnceCaptured() throws Exception {
+        OrderJournal journal = new OrderJournal(directory, order -> { });
+        journal.appendPending(order(1));
+        journal.appendPending(order(2));
+        journal.append(order(3));
+        journal.appendCaptured("O2").get(10, TimeUnit.SECONDS);
+        journal.appendPending(order(4)).get(10, TimeUnit.SECONDS); // the process stops before its capture
+        journal.close();
+
+        List<String> replayed = new ArrayList<>();
+        new OrderJournal(directory, order -> replayed.add(order.getOrderId())).close();
+        assertEquals(List.of("O3", "O2"), replayed);
+    }
+
+    @Test
+    void replayReadsPastTheBufferAndCutsATornRecord() throws Exception {
+        OrderJournal journal = new OrderJournal(directory, order -> { });
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 5_000; i++) { // several times the read buffer
+            last = journal.append(order(i));
+        }
+        last.get(10, TimeUnit.SECONDS);
+        journal.close();
+        Path file = directory.resolve("orders.journal");
+        long complete = Files.size(file);
+        Files.write(file, new byte[]{0, 0, 1, 0, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND); // crash mid-write
+
+        List<String> replayed = new ArrayList<>();
+        new OrderJournal(directory, order -> replayed.add(order.getOrderId())).close();
+        assertEquals(5_000, replayed.size());
+        assertEquals("O0", replayed.get(0));
+        assertEquals("O4999", replayed.get(4_999));
+        assertEquals(complete, Files.size(file));
+    }
+}
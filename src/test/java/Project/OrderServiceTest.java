@@ -0,0 +1,98 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderServiceTest {
+    private static Customer customer(String id, CreditCard card) {
+        AccountService.registerCustomers(List.of(Customer.restore(id, "hash", "Test", "Address", card, "Q", "A")));
+        return AccountService.getCustomerByID(id);
+    }
+
+    private static Customer customer(String id) {
+        return customer(id, new CreditCard("4111111111111111", "Test", "12/99", "123"));
+    }
+
+    private static Cart cart(String productID) {
+        Cart cart = new Cart();
+        cart.addItem(Product.restore(productID, "Product", "Test", 2_500, 0), 2);
+        return cart;
+    }
+
+    /** @return The order ID in a placeOrder result. */
+    private static String orderID(String result) {
+        assertTrue(result.startsWith("Order placed successfully"), result);
+        int start = result.indexOf("Order ID: ") + "Order ID: ".length();
+        return result.substring(start, result.indexOf('\n', start));
+    }
+
+    @Test
+    void repeatedKeyReturnsTheFirstOrder() throws Exception {
+        Customer customer = customer("idem-repeat-" + System.nanoTime());
+        String token = AccountService.loginCustomer(customer.getCustomerID());
+        long balance = customer.getCreditCard().getLedger().getAvailableCents();
+
+        // A client retrying while the first attempt is still in flight, then after it finished
+        List<CompletableFuture<String>> attempts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            attempts.add(OrderService.placeOrderAsync(token, customer, cart("idem-repeat"), "pickup", "key-1"));
+        }
+        Set<String> orderIDs = new HashSet<>();
+        for (CompletableFuture<String> attempt : attempts) {
+            orderIDs.add(orderID(attempt.get(10, TimeUnit.SECONDS)));
+        }
+        orderIDs.add(orderID(OrderService.placeOrder(token, customer, cart("idem-repeat"), "pickup", "key-1")));
+
+        assertEquals(1, orderIDs.size(), "every attempt returns the same order");
+        assertEquals(1, OrderService.getCustomerOrders(customer.getCustomerID()).size());
+        long total = OrderService.getOrderByID(orderIDs.iterator().next()).getQuote().getTotalCents();
+        assertEquals(balance - total, customer.getCreditCard().getLedger().getAvailableCents(), "charged once");
+
+        String other = orderID(OrderService.placeOrder(token, customer, cart("idem-repeat"), "pickup", "key-2"));
+        assertNotEquals(orderIDs.iterator().next(), other, "a new key places a new order");
+    }
+
+    @Test
+    void keyOfAFailedAttemptCanBeRetried() {
+        Customer customer = customer("idem-retry-" + System.nanoTime(),
+                CreditCard.restore("4111111111111111", "Test", "12/99", "123", 1_000));
+        String token = AccountService.loginCustomer(customer.getCustomerID());
+
+        String declined = OrderService.placeOrder(token, customer, cart("idem-retry"), "pickup", "key-1");
+        assertTrue(OrderService.isPaymentDeclined(declined), declined);
+        String empty = OrderService.placeOrder(token, customer, new Cart(), "pickup", "key-1");
+        assertEquals("Error: Your cart is empty", empty, "the failure is not returned again");
+
+        customer.getCreditCard().addFunds(100.0);
+        String placed = OrderService.placeOrder(token, customer, cart("idem-retry"), "pickup", "key-1");
+        String again = OrderService.placeOrder(token, customer, cart("idem-retry"), "pickup", "key-1");
+        assertEquals(orderID(placed), orderID(again));
+        assertEquals(1, OrderService.getCustomerOrders(customer.getCustomerID()).size());
+    }
+
+    @Test
+    void sameKeyFromTwoCustomersPlacesTwoOrders() {
+        Customer first = customer("idem-first-" + System.nanoTime());
+        Customer second = customer("idem-second-" + System.nanoTime());
+        String firstToken = AccountService.loginCustomer(first.getCustomerID());
+        String secondToken = AccountService.loginCustomer(second.getCustomerID());
+
+        String firstOrder = orderID(OrderService.placeOrder(firstToken, first, cart("idem-shared"), "pickup", "order-1"));
+        String secondOrder = orderID(OrderService.placeOrder(secondToken, second, cart("idem-shared"), "pickup", "order-1"));
+
+        assertNotEquals(firstOrder, secondOrder);
+        assertEquals(first.getCustomerID(), OrderService.getOrderByID(firstOrder).getCustomer().getCustomerID());
+        assertEquals(second.getCustomerID(), OrderService.getOrderByID(secondOrder).getCustomer().getCustomerID());
+        assertEquals(1, OrderService.getCustomerOrders(second.getCustomerID()).size());
+    }
+}
@@ -0,0 +1,94 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderStoreTest {
+    private static final Customer CUSTOMER = Customer.restore("history-1", "hash", "Test", "Address",
+            new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A");
+    private static final Customer OTHER = Customer.restore("history-2", "hash", "Test", "Address",
+            new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A");
+
+    private static Order order(Customer customer, String orderID, long time) {
+        return Order.restore(orderID, customer, new Date(time), new ArrayList<>(), "pickup", "AUTH", null);
+    }
+
+    /** Orders O1..O10 placed at times 1000..10000. */
+    private static OrderStore history() {
+        OrderStore store = new OrderStore();
+        for (int i = 1; i <= 10; i++) {
+            store.add(order(CUSTOMER, "O" + i, i * 1000L));
+        }
+        store.add(order(OTHER, "X1", 5000));
+        return store;
+    }
+
+    private static List<String> ids(OrderStore.Page page) {
+        List<String> ids = new ArrayList<>();
+        for (Order order : page.getOrders()) {
+            ids.add(order.getOrderId());
+        }
+        return ids;
+    }
+
+    @Test
+    void pagesFollowTheCursorInBothDirections() {
+        OrderStore store = history();
+        OrderStore.Page first = store.getPage("history-1", new Date(3000), new Date(8000), null, 2, false);
+        assertEquals(List.of("O3", "O4"), ids(first));
+        OrderStore.Page second = store.getPage("history-1", new Date(3000), new Date(8000), first.getNextCursor(), 2, false);
+        assertEquals(List.of("O5", "O6"), ids(second));
+        OrderStore.Page last = store.getPage("history-1", new Date(3000), new Date(8000), second.getNextCursor(), 2, false);
+        assertEquals(List.of("O7"), ids(last));
+        assertFalse(last.hasMore());
+
+        OrderStore.Page newest = store.getPage("history-1", new Date(3000), new Date(8000), null, 3, true);
+        assertEquals(List.of("O7", "O6", "O5"), ids(newest));
+        assertEquals(List.of("O4", "O3"),
+                ids(store.getPage("history-1", new Date(3000), new Date(8000), newest.getNextCursor(), 3, true)));
+    }
+
+    @Test
+    void cursorOutsideTheRangeIsClamped() {
+        OrderStore store = history();
+        // Cursor before the range: start at the range's first order
+        assertEquals(List.of("O3", "O4"), ids(store.getPage("history-1", new Date(3000), new Date(8000), "O1", 2, false)));
+        assertEquals(List.of("O7", "O6"), ids(store.getPage("history-1", new Date(3000), new Date(8000), "O9", 2, true)));
+        // Cursor past the range: nothing left
+        OrderStore.Page past = store.getPage("history-1", new Date(3000), new Date(8000), "O9", 2, false);
+        assertTrue(past.getOrders().isEmpty());
+        assertNull(past.getNextCursor());
+        assertTrue(store.getPage("history-1", new Date(3000), new Date(8000), "O1", 2, true).getOrders().isEmpty());
+        // Cursor on the range edges
+        assertEquals(List.of("O4"), ids(store.getPage("history-1", new Date(3000), new Date(5000), "O3", 5, false)));
+        assertEquals(List.of("O3"), ids(store.getPage("history-1", new Date(3000), new Date(5000), "O4", 5, true)));
+    }
+
+    @Test
+    void unknownOrOtherCustomersCursorGivesAnEmptyPage() {
+        OrderStore store = history();
+        assertTrue(store.getPage("history-1", null, null, "missing", 5, false).getOrders().isEmpty());
+        assertTrue(store.getPage("history-1", null, null, "X1", 5, false).getOrders().isEmpty());
+        assertEquals(10, store.getPage("history-1", null, null, null, 20, true).getOrders().size());
+    }
+
+    @Test
+    void ordersOfAllCustomersAreFoundByDate() {
+        OrderStore store = history();
+        List<String> placed = new ArrayList<>();
+        for (Order order : store.getPlacedBetween(new Date(4000), new Date(6000))) {
+            placed.add(order.getOrderId());
+        }
+        assertEquals(List.of("O4", "O5", "X1"), placed);
+        assertTrue(store.getPlacedBetween(new Date(6000), new Date(6000)).isEmpty());
+        assertEquals(11, store.getPlacedBetween(new Date(0), new Date(Long.MAX_VALUE)).size());
+    }
+}
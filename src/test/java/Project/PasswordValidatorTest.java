@@ -0,0 +1,69 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordValidatorTest {
+    private static final String CHARACTERS = "abcxyzABCXYZ0129@#$%&*!?-_ é";
+
+    /** The validator before the single-pass rewrite: three regular expressions, one scan each. */
+    private static boolean regexValid(String password) {
+        if (password == null || password.length() < 6) {
+            return false;
+        }
+        return password.matches(".*\\d.*") && password.matches(".*[A-Z].*") && password.matches(".*[@#$%&*].*");
+    }
+
+    private static List<String> passwords(int count) {
+        Random random = new Random(8);
+        List<String> passwords = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder password = new StringBuilder();
+            for (int length = random.nextInt(16); length > 0; length--) {
+                password.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+            passwords.add(password.toString());
+        }
+        return passwords;
+    }
+
+    @Test
+    void singlePassAgreesWithTheRegexVersionAndIsFaster() {
+        List<String> passwords = passwords(200_000);
+        boolean[] results = PasswordValidator.DEFAULT.validateAll(passwords);
+        int valid = 0;
+        for (int i = 0; i < results.length; i++) {
+            assertEquals(regexValid(passwords.get(i)), results[i], passwords.get(i));
+            if (results[i]) {
+                valid++;
+            }
+        }
+        assertTrue(valid > 0 && valid < results.length);
+
+        long regexNanos = Long.MAX_VALUE;
+        long singlePassNanos = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < 5; round++) { // the best round, after the JIT has warmed up
+            long start = System.nanoTime();
+            for (String password : passwords) {
+                sink += regexValid(password) ? 1 : 0;
+            }
+            regexNanos = Math.min(regexNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (String password : passwords) {
+                sink += PasswordValidator.isValid(password) ? 1 : 0;
+            }
+            singlePassNanos = Math.min(singlePassNanos, System.nanoTime() - start);
+        }
+        assertEquals(10 * valid, sink);
+        System.out.printf("Password validation: regex %.0f ns, single pass %.0f ns per password%n",
+                (double) regexNanos / passwords.size(), (double) singlePassNanos / passwords.size());
+        assertTrue(singlePassNanos < regexNanos, "the single pass should beat three regular expressions");
+    }
+}
@@ -0,0 +1,102 @@
+package Project;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PricingEngineTest {
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void restoreDefaultRules() {
+        PricingEngine.reload(PricingRules.defaults());
+    }
+
+    @Test
+    void quotesUseEitherTheOldOrTheNewRulesNeverAMix() throws Exception {
+        Product product = Product.restore("engine-p1", "Product", "Test", 12_345, 0);
+        List<CartItem> items = List.of(new CartItem(product, 3));
+        Cart cart = new Cart();
+        cart.addItem(product, 3);
+        PricingRules free = new PricingRules(0, Map.of("mail", 0L), null, 0, 0);
+        PricingRules expensive = new PricingRules(1_000, Map.of("mail", 900L), Map.of("engine-p1", 2_000), 10_000, 500);
+        Set<String> allowed = Set.of(free.quote(items, "mail").toString(), expensive.quote(items, "mail").toString());
+
+        PricingEngine.reload(free);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicBoolean reloading = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int quotes = 0;
+                    while (reloading.get()) {
+                        // Alternately price the items and ask a shared cart (which caches its quotes)
+                        Quote quote = quotes % 2 == 0 ? PricingEngine.quote(items, "mail") : cart.getQuote("mail");
+                        assertTrue(allowed.contains(quote.toString()), quote.toString());
+                        quotes++;
+                    }
+                    return quotes;
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < 200; i++) {
+                PricingEngine.reload(i % 2 == 0 ? expensive : free);
+                Thread.yield();
+            }
+            reloading.set(false);
+            int quotes = 0;
+            for (Future<Integer> result : results) {
+                quotes += result.get(60, TimeUnit.SECONDS);
+            }
+            assertTrue(quotes > 0);
+        } finally {
+            reloading.set(false);
+            pool.shutdownNow();
+        }
+
+        // The last reload put the free rules in effect: the cart follows
+        assertEquals(free.quote(items, "mail").toString(), cart.getQuote("mail").toString());
+        PricingEngine.reload(expensive);
+        assertEquals(expensive.quote(items, "mail").toString(), cart.getQuote("mail").toString());
+        assertEquals(expensive.quote(items, "mail").getTotalCents(), PricingEngine.quote(items, "mail").getTotalCents());
+    }
+
+    @Test
+    void invalidRulesFileKeepsTheCurrentRules() throws Exception {
+        PricingRules current = PricingEngine.getRules();
+        Path file = directory.resolve("pricing.properties");
+        Files.writeString(file, "tax.percent=eight\n", StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> PricingEngine.reload(file));
+        assertThrows(IllegalArgumentException.class, () -> PricingEngine.reload((PricingRules) null));
+        assertSame(current, PricingEngine.getRules());
+
+        Files.writeString(file, "tax.percent=5\n", StandardCharsets.UTF_8);
+        PricingEngine.reload(file);
+        assertEquals(500, PricingEngine.getRules().getTaxBasisPoints());
+    }
+}
@@ -0,0 +1,126 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PricingRulesTest {
+    private static final Product DISCOUNTED = Product.restore("rules-p1", "Discounted", "Test", 3_333, 0);
+    private static final Product PLAIN = Product.restore("rules-p2", "Plain", "Test", 101, 0);
+
+    @TempDir
+    Path directory;
+
+    /** 8.25% tax, $4.50 mail, free pickup, 10% off rules-p1 and 5% off orders from $100. */
+    private static PricingRules rules() {
+        return new PricingRules(825, Map.of("mail", 450L, "pickup", 0L), Map.of("rules-p1", 1_000), 10_000, 500);
+    }
+
+    private static void assertQuote(Quote quote, long subTotal, long discount, long tax, long fee, long total) {
+        assertEquals(subTotal, quote.getSubTotalCents(), "subtotal");
+        assertEquals(discount, quote.getDiscountCents(), "discount");
+        assertEquals(tax, quote.getTaxCents(), "tax");
+        assertEquals(fee, quote.getDeliveryFeeCents(), "delivery fee");
+        assertEquals(total, quote.getTotalCents(), "total");
+    }
+
+    @Test
+    void discountsTaxAndDeliveryAddUp() {
+        PricingRules rules = rules();
+        List<CartItem> items = List.of(new CartItem(DISCOUNTED, 3), new CartItem(PLAIN, 1));
+        // 9,999 + 101 = 10,100 reaches the minimum: 10% of 9,999 is 999.9 -> 1,000, then 5% of 9,100 is 455;
+        // 8.25% of 8,645 is 713.21 -> 713; mail is not taxed
+        assertQuote(rules.quote(items, "mail"), 10_100, 1_455, 713, 450, 8_645 + 713 + 450);
+        assertQuote(rules.quote(items, null), 10_100, 1_455, 713, 0, 8_645 + 713);
+
+        // 9,999 is below the minimum: product discount only; 8.25% of 8,999 is 742.42 -> 742
+        List<CartItem> belowMinimum = List.of(new CartItem(DISCOUNTED, 3));
+        assertQuote(rules.quote(belowMinimum, "pickup"), 9_999, 1_000, 742, 0, 8_999 + 742);
+
+        assertQuote(rules.quote(List.of(), "mail"), 0, 0, 0, 450, 450);
+    }
+
+    @Test
+    void runningTotalsGiveTheSameQuoteAsTheItems() {
+        PricingRules rules = rules();
+        List<CartItem> items = List.of(new CartItem(DISCOUNTED, 7), new CartItem(PLAIN, 13));
+        long subTotal = 0;
+        for (CartItem item : items) {
+            subTotal += item.getTotalPriceCents();
+        }
+        assertEquals(rules.getItemDiscountCents(DISCOUNTED.getProductID(), 7 * 3_333L), rules.getItemDiscountCents(items));
+        assertEquals(0, rules.getItemDiscountCents(PLAIN.getProductID(), 13 * 101L));
+        for (String deliveryMethod : new String[]{null, "mail", "pickup"}) {
+            Quote fromItems = rules.quote(items, deliveryMethod);
+            Quote fromTotals = rules.quote(subTotal, rules.getItemDiscountCents(items), deliveryMethod);
+            assertEquals(fromItems.toString(), fromTotals.toString(), deliveryMethod);
+            assertEquals(fromItems.getTotalCents(), fromTotals.getTotalCents());
+        }
+    }
+
+    @Test
+    void halfACentRoundsUp() {
+        PricingRules halfPercentTax = new PricingRules(50, Map.of("pickup", 0L), null, 0, 0);
+        Product dollar = Product.restore("rules-dollar", "Dollar", "Test", 100, 0);
+        Product cents = Product.restore("rules-99", "Cents", "Test", 99, 0);
+        assertEquals(1, halfPercentTax.quote(List.of(new CartItem(dollar, 1)), null).getTaxCents()); // 0.5
+        assertEquals(0, halfPercentTax.quote(List.of(new CartItem(cents, 1)), null).getTaxCents()); // 0.495
+    }
+
+    @Test
+    void deliveryMethodsAndDefaults() {
+        PricingRules defaults = PricingRules.defaults();
+        assertEquals(800, defaults.getTaxBasisPoints());
+        assertEquals("8%", defaults.getTaxRateText());
+        assertEquals(300, defaults.getDeliveryFeeCents("mail"));
+        assertEquals(0, defaults.getDeliveryFeeCents("drone"));
+        assertTrue(defaults.isDeliveryMethod("pickup"));
+        assertFalse(defaults.isDeliveryMethod("drone"));
+        assertFalse(defaults.isDeliveryMethod(null));
+        assertThrows(IllegalArgumentException.class, () -> defaults.quote(List.of(new CartItem(PLAIN, 1)), "drone"));
+        assertEquals("8.25%", rules().getTaxRateText());
+    }
+
+    @Test
+    void invalidRulesAreRejected() {
+        Map<String, Long> fees = Map.of("mail", 300L);
+        assertThrows(IllegalArgumentException.class, () -> new PricingRules(-1, fees, null, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PricingRules(800, Map.of(), null, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PricingRules(800, Map.of("mail", -1L), null, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PricingRules(800, fees, Map.of("p", 10_001), 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PricingRules(800, fees, null, -1, 500));
+        assertThrows(IllegalArgumentException.class, () -> new PricingRules(800, fees, null, 0, 10_001));
+    }
+
+    @Test
+    void rulesFileCompilesToTheSameRules() throws IOException {
+        Path file = directory.resolve("pricing.properties");
+        Files.writeString(file, String.join("\n",
+                "tax.percent=8.25",
+                "delivery.mail=4.50",
+                "discount.product.rules-p1=10",
+                "discount.order.minimum=100.00",
+                "discount.order.percent=5"), StandardCharsets.UTF_8);
+        PricingRules loaded = PricingRules.load(file);
+        List<CartItem> items = List.of(new CartItem(DISCOUNTED, 3), new CartItem(PLAIN, 1));
+        for (String deliveryMethod : new String[]{null, "mail", "pickup"}) {
+            assertEquals(rules().quote(items, deliveryMethod).toString(), loaded.quote(items, deliveryMethod).toString());
+        }
+
+        Files.writeString(file, "tax.percent=8.125\n", StandardCharsets.UTF_8); // three decimals
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.load(file));
+        Files.writeString(file, "delivery.mail=free\n", StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.load(file));
+    }
+}
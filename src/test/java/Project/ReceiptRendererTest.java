@@ -0,0 +1,95 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReceiptRendererTest {
+    private static final Customer CUSTOMER = Customer.restore("receipt-1", "hash", "Test", "Address",
+            new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A");
+
+    @TempDir
+    Path directory;
+
+    private static Order order(String orderID, int lines) {
+        List<CartItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            items.add(new CartItem(Product.restore("receipt-p" + i, "Product " + i, "Test", 1 + i * 37L, 0), 1 + i % 5));
+        }
+        return Order.restore(orderID, CUSTOMER, new Date(0), items, "mail", "AUTH-" + orderID, null);
+    }
+
+    /** The item lines as Order.getOrderDetails built them before the renderer: string concatenation in a loop. */
+    private static String concatenatedItems(Order order) {
+        String details = "";
+        for (CartItem item : order.getItems()) {
+            details += "  " + item.toString() + "\n";
+        }
+        return details;
+    }
+
+    private static long bestRenderNanos(ReceiptRenderer renderer, Order order, StringBuilder out) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            out.setLength(0);
+            long start = System.nanoTime();
+            renderer.render(order, out);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    @Test
+    void renderTimeGrowsLinearlyWithTheItems() throws IOException {
+        Order small = order("R1", 1_000);
+        Order large = order("R2", 8_000);
+        String receipt = ReceiptRenderer.toText(large);
+        assertTrue(receipt.contains("Items:\n" + concatenatedItems(large)), "item lines changed");
+
+        ReceiptRenderer renderer = new ReceiptRenderer();
+        StringBuilder out = new StringBuilder();
+        bestRenderNanos(renderer, large, out); // warm up
+        long smallNanos = bestRenderNanos(renderer, small, out);
+        long largeNanos = bestRenderNanos(renderer, large, out);
+        long start = System.nanoTime();
+        concatenatedItems(large);
+        long concatenatedNanos = System.nanoTime() - start;
+        System.out.printf("Receipt: %.0f ns per line for 1k lines, %.0f ns per line for 8k lines "
+                        + "(concatenation: %.0f ns per line)%n",
+                (double) smallNanos / 1_000, (double) largeNanos / 8_000, (double) concatenatedNanos / 8_000);
+        // 8 times the lines: linear is 8 times the time, the old quadratic concatenation 64 times
+        assertTrue(largeNanos < smallNanos * 24, "rendering should be linear in the number of items");
+        assertTrue(largeNanos < concatenatedNanos, "rendering should beat string concatenation");
+    }
+
+    @Test
+    void bulkRenderWritesEveryReceipt() throws IOException {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            orders.add(order("B" + i, 10));
+        }
+        Path file = directory.resolve("receipts.txt");
+        ReceiptRenderer renderer = new ReceiptRenderer();
+        renderer.renderAll(orders, file); // warm up
+        long start = System.nanoTime();
+        assertEquals(orders.size(), renderer.renderAll(orders, file));
+        long nanos = System.nanoTime() - start;
+        System.out.printf("Bulk receipts: %.1f us per 10-line receipt%n", nanos / 1e3 / orders.size());
+
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        for (Order order : List.of(orders.get(0), orders.get(999), orders.get(1_999))) {
+            assertTrue(text.contains(order.getOrderDetails()), order.getOrderId());
+        }
+        assertEquals(orders.size(), text.split("\n-{40}\n", -1).length - 1);
+    }
+}
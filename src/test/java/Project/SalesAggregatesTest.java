@@ -0,0 +1,106 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesAggregatesTest {
+    private static final Customer CUSTOMER = Customer.restore("sales-1", "hash", "Test", "Address",
+            new CreditCard("4111111111111111", "Test", "12/99", "123"), "Q", "A");
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+    private static final String[] PRODUCTS = {"sales-a", "sales-b", "sales-c"};
+    private static final String[] DELIVERY_METHODS = {"mail", "pickup"};
+
+    private static Order order(String orderID, int n) {
+        List<CartItem> items = new ArrayList<>();
+        items.add(new CartItem(Product.restore(PRODUCTS[n % PRODUCTS.length], "Product", "Test", 100 + n % 7, 0), 1 + n % 3));
+        Date date = new Date(DAY.plusDays(n % 2).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli());
+        return Order.restore(orderID, CUSTOMER, date, items, DELIVERY_METHODS[n % 2], "AUTH-" + orderID, null);
+    }
+
+    /** Checks every total against a sum over {@code orders}. */
+    private static void assertTotals(SalesAggregates sales, Iterable<Order> orders) {
+        long revenue = 0;
+        long count = 0;
+        for (Order order : orders) {
+            revenue += order.getTotalCents();
+            count++;
+        }
+        assertEquals(count, sales.getDailyOrderCount(DAY) + sales.getDailyOrderCount(DAY.plusDays(1)));
+        assertEquals(revenue, sales.getDailyRevenueCents(DAY) + sales.getDailyRevenueCents(DAY.plusDays(1)));
+        assertEquals(count, sales.getDeliveryOrderCount("mail") + sales.getDeliveryOrderCount("pickup"));
+        for (String productID : PRODUCTS) {
+            long units = 0;
+            long productRevenue = 0;
+            for (Order order : orders) {
+                for (CartItem item : order.getItems()) {
+                    if (item.getProduct().getProductID().equals(productID)) {
+                        units += item.getQuantity();
+                        productRevenue += item.getTotalPriceCents();
+                    }
+                }
+            }
+            assertEquals(units, sales.getProductUnitsSold(productID), productID);
+            assertEquals(productRevenue, sales.getProductRevenueCents(productID), productID);
+        }
+    }
+
+    @Test
+    void rebuildWhileOrdersAreRecordedCountsEachOrderOnce() throws Exception {
+        SalesAggregates sales = new SalesAggregates(ZoneOffset.UTC);
+        Queue<Order> history = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 5_000; i++) {
+            Order order = order("old-" + i, i);
+            sales.record(order);
+            history.add(order);
+        }
+
+        int threads = 8;
+        int ordersPerThread = 5_000;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ordersPerThread; i++) {
+                        // as the checkout does: counted first, then visible in the history
+                        Order order = order("new-" + thread + "-" + i, i);
+                        sales.record(order);
+                        history.add(order);
+                        Thread.yield(); // let rebuilds run in between
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        int rebuilds = 0;
+        do {
+            sales.rebuild(history);
+            rebuilds++;
+        } while (!done.await(0, TimeUnit.MILLISECONDS));
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+
+        assertEquals(5_000 + threads * ordersPerThread, history.size());
+        assertTotals(sales, history);
+        sales.rebuild(history);
+        assertTotals(sales, history);
+        System.out.println("Sales aggregates: " + rebuilds + " rebuilds while recording");
+    }
+}
@@ -0,0 +1,101 @@
+package Project;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionStoreTest {
+    private static final long NEVER = 60 * 60 * 1000; // sweep interval that keeps the sweeper out of a test
+
+    private SessionStore store;
+
+    @AfterEach
+    void stopSweeper() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void idleSessionExpiresOnAccess() throws InterruptedException {
+        store = new SessionStore(100, NEVER);
+        store.login("idle");
+        assertTrue(store.isActive("idle"));
+        Thread.sleep(200);
+
+        assertFalse(store.isActive("idle"));
+        assertEquals(0, store.getActiveSessionCount());
+        assertEquals(1, store.getExpiredSessionCount());
+        assertFalse(store.isActive("idle"), "an expired session stays gone");
+        assertEquals(1, store.getExpiredSessionCount(), "and is counted once");
+
+        store.login("idle");
+        assertTrue(store.isActive("idle"), "logging in again starts a new session");
+    }
+
+    @Test
+    void sweeperRemovesSessionsNobodyAsksFor() throws InterruptedException {
+        store = new SessionStore(100, 50);
+        for (int i = 0; i < 100; i++) {
+            store.login("swept-" + i);
+        }
+        assertEquals(100, store.getActiveSessionCount());
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (store.getActiveSessionCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, store.getActiveSessionCount());
+        assertEquals(100, store.getExpiredSessionCount());
+    }
+
+    @Test
+    void sweepOnlyRemovesIdleSessions() throws InterruptedException {
+        store = new SessionStore(100, NEVER);
+        store.login("old");
+        store.login("also-old");
+        Thread.sleep(150);
+        store.login("new");
+        store.expireIdleSessions();
+
+        assertEquals(1, store.getActiveSessionCount());
+        assertEquals(2, store.getExpiredSessionCount());
+        assertTrue(store.isActive("new"));
+        assertFalse(store.isActive("old"));
+        assertEquals(2, store.getExpiredSessionCount(), "a session removed by the sweep is not counted again");
+    }
+
+    @Test
+    void eachAccessExtendsTheSession() throws InterruptedException {
+        store = new SessionStore(500, NEVER);
+        store.login("busy");
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(100);
+            assertTrue(store.isActive("busy"), "used " + (System.currentTimeMillis() - start) + " ms after login");
+            store.expireIdleSessions();
+        }
+        assertTrue(System.currentTimeMillis() - start > 500, "the session outlived the idle timeout");
+        Thread.sleep(600);
+        assertFalse(store.isActive("busy"));
+    }
+
+    @Test
+    void logoutEndsTheSessionWithoutCountingItExpired() {
+        store = new SessionStore(NEVER, NEVER);
+        store.login("leaving");
+        store.logout("leaving");
+        store.logout("unknown");
+        store.logout(null);
+
+        assertFalse(store.isActive("leaving"));
+        assertFalse(store.isActive(null));
+        assertEquals(0, store.getActiveSessionCount());
+        assertEquals(0, store.getExpiredSessionCount());
+        assertThrows(IllegalArgumentException.class, () -> new SessionStore(0, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> new SessionStore(1_000, 0));
+    }
+}
@@ -0,0 +1,54 @@
+package Project;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SessionTokenTest {
+    private static final byte[] SECRET = "test-secret".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void activeTokensOutliveTheirFirstExpiry() throws Exception {
+        SessionToken tokens = new SessionToken(SECRET, 600);
+        String token = tokens.issue("alice");
+        for (int i = 0; i < 6; i++) { // 6 x 200 ms, twice the TTL
+            Thread.sleep(200);
+            token = tokens.refresh(token);
+            assertNotNull(token, "refreshed while still active");
+        }
+        assertEquals("alice", tokens.verify(token));
+        Thread.sleep(900);
+        assertNull(tokens.verify(token), "an idle token still expires");
+        assertNull(tokens.refresh(token));
+    }
+
+    @Test
+    void revokingOneCopyRevokesTheWholeSession() {
+        SessionToken tokens = new SessionToken(SECRET, 60_000);
+        String first = tokens.issue("bob");
+        String refreshed = tokens.refresh(first);
+        tokens.revoke(refreshed);
+        assertNull(tokens.verify(first));
+        assertNull(tokens.verify(refreshed));
+        assertNull(tokens.refresh(first));
+    }
+
+    @Test
+    void tokensFromAnotherSecretAreRejected() {
+        SessionToken tokens = new SessionToken(SECRET, 60_000);
+        SessionToken other = new SessionToken("other".getBytes(StandardCharsets.UTF_8), 60_000);
+        assertNull(tokens.refresh(other.issue("mallory")));
+    }
+
+    @Test
+    void refreshedTokenNamesItsCustomerWithoutAnotherCheck() {
+        SessionToken tokens = new SessionToken(SECRET, 60_000);
+        String refreshed = tokens.refresh(tokens.issue("carol:with:colons"));
+        assertEquals("carol:with:colons", SessionToken.customerIDOf(refreshed));
+        assertEquals(tokens.verify(refreshed), SessionToken.customerIDOf(refreshed));
+    }
+}